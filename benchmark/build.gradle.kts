@@ -0,0 +1,61 @@
+plugins {
+    alias(libs.plugins.android.library)
+}
+
+android {
+    namespace = "com.jef.sqlite.management.benchmark"
+    compileSdk = 36
+
+    defaultConfig {
+        minSdk = 24
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_17
+        targetCompatibility = JavaVersion.VERSION_17
+    }
+
+    sourceSets {
+        getByName("test") {
+            // Los benchmarks usan las entidades, consultas y tablas de las pruebas instrumentadas
+            java.srcDir("../sqlite_management/src/androidTest/java")
+        }
+    }
+
+    testOptions {
+        unitTests {
+            isIncludeAndroidResources = true
+        }
+    }
+}
+
+tasks.withType<Test>().configureEach {
+    // Los benchmarks solo se ejecutan cuando se piden: ./gradlew :benchmark:testReleaseUnitTest -Pbenchmark
+    onlyIf { project.hasProperty("benchmark") }
+    outputs.upToDateWhen { false }
+
+    filter {
+        includeTestsMatching("com.jef.sqlite.management.benchmark.*")
+    }
+
+    // Cada clase en su propia JVM: los resultados no dependen del orden y el primer arranque es en frío
+    forkEvery = 1
+    maxHeapSize = "4g"
+    testLogging {
+        showStandardStreams = true
+    }
+
+    systemProperty("benchmark.outputDir", layout.buildDirectory.dir("benchmark").get().asFile.absolutePath)
+    project.properties
+        .filterKeys { it.startsWith("benchmark.") }
+        .forEach { (key, value) -> systemProperty(key, value.toString()) }
+}
+
+dependencies {
+    testImplementation(project(":sqlite_management"))
+    testImplementation(libs.appcompat)
+    testImplementation(libs.junit)
+    testImplementation(libs.ext.junit)
+    testImplementation(libs.test.core)
+    testImplementation(libs.robolectric)
+}
@@ -0,0 +1,49 @@
+package com.jef.sqlite.management.benchmark;
+
+import java.lang.reflect.Method;
+
+/**
+ * Reads the bytes allocated by the current thread, from the ThreadMXBean of HotSpot.
+ * <p>
+ * Unit tests compile against android.jar, which has no java.lang.management, so the bean is reached by reflection.
+ * On a JVM without allocation counting every read returns -1 and the benchmarks report no allocation.
+ */
+final class AllocationCounter {
+
+    private static final Object BEAN;
+    private static final Method THREAD_ALLOCATED_BYTES;
+
+    static {
+        Object bean = null;
+        Method method = null;
+        try {
+            bean = Class.forName("java.lang.management.ManagementFactory").getMethod("getThreadMXBean").invoke(null);
+            Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+            if (beanClass.isInstance(bean) && (boolean) beanClass.getMethod("isThreadAllocatedMemoryEnabled").invoke(bean))
+                method = beanClass.getMethod("getThreadAllocatedBytes", long.class);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Not a HotSpot JVM, allocation is not reported
+        }
+
+        BEAN = bean;
+        THREAD_ALLOCATED_BYTES = method;
+    }
+
+    private AllocationCounter() {
+    }
+
+    /**
+     * @return The bytes allocated so far by the current thread, or -1 if the JVM does not count them
+     */
+    static long currentThreadAllocatedBytes() {
+        if (THREAD_ALLOCATED_BYTES == null)
+            return -1;
+
+        try {
+            return (long) THREAD_ALLOCATED_BYTES.invoke(BEAN, Thread.currentThread().getId());
+        } catch (ReflectiveOperationException e) {
+            return -1;
+        }
+    }
+
+}
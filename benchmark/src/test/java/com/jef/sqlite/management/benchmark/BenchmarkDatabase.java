@@ -0,0 +1,115 @@
+package com.jef.sqlite.management.benchmark;
+
+import android.content.Context;
+
+import com.jef.sqlite.management.Management;
+import com.jef.sqlite.management.Query.QueryFactory;
+import com.jef.sqlite.management.SQLiteTable;
+import com.jef.sqlite.management.models.Line;
+import com.jef.sqlite.management.models.Product;
+import com.jef.sqlite.management.queries.LineQuery;
+import com.jef.sqlite.management.queries.ProductQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An empty database of the test entities, with the lines and products tables on one {@link Management}
+ * and the query proxies of both.
+ * <p>
+ * ProductsTable and LineTable create a management each, so the benchmarks register the tables themselves
+ * to measure every query against the same connection.
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+
+    static final String NAME = "management";
+
+    private final Management management;
+    private final ProductQuery products;
+    private final LineQuery lines;
+
+    /**
+     * Deletes the database of a previous benchmark and creates the tables.
+     *
+     * @param context The context of the application
+     */
+    public BenchmarkDatabase(Context context) {
+        context.deleteDatabase(NAME);
+
+        management = new Management(context);
+        new SQLiteTable<Line>(management) { };
+        new SQLiteTable<Product>(management) { };
+
+        products = QueryFactory.create(ProductQuery.class, management);
+        lines = QueryFactory.create(LineQuery.class, management);
+    }
+
+    public Management getManagement() {
+        return management;
+    }
+
+    public ProductQuery products() {
+        return products;
+    }
+
+    public LineQuery lines() {
+        return lines;
+    }
+
+    /**
+     * Saves lines named "line 0" to "line count - 1".
+     *
+     * @param count The number of lines
+     * @return The saved lines, with their ids
+     */
+    public List<Line> saveLines(int count) {
+        List<Line> created = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Line line = new Line();
+            line.setName("line " + i);
+            created.add(line);
+        }
+
+        return saveLines(created);
+    }
+
+    /**
+     * Saves lines one by one, assigning their ids.
+     *
+     * @param created The lines to save
+     * @return The same lines
+     */
+    public List<Line> saveLines(List<Line> created) {
+        for (Line line : created)
+            line.setId((int) lines.save(line));
+
+        return created;
+    }
+
+    /**
+     * Saves products named "prefix 0" to "prefix count - 1" in one transaction, spread over the lines.
+     *
+     * @param prefix The prefix of the names
+     * @param count The number of products
+     * @param lines The lines of the products
+     * @return The ids of the products, in order
+     */
+    public int[] saveProducts(String prefix, int count, List<Line> lines) {
+        List<Product> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            batch.add(new Product(0, prefix + " " + i, i % 2 == 0, lines.get(i % lines.size())));
+
+        long[] ids = products.upsertAll(batch);
+        int[] result = new int[ids.length];
+        for (int i = 0; i < ids.length; i++)
+            result[i] = (int) ids[i];
+
+        return result;
+    }
+
+    @Override
+    public void close() {
+        management.close();
+    }
+
+}
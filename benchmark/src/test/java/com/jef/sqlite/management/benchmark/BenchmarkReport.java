@@ -0,0 +1,119 @@
+package com.jef.sqlite.management.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the results of a benchmark class and writes them as CSV, one row per result.
+ * <p>
+ * The file is written to the directory of the system property "benchmark.outputDir", set by Gradle to
+ * benchmark/build/benchmark, with the name of the report, and printed to the standard output.
+ * Every row starts with the parameters of the report, for example the number of rows of the table, and ends with
+ * the {@link BenchmarkResult#withCounter(String, double) counters} of the results, empty for the results without them.
+ */
+public class BenchmarkReport {
+
+    private static final String[] RESULT_COLUMNS = {
+            "benchmark", "operations", "ops_per_sec", "mean_us", "p50_us", "p90_us", "p99_us", "p999_us", "max_us", "bytes_per_op"
+    };
+
+    private final String name;
+    private final String[] parameters;
+    private final List<List<String>> rows = new ArrayList<>();
+    private final List<Map<String, Double>> rowCounters = new ArrayList<>();
+    private final Set<String> counters = new LinkedHashSet<>();
+
+    /**
+     * @param name The name of the report, the file is "name.csv"
+     * @param parameters The names of the parameter columns
+     */
+    public BenchmarkReport(String name, String... parameters) {
+        this.name = name;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Adds a result.
+     *
+     * @param result The result
+     * @param values The values of the parameter columns, in order
+     */
+    public synchronized void add(BenchmarkResult result, Object... values) {
+        if (values.length != parameters.length)
+            throw new IllegalArgumentException("Expected " + parameters.length + " parameters, got " + values.length);
+
+        List<String> row = new ArrayList<>();
+        for (Object value : values)
+            row.add(String.valueOf(value));
+
+        row.add(result.getName());
+        row.add(String.valueOf(result.getOperations()));
+        row.add(format(result.getOpsPerSecond()));
+        row.add(format(result.getLatency().getMeanNanos() / 1000.0));
+        row.add(format(result.getLatencyMicros(50)));
+        row.add(format(result.getLatencyMicros(90)));
+        row.add(format(result.getLatencyMicros(99)));
+        row.add(format(result.getLatencyMicros(99.9)));
+        row.add(format(result.getLatency().getMaxNanos() / 1000.0));
+        row.add(format(result.getBytesPerOp()));
+        rows.add(row);
+
+        rowCounters.add(result.getCounters());
+        counters.addAll(result.getCounters().keySet());
+    }
+
+    /**
+     * Prints the report and writes its CSV file.
+     *
+     * @return The file written
+     * @throws IOException If the file cannot be written
+     */
+    public synchronized File write() throws IOException {
+        List<String> header = new ArrayList<>(Arrays.asList(parameters));
+        header.addAll(Arrays.asList(RESULT_COLUMNS));
+        header.addAll(counters);
+
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            List<String> row = new ArrayList<>(rows.get(i));
+            for (String counter : counters) {
+                Double value = rowCounters.get(i).get(counter);
+                row.add(value == null ? "" : format(value));
+            }
+
+            lines.add(String.join(",", row));
+        }
+
+        File directory = new File(System.getProperty("benchmark.outputDir", "build/benchmark"));
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+
+        File file = new File(directory, name + ".csv");
+        try (PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8.name())) {
+            writer.println(String.join(",", header));
+            for (String line : lines)
+                writer.println(line);
+        }
+
+        System.out.println(name + " -> " + file);
+        System.out.println(String.join(",", header));
+        for (String line : lines)
+            System.out.println(line);
+
+        return file;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+}
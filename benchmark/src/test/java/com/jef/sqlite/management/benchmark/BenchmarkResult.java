@@ -0,0 +1,104 @@
+package com.jef.sqlite.management.benchmark;
+
+import com.jef.sqlite.management.metrics.LatencyHistogram;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The measured operations of one benchmark: throughput, latency distribution and allocation.
+ */
+public class BenchmarkResult {
+
+    private final String name;
+    private final long operations;
+    private final long elapsedNanos;
+    private final LatencyHistogram latency;
+    private final long allocatedBytes;
+    private final Map<String, Double> counters = new LinkedHashMap<>();
+
+    /**
+     * @param name The name of the benchmark, for example "findById"
+     * @param operations The measured operations
+     * @param elapsedNanos The wall time of the measured operations
+     * @param latency The latency of every measured operation
+     * @param allocatedBytes The bytes allocated by the measured operations, or -1 if unknown
+     */
+    public BenchmarkResult(String name, long operations, long elapsedNanos, LatencyHistogram latency, long allocatedBytes) {
+        this.name = name;
+        this.operations = operations;
+        this.elapsedNanos = elapsedNanos;
+        this.latency = latency;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getOperations() {
+        return operations;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public double getOpsPerSecond() {
+        return elapsedNanos == 0 ? 0 : operations * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * @return The bytes allocated per operation, or -1 if the JVM does not count allocations
+     */
+    public double getBytesPerOp() {
+        return allocatedBytes < 0 || operations == 0 ? -1 : (double) allocatedBytes / operations;
+    }
+
+    /**
+     * @param percentile The percentile, between 0 and 100
+     * @return The latency at the percentile, in microseconds
+     */
+    public double getLatencyMicros(double percentile) {
+        return latency.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * Adds a value measured apart from the operations, written to its own column of the report.
+     *
+     * @param name The name of the column, for example "lock_wait_ms"
+     * @param value The value
+     * @return This result
+     */
+    public BenchmarkResult withCounter(String name, double value) {
+        counters.put(name, value);
+        return this;
+    }
+
+    /**
+     * @return The values added with {@link #withCounter(String, double)}, in order
+     */
+    public Map<String, Double> getCounters() {
+        return Collections.unmodifiableMap(counters);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(String.format(Locale.ROOT, "%s: %.1f ops/s, p50=%.1fus p99=%.1fus max=%.1fus, %.0f B/op",
+                name, getOpsPerSecond(), getLatencyMicros(50), getLatencyMicros(99),
+                latency.getMaxNanos() / 1000.0, getBytesPerOp()));
+
+        for (Map.Entry<String, Double> counter : counters.entrySet())
+            text.append(String.format(Locale.ROOT, ", %s=%.3f", counter.getKey(), counter.getValue()));
+
+        return text.toString();
+    }
+
+}
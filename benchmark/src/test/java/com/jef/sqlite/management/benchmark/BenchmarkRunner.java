@@ -0,0 +1,179 @@
+package com.jef.sqlite.management.benchmark;
+
+import com.jef.sqlite.management.metrics.LatencyHistogram;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs an operation a fixed number of times, first to warm up the JIT, the statement caches and the page cache,
+ * then to measure it.
+ * <p>
+ * Every measured operation is timed into a {@link LatencyHistogram}. The allocation per operation is the
+ * allocation of the thread over the whole measured loop divided by the operations; timing and recording
+ * allocate nothing, so it is the allocation of the library plus the operation itself.
+ * <p>
+ * The operation counts of the benchmarks are multiplied by the system property "benchmark.scale" (1 by default),
+ * so a quick run can use -Pbenchmark.scale=0.1 and a stable one -Pbenchmark.scale=10.
+ */
+public class BenchmarkRunner {
+
+    private final double scale;
+
+    public BenchmarkRunner() {
+        this(Double.parseDouble(System.getProperty("benchmark.scale", "1")));
+    }
+
+    public BenchmarkRunner(double scale) {
+        if (scale <= 0)
+            throw new IllegalArgumentException("Scale must be positive: " + scale);
+
+        this.scale = scale;
+    }
+
+    /**
+     * Scales an operation count.
+     *
+     * @param count The count at scale 1
+     * @return The scaled count, at least 1
+     */
+    public int operations(int count) {
+        return (int) Math.max(1, Math.round(count * scale));
+    }
+
+    /**
+     * Runs a benchmark. The indices passed to the operation are consecutive: 0 to warmupOperations - 1 while
+     * warming up, then warmupOperations to warmupOperations + measuredOperations - 1, so every call can
+     * use its own row or name.
+     *
+     * @param name The name of the benchmark
+     * @param warmupOperations The operations run before measuring, already scaled
+     * @param measuredOperations The operations measured, already scaled
+     * @param operation The operation
+     * @return The result of the measured operations
+     * @throws Exception The first error of the operation
+     */
+    public BenchmarkResult run(String name, int warmupOperations, int measuredOperations, Operation operation) throws Exception {
+        for (int i = 0; i < warmupOperations; i++)
+            operation.run(i);
+
+        // Garbage of the warmup should not be collected while measuring
+        System.gc();
+
+        LatencyHistogram latency = new LatencyHistogram();
+        int end = warmupOperations + measuredOperations;
+
+        long allocatedBefore = AllocationCounter.currentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        long previous = start;
+        for (int i = warmupOperations; i < end; i++) {
+            operation.run(i);
+
+            long now = System.nanoTime();
+            latency.record(now - previous);
+            previous = now;
+        }
+        long elapsed = previous - start;
+        long allocatedAfter = AllocationCounter.currentThreadAllocatedBytes();
+
+        long allocated = allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore;
+        BenchmarkResult result = new BenchmarkResult(name, measuredOperations, elapsed, latency, allocated);
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * Runs a benchmark on several threads at once. Every thread warms up, then all of them start measuring together.
+     * Thread t is passed the indices t * (warmupOperations + measuredOperations) and up, in the same order as
+     * {@link #run(String, int, int, Operation)}, so the indices are unique across the threads.
+     * The throughput is that of all the threads, from the start of the measurement to the end of the slowest one.
+     *
+     * @param name The name of the benchmark
+     * @param threads The number of threads
+     * @param warmupOperations The operations run by every thread before measuring, already scaled
+     * @param measuredOperations The operations measured on every thread, already scaled
+     * @param beforeMeasurement Run once every thread finished its warmup, before they start measuring
+     * @param operation The operation, called concurrently
+     * @return The result of the measured operations
+     * @throws Exception The first error of the operation on any thread
+     */
+    public BenchmarkResult runConcurrent(String name, int threads, int warmupOperations, int measuredOperations,
+                                         Runnable beforeMeasurement, Operation operation) throws Exception {
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong allocated = new AtomicLong();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch warmedUp = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            int first = t * (warmupOperations + measuredOperations);
+            Thread worker = new Thread(() -> {
+                try {
+                    try {
+                        for (int i = first; i < first + warmupOperations; i++)
+                            operation.run(i);
+                    } finally {
+                        warmedUp.countDown();
+                    }
+
+                    start.await();
+
+                    long allocatedBefore = AllocationCounter.currentThreadAllocatedBytes();
+                    long previous = System.nanoTime();
+                    for (int i = first + warmupOperations; i < first + warmupOperations + measuredOperations; i++) {
+                        operation.run(i);
+
+                        long now = System.nanoTime();
+                        latency.record(now - previous);
+                        previous = now;
+                    }
+
+                    long allocatedAfter = AllocationCounter.currentThreadAllocatedBytes();
+                    allocated.addAndGet(allocatedBefore < 0 ? 0 : allocatedAfter - allocatedBefore);
+                } catch (Exception | Error e) {
+                    error.compareAndSet(null, e);
+                } finally {
+                    done.countDown();
+                }
+            }, "benchmark-" + t);
+            worker.start();
+        }
+
+        warmedUp.await();
+        if (error.get() == null)
+            beforeMeasurement.run();
+
+        System.gc();
+        long startNanos = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - startNanos;
+
+        Throwable failure = error.get();
+        if (failure instanceof Exception)
+            throw (Exception) failure;
+        if (failure != null)
+            throw (Error) failure;
+
+        long allocatedBytes = AllocationCounter.currentThreadAllocatedBytes() < 0 ? -1 : allocated.get();
+        BenchmarkResult result = new BenchmarkResult(name, (long) threads * measuredOperations, elapsed, latency, allocatedBytes);
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * An operation of a benchmark.
+     */
+    public interface Operation {
+
+        /**
+         * @param index The index of the call, unique within a run
+         * @throws Exception Any error, it stops the benchmark
+         */
+        void run(int index) throws Exception;
+
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.jef.sqlite.management.benchmark;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.jef.sqlite.management.Management;
+import com.jef.sqlite.management.metrics.LatencyHistogram;
+import com.jef.sqlite.management.metrics.QueryMetricsListener;
+import com.jef.sqlite.management.models.Line;
+import com.jef.sqlite.management.models.Product;
+import com.jef.sqlite.management.queries.ProductQuery;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures a mix of reads and writes issued from several threads against one {@link Management}.
+ * <p>
+ * Reads are findById and findByName, writes are save and updateNameById, on a table of {@value #ROWS} products
+ * built by {@link DatasetGenerator}. Every combination of a read percentage and a number of threads runs on a new
+ * database. The defaults are 90/10 and 50/50 mixes on 1, 2, 4, 8, 16 and 32 threads, set with the system properties
+ * "benchmark.readPercents" and "benchmark.threads", for example -Pbenchmark.readPercents=90 -Pbenchmark.threads=1,8.
+ * WAL and the write queue are enabled with -Pbenchmark.wal=true and -Pbenchmark.writeQueue=true, to compare them.
+ * <p>
+ * Every combination reports the mix, then the reads and the writes apart, timed around the calls of the threads, so
+ * with the write queue the time a write waits for its batch is part of its latency. The mix also reports the time
+ * the calls spent acquiring the database from the helper, in total and at the 99th percentile, from the query metrics,
+ * and the writes retried on SQLITE_BUSY. The waits for the SQLite locks and for a pooled connection happen inside
+ * the statements and are only part of the latency of the reads and writes.
+ * Results are written to benchmark/build/benchmark/contention.csv.
+ */
+@RunWith(AndroidJUnit4.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class ContentionBenchmark {
+
+    private static final int ROWS = 10_000;
+    private static final int BATCH = 1_000;
+
+    private static final BenchmarkReport report = new BenchmarkReport("contention",
+            "threads", "read_percent", "wal", "write_queue");
+
+    private final BenchmarkRunner runner = new BenchmarkRunner();
+    private final DatasetGenerator generator = DatasetGenerator.fromSystemProperties();
+    private final boolean wal = Boolean.getBoolean("benchmark.wal");
+    private final boolean writeQueue = Boolean.getBoolean("benchmark.writeQueue");
+
+    @AfterClass
+    public static void writeReport() throws Exception {
+        report.write();
+    }
+
+    @Test
+    public void contention() throws Exception {
+        for (String readPercent : System.getProperty("benchmark.readPercents", "90,50").split(","))
+            for (String threads : System.getProperty("benchmark.threads", "1,2,4,8,16,32").split(","))
+                measure(Integer.parseInt(threads.trim()), Integer.parseInt(readPercent.trim()));
+    }
+
+    private void measure(int threads, int readPercent) throws Exception {
+        if (readPercent < 0 || readPercent > 100)
+            throw new IllegalArgumentException("Read percent must be between 0 and 100: " + readPercent);
+
+        try (BenchmarkDatabase database = new BenchmarkDatabase(ApplicationProvider.getApplicationContext())) {
+            Management management = database.getManagement();
+            management.setWriteAheadLoggingEnabled(wal);
+            management.setWriteQueueEnabled(writeQueue);
+
+            List<Line> lines = database.saveLines(generator.lines());
+            generator.populate(database, lines, 0, ROWS, BATCH);
+
+            ProductQuery products = database.products();
+            String name = readPercent + "/" + (100 - readPercent) + " x" + threads;
+
+            LatencyHistogram reads = new LatencyHistogram();
+            LatencyHistogram writes = new LatencyHistogram();
+            LatencyHistogram acquireWait = new LatencyHistogram();
+            AtomicLong totalAcquireWait = new AtomicLong();
+            QueryMetricsListener listener = metrics -> {
+                acquireWait.record(metrics.getConnectionWaitNanos());
+                totalAcquireWait.addAndGet(metrics.getConnectionWaitNanos());
+            };
+            AtomicBoolean measuring = new AtomicBoolean();
+            long retriesBefore = management.getRetryPolicy().getRetryCount();
+
+            BenchmarkResult mix;
+            try {
+                mix = runner.runConcurrent(name, threads, runner.operations(200), runner.operations(1_000),
+                        () -> {
+                            measuring.set(true);
+                            management.addQueryMetricsListener(listener);
+                        },
+                        i -> {
+                            long start = System.nanoTime();
+                            boolean read = call(products, lines, readPercent, i);
+                            if (measuring.get())
+                                (read ? reads : writes).record(System.nanoTime() - start);
+                        });
+            } finally {
+                management.removeQueryMetricsListener(listener);
+            }
+
+            mix.withCounter("acquire_wait_ms", totalAcquireWait.get() / (double) TimeUnit.MILLISECONDS.toNanos(1))
+                    .withCounter("acquire_wait_p99_us", acquireWait.getValueAtPercentile(99) / 1000.0)
+                    .withCounter("busy_retries", management.getRetryPolicy().getRetryCount() - retriesBefore);
+
+            report.add(mix, threads, readPercent, wal, writeQueue);
+            report.add(new BenchmarkResult(name + " reads", reads.getCount(), mix.getElapsedNanos(), reads, -1),
+                    threads, readPercent, wal, writeQueue);
+            report.add(new BenchmarkResult(name + " writes", writes.getCount(), mix.getElapsedNanos(), writes, -1),
+                    threads, readPercent, wal, writeQueue);
+        }
+    }
+
+    /**
+     * Issues the call of an index: a read with a probability of readPercent, a write otherwise,
+     * alternating between the two methods of each kind. Names are unique, every index is used once.
+     *
+     * @return true if the call was a read
+     */
+    private boolean call(ProductQuery products, List<Line> lines, int readPercent, int index) {
+        int id = (int) generator.pick(2L * index, ROWS) + 1;
+        boolean read = generator.pick(2L * index + 1, 100) < readPercent;
+
+        if (read && index % 2 == 0)
+            products.findById(id);
+        else if (read)
+            products.findByName(generator.name(id - 1));
+        else if (index % 2 == 0)
+            products.save(new Product(0, "contention " + index, true, lines.get(index % lines.size())));
+        else
+            products.updateNameById("contention " + index, id);
+
+        return read;
+    }
+
+}
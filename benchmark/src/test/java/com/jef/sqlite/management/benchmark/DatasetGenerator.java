@@ -0,0 +1,208 @@
+package com.jef.sqlite.management.benchmark;
+
+import com.jef.sqlite.management.models.Line;
+import com.jef.sqlite.management.models.Product;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Deterministic generator of the test entities: lines, and products joined to them.
+ * <p>
+ * Every product is a pure function of the seed and its index, so a dataset is the same on every run, JVM and
+ * version of the library, and can be generated in batches of any size. Product names are unique, as the
+ * schema requires. The line of a product follows a Zipf distribution over the lines: with skew 0 every line has
+ * the same number of products, with skew 1 the first line has about as many as the next three together.
+ * A share of the products, the active ratio, is active.
+ * <p>
+ * The defaults can be changed with the system properties "benchmark.seed", "benchmark.lines", "benchmark.skew"
+ * and "benchmark.activeRatio", for example -Pbenchmark.skew=0 for a uniform dataset.
+ */
+public class DatasetGenerator {
+
+    public static final long DEFAULT_SEED = 42;
+    public static final int DEFAULT_LINES = 1000;
+    public static final double DEFAULT_SKEW = 1.0;
+    public static final double DEFAULT_ACTIVE_RATIO = 0.8;
+
+    // Line creation dates are spread from 2024-01-01 UTC, one hour apart
+    private static final long FIRST_LINE_DATE = 1704067200000L;
+    private static final long LINE_DATE_STEP = 3600_000L;
+
+    private final long seed;
+    private final int lines;
+    private final double skew;
+    private final double activeRatio;
+    private final double[] lineDistribution;
+
+    /**
+     * @param seed The seed of the dataset
+     * @param lines The number of lines, the cardinality of the join
+     * @param skew The exponent of the Zipf distribution of the products over the lines, 0 for uniform
+     * @param activeRatio The share of active products, between 0 and 1
+     */
+    public DatasetGenerator(long seed, int lines, double skew, double activeRatio) {
+        if (lines < 1)
+            throw new IllegalArgumentException("Lines must be positive: " + lines);
+        if (skew < 0)
+            throw new IllegalArgumentException("Skew must not be negative: " + skew);
+        if (activeRatio < 0 || activeRatio > 1)
+            throw new IllegalArgumentException("Active ratio must be between 0 and 1: " + activeRatio);
+
+        this.seed = seed;
+        this.lines = lines;
+        this.skew = skew;
+        this.activeRatio = activeRatio;
+        this.lineDistribution = cumulativeZipf(lines, skew);
+    }
+
+    /**
+     * @return A generator configured with the system properties, or the defaults
+     */
+    public static DatasetGenerator fromSystemProperties() {
+        return new DatasetGenerator(
+                Long.getLong("benchmark.seed", DEFAULT_SEED),
+                Integer.getInteger("benchmark.lines", DEFAULT_LINES),
+                Double.parseDouble(System.getProperty("benchmark.skew", String.valueOf(DEFAULT_SKEW))),
+                Double.parseDouble(System.getProperty("benchmark.activeRatio", String.valueOf(DEFAULT_ACTIVE_RATIO))));
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public double getSkew() {
+        return skew;
+    }
+
+    public double getActiveRatio() {
+        return activeRatio;
+    }
+
+    /**
+     * Generates the lines, not saved yet.
+     *
+     * @return The lines named "line 0" to "line lines - 1"
+     */
+    public List<Line> lines() {
+        List<Line> result = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++)
+            result.add(new Line(0, "line " + i, new Date(FIRST_LINE_DATE + i * LINE_DATE_STEP)));
+
+        return result;
+    }
+
+    /**
+     * Generates a product, not saved yet.
+     *
+     * @param index The index of the product in the dataset
+     * @param savedLines The lines returned by {@link #lines()}, with the ids assigned when saving them
+     * @return The product
+     */
+    public Product product(long index, List<Line> savedLines) {
+        long hash = mix(seed + index * 0x9E3779B97F4A7C15L);
+        Line line = savedLines.get(lineIndex(uniform(hash)));
+        boolean active = uniform(mix(hash)) < activeRatio;
+
+        return new Product(0, name(index), active, line);
+    }
+
+    /**
+     * @param index The index of a product in the dataset
+     * @return The name of the product
+     */
+    public String name(long index) {
+        return "product " + index;
+    }
+
+    /**
+     * Picks a row for a lookup, uniformly and deterministically, so every run reads the same rows.
+     *
+     * @param index The index of the lookup
+     * @param rows The number of rows
+     * @return A value between 0 and rows - 1
+     */
+    public long pick(long index, long rows) {
+        return (mix(~seed + index * 0x9E3779B97F4A7C15L) >>> 1) % rows;
+    }
+
+    /**
+     * Generates the products of a range of indices and saves them with upsertAll, one transaction per batch.
+     * The database must be empty when the range starts at 0, so the id of every product is its index + 1.
+     *
+     * @param database The database, with the lines already saved
+     * @param savedLines The saved lines
+     * @param from The first index, inclusive
+     * @param to The last index, exclusive
+     * @param batchSize The products per transaction
+     */
+    public void populate(BenchmarkDatabase database, List<Line> savedLines, long from, long to, int batchSize) {
+        List<Product> batch = new ArrayList<>(batchSize);
+        for (long start = from; start < to; start += batchSize) {
+            long end = Math.min(to, start + batchSize);
+
+            batch.clear();
+            for (long index = start; index < end; index++)
+                batch.add(product(index, savedLines));
+
+            long[] ids = database.products().upsertAll(batch);
+            if (ids[0] != start + 1 || ids[ids.length - 1] != end)
+                throw new IllegalStateException("Expected the ids " + (start + 1) + " to " + end +
+                        ", got " + ids[0] + " to " + ids[ids.length - 1] + ": the database was not empty");
+        }
+    }
+
+    /**
+     * Gets the line of a uniform value, by binary search over the cumulative distribution.
+     */
+    int lineIndex(double uniform) {
+        int low = 0;
+        int high = lineDistribution.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (lineDistribution[middle] <= uniform)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        return low;
+    }
+
+    private static double[] cumulativeZipf(int lines, double skew) {
+        double[] cumulative = new double[lines];
+        double total = 0;
+        for (int i = 0; i < lines; i++) {
+            total += 1 / Math.pow(i + 1, skew);
+            cumulative[i] = total;
+        }
+
+        for (int i = 0; i < lines; i++)
+            cumulative[i] /= total;
+
+        cumulative[lines - 1] = 1;
+        return cumulative;
+    }
+
+    /**
+     * The finalizer of SplitMix64: a bijection that spreads consecutive inputs over all the bits.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * @return A value in [0, 1) from the 53 high bits of a hash
+     */
+    private static double uniform(long hash) {
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.jef.sqlite.management.benchmark;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.jef.sqlite.management.models.Line;
+import com.jef.sqlite.management.models.Product;
+import com.jef.sqlite.management.queries.ProductQuery;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Microbenchmarks of the query methods of ProductQuery, on the native SQLite of Robolectric.
+ * <p>
+ * Every benchmark starts from an empty database with {@value #LINES} lines and, for the reads and the updates,
+ * {@value #PRODUCTS} products. Results are printed and written to benchmark/build/benchmark/query_engine.csv:
+ * <pre>
+ * ./gradlew :benchmark:testReleaseUnitTest -Pbenchmark
+ * </pre>
+ * Absolute numbers of a JVM are not those of a device, compare them between versions of the library.
+ */
+@RunWith(AndroidJUnit4.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class QueryEngineBenchmark {
+
+    private static final int LINES = 10;
+    private static final int PRODUCTS = 1000;
+    private static final int BATCH = 100;
+
+    private static final BenchmarkReport report = new BenchmarkReport("query_engine");
+
+    private final BenchmarkRunner runner = new BenchmarkRunner();
+    private BenchmarkDatabase database;
+    private ProductQuery products;
+    private List<Line> lines;
+
+    @Before
+    public void setUp() {
+        database = new BenchmarkDatabase(ApplicationProvider.getApplicationContext());
+        products = database.products();
+        lines = database.saveLines(LINES);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @AfterClass
+    public static void writeReport() throws Exception {
+        report.write();
+    }
+
+    private Product product(String name, int index) {
+        return new Product(0, name, index % 2 == 0, lines.get(index % LINES));
+    }
+
+    @Test
+    public void save() throws Exception {
+        report.add(runner.run("save", runner.operations(2_000), runner.operations(10_000),
+                i -> products.save(product("save " + i, i))));
+    }
+
+    @Test
+    public void saveAll() throws Exception {
+        BenchmarkResult result = runner.run("saveAll x" + BATCH, runner.operations(20), runner.operations(100), i -> {
+            List<Product> batch = new ArrayList<>(BATCH);
+            for (int j = 0; j < BATCH; j++)
+                batch.add(product("saveAll " + i + "-" + j, j));
+
+            products.upsertAll(batch);
+        });
+        report.add(result);
+    }
+
+    @Test
+    public void findById() throws Exception {
+        int[] ids = database.saveProducts("product", PRODUCTS, lines);
+        report.add(runner.run("findById", runner.operations(5_000), runner.operations(20_000),
+                i -> assertTrue(products.findById(ids[i % ids.length]).isPresent())));
+    }
+
+    @Test
+    public void findAllWithJoins() throws Exception {
+        database.saveProducts("product", PRODUCTS, lines);
+        report.add(runner.run("findAll x" + PRODUCTS, runner.operations(20), runner.operations(100),
+                i -> assertNotNull(products.findAll().get(i % PRODUCTS).getLine())));
+    }
+
+    @Test
+    public void updateNameById() throws Exception {
+        int[] ids = database.saveProducts("product", PRODUCTS, lines);
+        report.add(runner.run("updateNameById", runner.operations(2_000), runner.operations(10_000),
+                i -> assertEquals(1, products.updateNameById("renamed " + i, ids[i % ids.length]))));
+    }
+
+    @Test
+    public void existsById() throws Exception {
+        int[] ids = database.saveProducts("product", PRODUCTS, lines);
+        report.add(runner.run("existsById", runner.operations(5_000), runner.operations(20_000),
+                i -> assertTrue(products.existsById(ids[i % ids.length]))));
+    }
+
+    @Test
+    public void deleteById() throws Exception {
+        int warmup = runner.operations(2_000);
+        int measured = runner.operations(10_000);
+
+        // One row per call, every call deletes a different one
+        int[] ids = database.saveProducts("product", warmup + measured, lines);
+        report.add(runner.run("deleteById", warmup, measured,
+                i -> assertEquals(1, products.deleteById(ids[i]))));
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.jef.sqlite.management.benchmark;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.jef.sqlite.management.metrics.LatencyHistogram;
+import com.jef.sqlite.management.metrics.QueryMetricsListener;
+import com.jef.sqlite.management.models.Line;
+import com.jef.sqlite.management.models.Product;
+import com.jef.sqlite.management.queries.ProductQuery;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures how the latency of the query methods grows with the size of the products table.
+ * <p>
+ * The table is filled by {@link DatasetGenerator} up to every size in turn, 10k, 100k, 1M and 10M rows by default,
+ * and at every size the benchmark measures findById, findByName, the mapping and join resolution of findById,
+ * validate and updateNameById, with the same number of operations. The sizes are set with the system property
+ * "benchmark.sizes", for example -Pbenchmark.sizes=10000,100000 for a quick run.
+ * <p>
+ * Results are written to benchmark/build/benchmark/scaling-VERSION.csv, with the version passed in
+ * -Pbenchmark.version, so the files of two versions of the library can be compared row by row.
+ */
+@RunWith(AndroidJUnit4.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class ScalingBenchmark {
+
+    private static final String DEFAULT_SIZES = "10000,100000,1000000,10000000";
+    private static final int BATCH = 10_000;
+
+    private static final String version = System.getProperty("benchmark.version", "snapshot");
+    private static final BenchmarkReport report = new BenchmarkReport("scaling-" + version,
+            "version", "rows", "lines", "skew", "active_ratio");
+
+    private final BenchmarkRunner runner = new BenchmarkRunner();
+    private final DatasetGenerator generator = DatasetGenerator.fromSystemProperties();
+
+    @AfterClass
+    public static void writeReport() throws Exception {
+        report.write();
+    }
+
+    @Test
+    public void scaling() throws Exception {
+        try (BenchmarkDatabase database = new BenchmarkDatabase(ApplicationProvider.getApplicationContext())) {
+            List<Line> lines = database.saveLines(generator.lines());
+
+            long rows = 0;
+            for (String size : System.getProperty("benchmark.sizes", DEFAULT_SIZES).split(",")) {
+                long target = Long.parseLong(size.trim());
+                if (target < rows)
+                    throw new IllegalArgumentException("Sizes must be increasing: " + size);
+
+                long start = System.nanoTime();
+                generator.populate(database, lines, rows, target, BATCH);
+                System.out.println("Populated " + target + " rows in " +
+                        TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) + "s");
+
+                rows = target;
+                measure(database, lines, rows);
+            }
+        }
+    }
+
+    private void measure(BenchmarkDatabase database, List<Line> lines, long rows) throws Exception {
+        ProductQuery products = database.products();
+        int warmup = runner.operations(2_000);
+        int measured = runner.operations(10_000);
+
+        add(runner.run("findById", warmup, measured,
+                i -> assertTrue(products.findById(id(i, rows)).isPresent())), rows);
+
+        add(joinResolution(database, products, measured, rows), rows);
+
+        // Names of rows renamed by the updates at a smaller size are not found anymore, the lookup is the same
+        add(runner.run("findByName", warmup, measured,
+                i -> products.findByName(generator.name(generator.pick(i, rows)))), rows);
+
+        add(runner.run("validate", warmup, measured,
+                i -> assertTrue(products.validate(new Product(0, "candidate " + i, true, lines.get(i % lines.size()))))), rows);
+
+        add(runner.run("updateNameById", warmup, measured,
+                i -> assertEquals(1, products.updateNameById("renamed " + rows + " " + i, id(i, rows)))), rows);
+    }
+
+    /**
+     * Measures the time findById spends mapping its row, which includes resolving the line of the product,
+     * from the query metrics of the calls. findById was already warmed up.
+     */
+    private BenchmarkResult joinResolution(BenchmarkDatabase database, ProductQuery products, int operations, long rows) throws Exception {
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong total = new AtomicLong();
+        QueryMetricsListener listener = metrics -> {
+            latency.record(metrics.getMapNanos());
+            total.addAndGet(metrics.getMapNanos());
+        };
+
+        database.getManagement().addQueryMetricsListener(listener);
+        try {
+            runner.run("findById with metrics", 0, operations, i -> products.findById(id(i, rows)).get().getLine());
+        } finally {
+            database.getManagement().removeQueryMetricsListener(listener);
+        }
+
+        return new BenchmarkResult("join resolution", latency.getCount(), total.get(), latency, -1);
+    }
+
+    private int id(int index, long rows) {
+        return (int) generator.pick(index, rows) + 1;
+    }
+
+    private void add(BenchmarkResult result, long rows) {
+        report.add(result, version, rows, generator.getLines(), generator.getSkew(), generator.getActiveRatio());
+    }
+
+}
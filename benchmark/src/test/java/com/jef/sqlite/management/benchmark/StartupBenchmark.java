@@ -0,0 +1,185 @@
+package com.jef.sqlite.management.benchmark;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.jef.sqlite.management.Management;
+import com.jef.sqlite.management.Query.QueryFactory;
+import com.jef.sqlite.management.SQLiteTable;
+import com.jef.sqlite.management.metrics.LatencyHistogram;
+import com.jef.sqlite.management.models.Line;
+import com.jef.sqlite.management.models.Product;
+import com.jef.sqlite.management.queries.LineQuery;
+import com.jef.sqlite.management.queries.ProductQuery;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.annotation.SQLiteMode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Measures the startup path of an application, phase by phase: constructing the {@link Management},
+ * constructing the {@link SQLiteTable} of every entity, {@link QueryFactory#create} for every query interface,
+ * opening the database and the first findById.
+ * <p>
+ * The tables only register their schema: the DDL runs when the database is opened, for every table at once,
+ * and is skipped while the schema fingerprints match. The open is therefore a phase of its own, and the startup
+ * is measured in three scenarios:
+ * <ul>
+ *     <li>cold: the first startup of the JVM on a new database, with the classes of the library not loaded yet.
+ *     Every benchmark class runs in its own JVM, so this is a single sample.</li>
+ *     <li>warm-new-database: later startups on a deleted database, the first launch of the application,
+ *     which creates the tables.</li>
+ *     <li>warm-existing-database: later startups on the database of a previous one, every other launch.</li>
+ * </ul>
+ * Results are written to benchmark/build/benchmark/startup.csv, one row per scenario and phase, plus the total.
+ */
+@RunWith(AndroidJUnit4.class)
+@SQLiteMode(SQLiteMode.Mode.NATIVE)
+public class StartupBenchmark {
+
+    private static final BenchmarkReport report = new BenchmarkReport("startup", "scenario");
+
+    private final BenchmarkRunner runner = new BenchmarkRunner();
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @AfterClass
+    public static void writeReport() throws Exception {
+        report.write();
+    }
+
+    @Test
+    public void startup() {
+        // Must be the first use of the library in this JVM
+        Phases cold = new Phases();
+        context.deleteDatabase(BenchmarkDatabase.NAME);
+        startup(cold);
+        cold.report("cold");
+
+        Phases newDatabase = new Phases();
+        int warmup = runner.operations(10);
+        int measured = runner.operations(100);
+        for (int i = 0; i < warmup + measured; i++) {
+            context.deleteDatabase(BenchmarkDatabase.NAME);
+            startup(i < warmup ? new Phases() : newDatabase);
+        }
+        newDatabase.report("warm-new-database");
+
+        // A previous launch saved a product to find
+        context.deleteDatabase(BenchmarkDatabase.NAME);
+        try (BenchmarkDatabase database = new BenchmarkDatabase(context)) {
+            database.saveProducts("product", 1, database.saveLines(1));
+        }
+
+        Phases existingDatabase = new Phases();
+        for (int i = 0; i < warmup + measured; i++)
+            startup(i < warmup ? new Phases() : existingDatabase);
+        existingDatabase.report("warm-existing-database");
+    }
+
+    /**
+     * Runs the startup path once, timing every phase, then closes the database.
+     */
+    private void startup(Phases phases) {
+        phases.start();
+
+        Management management = phases.measure("new Management", () -> new Management(context));
+        try {
+            phases.measure("new SQLiteTable<Line>", () -> new SQLiteTable<Line>(management) { });
+            phases.measure("new SQLiteTable<Product>", () -> new SQLiteTable<Product>(management) { });
+
+            ProductQuery products = phases.measure("QueryFactory.create(ProductQuery)",
+                    () -> QueryFactory.create(ProductQuery.class, management));
+            phases.measure("QueryFactory.create(LineQuery)",
+                    () -> QueryFactory.create(LineQuery.class, management));
+
+            phases.measure("open", () -> {
+                management.releaseDatabase(management.acquireWritableDatabase());
+                return null;
+            });
+            phases.measure("first findById", () -> products.findById(1));
+
+            phases.finish("total");
+        } finally {
+            management.close();
+        }
+    }
+
+    /**
+     * The latency and allocation of every phase over several startups.
+     */
+    private static class Phases {
+
+        private final Map<String, Phase> phases = new LinkedHashMap<>();
+        private long startNanos;
+        private long startAllocated;
+
+        void start() {
+            startAllocated = AllocationCounter.currentThreadAllocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        <T> T measure(String name, Supplier<T> phase) {
+            long allocatedBefore = AllocationCounter.currentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            T result = phase.get();
+            long elapsed = System.nanoTime() - start;
+            long allocatedAfter = AllocationCounter.currentThreadAllocatedBytes();
+
+            phases.computeIfAbsent(name, Phase::new).record(elapsed, allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore);
+            return result;
+        }
+
+        void finish(String name) {
+            long elapsed = System.nanoTime() - startNanos;
+            long allocated = AllocationCounter.currentThreadAllocatedBytes();
+
+            phases.computeIfAbsent(name, Phase::new).record(elapsed, startAllocated < 0 ? -1 : allocated - startAllocated);
+        }
+
+        void report(String scenario) {
+            for (Phase phase : phases.values()) {
+                BenchmarkResult result = phase.result();
+                System.out.println(scenario + " " + result);
+                report.add(result, scenario);
+            }
+        }
+
+    }
+
+    private static class Phase {
+
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private long totalNanos;
+        private long allocatedBytes;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        void record(long nanos, long allocated) {
+            latency.record(nanos);
+            totalNanos += nanos;
+            allocatedBytes = allocated < 0 || allocatedBytes < 0 ? -1 : allocatedBytes + allocated;
+        }
+
+        BenchmarkResult result() {
+            return new BenchmarkResult(name, latency.getCount(), totalNanos, latency, allocatedBytes);
+        }
+
+    }
+
+}
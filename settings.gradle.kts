@@ -22,3 +22,4 @@ dependencyResolutionManagement {
 rootProject.name = "sqlite_management"
 include(":sqlite_management")
 include(":app")
+include(":benchmark")
@@ -0,0 +1,51 @@
+package com.jef.sqlite.management.models;
+
+import com.jef.sqlite.management.interfaces.Cacheable;
+import com.jef.sqlite.management.interfaces.Column;
+import com.jef.sqlite.management.interfaces.Table;
+
+@Table(name = "brands")
+@Cacheable(maxEntries = 3)
+public class Brand {
+
+    @Column(name = "id", primaryKey = true, autoIncrement = true)
+    private int id;
+
+    @Column(name = "name")
+    private String name;
+
+    @Column(name = "country", defaultValue = "Unknown")
+    private String country;
+
+    public Brand() {
+    }
+
+    public Brand(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public void setCountry(String country) {
+        this.country = country;
+    }
+}
@@ -1,11 +1,13 @@
 package com.jef.sqlite.management.models;
 
 import com.jef.sqlite.management.interfaces.Column;
+import com.jef.sqlite.management.interfaces.ReferenceTable;
 import com.jef.sqlite.management.interfaces.Table;
 
 import java.util.Date;
 
 @Table(name = "lines")
+@ReferenceTable
 public class Line {
 
     @Column(name = "id", primaryKey = true, autoIncrement = true)
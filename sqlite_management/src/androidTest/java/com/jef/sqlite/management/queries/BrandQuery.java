@@ -0,0 +1,19 @@
+package com.jef.sqlite.management.queries;
+
+import com.jef.sqlite.management.interfaces.DynamicQuery;
+import com.jef.sqlite.management.models.Brand;
+
+import java.util.Optional;
+
+/**
+ * Query interface for Brand entity
+ */
+public interface BrandQuery extends DynamicQuery<Brand> {
+
+
+    long save(Brand brand);
+    Optional<Brand> findById(int id);
+    int updateNameById(String name, int id);
+
+
+}
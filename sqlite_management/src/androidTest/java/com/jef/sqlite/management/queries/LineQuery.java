@@ -3,6 +3,7 @@ package com.jef.sqlite.management.queries;
 import android.content.ContentValues;
 
 import com.jef.sqlite.management.interfaces.DynamicQuery;
+import com.jef.sqlite.management.live.LiveQuery;
 import com.jef.sqlite.management.models.Line;
 
 import java.util.Date;
@@ -22,6 +23,7 @@ public interface LineQuery extends DynamicQuery<Line> {
     int updateById(ContentValues values, int id);
     int updateNameById(String name, int id);
     int updateDateCreationById(Date dateCreation, int id);
+    LiveQuery<Optional<Line>> findByName(String name);
 
 
 }
@@ -1,10 +1,14 @@
 package com.jef.sqlite.management.queries;
 
+import android.os.CancellationSignal;
+
 import com.jef.sqlite.management.interfaces.DynamicQuery;
+import com.jef.sqlite.management.interfaces.QueryTimeout;
 import com.jef.sqlite.management.models.Product;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface ProductQuery extends DynamicQuery<Product> {
 
@@ -153,5 +157,29 @@ public interface ProductQuery extends DynamicQuery<Product> {
 
     int deleteById(int id);
 
+    /**
+     * Find products by name asynchronously, on the read executor
+     * @param name the name to search for
+     * @return a future with the products with the given name, ordered by id in ascending order
+     */
+    CompletableFuture<List<Product>> findByNameOrderByIdAsc(String name);
+
+    /**
+     * Update the active status of the products with a name asynchronously, on the write executor
+     * @param active the new active status
+     * @param name the name of the products to update
+     * @return a future with the number of rows updated
+     */
+    CompletableFuture<Integer> updateActiveByName(boolean active, String name);
+
+    /**
+     * Find products by name, cancellable by the caller and limited to one second
+     * @param name the name to search for
+     * @param signal the signal that cancels the query
+     * @return a list of products with the given name
+     */
+    @QueryTimeout(1000)
+    List<Product> findByName(String name, CancellationSignal signal);
+
 
 }
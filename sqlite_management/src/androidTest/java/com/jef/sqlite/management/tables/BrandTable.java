@@ -0,0 +1,60 @@
+package com.jef.sqlite.management.tables;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.jef.sqlite.management.Management;
+import com.jef.sqlite.management.SQLiteTable;
+import com.jef.sqlite.management.Query.QueryFactory;
+import com.jef.sqlite.management.models.Brand;
+import com.jef.sqlite.management.queries.BrandQuery;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Table class for Brand entity, cached in memory with @Cacheable
+ */
+public class BrandTable extends SQLiteTable<Brand> {
+
+    public BrandTable(@NonNull Context context) {
+        super(new Management(context));
+    }
+
+    private BrandQuery query() {
+        return QueryFactory.create(BrandQuery.class, getManagement());
+    }
+
+    /**
+     * Save a brand to the database
+     * @param brand the brand to save
+     * @return the saved brand with the ID set from the database
+     */
+    public Brand saveBrand(Brand brand) {
+        long id = query().save(brand);
+        brand.setId((int) id);
+        return brand;
+    }
+
+    /**
+     * Save a list of brands in a single transaction
+     * @param brands the brands to save
+     * @return the saved brands, the generated IDs and default values are assigned by the save
+     */
+    public List<Brand> saveAllBrands(List<Brand> brands) {
+        query().upsertAll(brands);
+        return brands;
+    }
+
+    public Optional<Brand> getBrandById(int id) {
+        return query().findById(id);
+    }
+
+    public int updateNameById(String name, int id) {
+        return query().updateNameById(name, id);
+    }
+
+
+
+}
@@ -7,6 +7,7 @@ import androidx.annotation.NonNull;
 import com.jef.sqlite.management.Management;
 import com.jef.sqlite.management.SQLiteTable;
 import com.jef.sqlite.management.Query.QueryFactory;
+import com.jef.sqlite.management.live.LiveQuery;
 import com.jef.sqlite.management.models.Line;
 import com.jef.sqlite.management.queries.LineQuery;
 
@@ -62,6 +63,15 @@ public class LineTable extends SQLiteTable<Line> {
         return query().updateDateCreationById(dateCreation, id);
     }
 
+    /**
+     * Observe the line with a name
+     * @param name the name of the line
+     * @return a live query re-run when the lines table changes
+     */
+    public LiveQuery<Optional<Line>> observeLineByName(String name) {
+        return query().findByName(name);
+    }
+
 
 
 }
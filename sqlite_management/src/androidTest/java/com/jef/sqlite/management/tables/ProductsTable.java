@@ -1,6 +1,7 @@
 package com.jef.sqlite.management.tables;
 
 import android.content.Context;
+import android.os.CancellationSignal;
 
 import androidx.annotation.NonNull;
 
@@ -12,6 +13,8 @@ import com.jef.sqlite.management.models.Product;
 import com.jef.sqlite.management.queries.ProductQuery;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class ProductsTable extends SQLiteTable<Product>{
 
@@ -83,6 +86,16 @@ public class ProductsTable extends SQLiteTable<Product>{
         return product;
     }
 
+    /**
+     * Save a list of products in a single transaction, inserting or updating each one
+     * @param products the products to save
+     * @return the saved products, the generated IDs are assigned by the save
+     */
+    public List<Product> saveAllProducts(List<Product> products) {
+        query().upsertAll(products);
+        return products;
+    }
+
     /**
      * Update a product by id
      * @param values the values to update
@@ -146,6 +159,15 @@ public class ProductsTable extends SQLiteTable<Product>{
         return query().validate(product);
     }
 
+    /**
+     * Validate a list of products against database constraints in a single batch
+     * @param products the products to validate
+     * @return the invalid products with their validation errors
+     */
+    public Map<Product, List<String>> validateAllProducts(List<Product> products) {
+        return query().validateAll(products);
+    }
+
     /**
      * Find products by name and active status
      * @param name the name to search for
@@ -201,6 +223,35 @@ public class ProductsTable extends SQLiteTable<Product>{
         return query().deleteById(id);
     }
 
+    /**
+     * Get the products with a name without blocking the caller
+     * @param name the name to search for
+     * @return a future with the products ordered by id in ascending order
+     */
+    public CompletableFuture<List<Product>> getProductsByNameAsync(String name) {
+        return query().findByNameOrderByIdAsc(name);
+    }
+
+    /**
+     * Update the active status of the products with a name without blocking the caller
+     * @param active the new active status
+     * @param name the name of the products to update
+     * @return a future with the number of rows updated
+     */
+    public CompletableFuture<Integer> updateProductActiveByNameAsync(boolean active, String name) {
+        return query().updateActiveByName(active, name);
+    }
+
+    /**
+     * Get the products with a name, stopping the query when the signal is cancelled
+     * @param name the name to search for
+     * @param signal the signal that cancels the query
+     * @return the products with the given name
+     */
+    public List<Product> getProductsByName(String name, CancellationSignal signal) {
+        return query().findByName(name, signal);
+    }
+
 
 
 
@@ -0,0 +1,187 @@
+package com.jef.sqlite.management.tests;
+
+import android.content.Context;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.jef.sqlite.management.cache.CacheStats;
+import com.jef.sqlite.management.cache.EntityCache;
+import com.jef.sqlite.management.interfaces.Cacheable;
+import com.jef.sqlite.management.interfaces.Column;
+import com.jef.sqlite.management.interfaces.Table;
+import com.jef.sqlite.management.models.Brand;
+import com.jef.sqlite.management.tables.BrandTable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented test for BrandTable class and the entity cache of @Cacheable entities.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BrandTableTest {
+
+    private BrandTable brandTable;
+    private Context context;
+
+    @Before
+    public void setUp() {
+        // Get the context for the test
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        // Initialize the BrandTable, each instance has its own management and entity cache
+        brandTable = new BrandTable(context);
+    }
+
+    @Test
+    public void testGetBrandByIdFromCache() {
+        Brand savedBrand = brandTable.saveBrand(new Brand(0, "Test Brand Cache"));
+
+        // The second lookup is answered by the entity cache with the same instance
+        Brand first = brandTable.getBrandById(savedBrand.getId()).get();
+        Brand second = brandTable.getBrandById(savedBrand.getId()).get();
+        assertSame(first, second);
+
+        CacheStats stats = stats();
+        assertEquals("brands", stats.getName());
+        assertEquals(1, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getSize());
+    }
+
+    @Test
+    public void testUpdateInvalidatesCachedBrand() {
+        Brand savedBrand = brandTable.saveBrand(new Brand(0, "Test Brand Invalidate"));
+        Brand cached = brandTable.getBrandById(savedBrand.getId()).get();
+
+        // An update drops the cached brand, the next lookup reads the new name
+        assertEquals(1, brandTable.updateNameById("Test Brand Invalidate Updated", savedBrand.getId()));
+        Brand updated = brandTable.getBrandById(savedBrand.getId()).get();
+        assertNotSame(cached, updated);
+        assertEquals("Test Brand Invalidate Updated", updated.getName());
+
+        // Saving the brand again with its id also drops it
+        updated.setName("Test Brand Invalidate Saved");
+        brandTable.saveBrand(updated);
+        assertEquals("Test Brand Invalidate Saved", brandTable.getBrandById(savedBrand.getId()).get().getName());
+    }
+
+    @Test
+    public void testCacheEvictsLeastRecentlyUsedBrand() {
+        List<Brand> brands = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+            brands.add(brandTable.saveBrand(new Brand(0, "Test Brand Evict " + i)));
+
+        // Brand has maxEntries = 3: caching the fourth brand evicts the first one
+        for (Brand brand : brands)
+            assertTrue(brandTable.getBrandById(brand.getId()).isPresent());
+
+        CacheStats stats = stats();
+        assertEquals(3, stats.getMaxSize());
+        assertEquals(3, stats.getSize());
+        assertEquals(1, stats.getEvictions());
+
+        // The most recent brand is a hit, the evicted one is loaded again
+        brandTable.getBrandById(brands.get(3).getId());
+        assertEquals(1, stats().getHits());
+        brandTable.getBrandById(brands.get(0).getId());
+        assertEquals(1, stats().getHits());
+        assertEquals(5, stats().getMisses());
+    }
+
+    @Test
+    public void testSaveAllAssignsGeneratedKeysAndDefaultValues() {
+        Brand first = new Brand(0, "Test Brand Defaults 1");
+        Brand second = new Brand(0, "Test Brand Defaults 2");
+        second.setCountry("Spain");
+
+        // The keys and the default values generated by the database are written back onto the entities
+        brandTable.saveAllBrands(Arrays.asList(first, second));
+        assertTrue(first.getId() > 0);
+        assertEquals(first.getId() + 1, second.getId());
+        assertEquals("Unknown", first.getCountry());
+        assertEquals("Spain", second.getCountry());
+        assertEquals("Unknown", brandTable.getBrandById(first.getId()).get().getCountry());
+    }
+
+    @Test
+    public void testSaveExistingBrandKeepsNullValue() {
+        Brand brand = brandTable.saveBrand(new Brand(0, "Test Brand Null"));
+        assertEquals("Unknown", brand.getCountry());
+
+        // Saving an existing brand writes its null values, the default only applies to new rows
+        brand.setCountry(null);
+        brandTable.saveBrand(brand);
+        assertNull(brand.getCountry());
+        assertNull(brandTable.getBrandById(brand.getId()).get().getCountry());
+    }
+
+    @Test
+    public void testCachedEntityExpires() throws InterruptedException {
+        EntityCache entityCache = new EntityCache();
+        entityCache.put(new ExpiringBrand(1));
+
+        assertNotNull(entityCache.get(ExpiringBrand.class, 1));
+
+        // Past its ttl the entity is no longer returned
+        Thread.sleep(100);
+        assertNull(entityCache.get(ExpiringBrand.class, 1));
+    }
+
+    @Test
+    public void testInvalidateTableClearsCachedEntities() {
+        EntityCache entityCache = new EntityCache();
+        entityCache.put(new ExpiringBrand(1));
+        entityCache.put(new ExpiringBrand(2));
+
+        entityCache.invalidate(ExpiringBrand.class, 1);
+        assertNull(entityCache.get(ExpiringBrand.class, 1));
+        assertNotNull(entityCache.get(ExpiringBrand.class, 2));
+
+        entityCache.invalidateTable("expiring_brands");
+        assertNull(entityCache.get(ExpiringBrand.class, 2));
+    }
+
+    @Test
+    public void testPutSkipsEntityReadBeforeInvalidation() {
+        EntityCache entityCache = new EntityCache();
+
+        // A write between the read of the row and its put leaves the stale row out of the cache
+        long generation = entityCache.generation(ExpiringBrand.class);
+        entityCache.invalidate(ExpiringBrand.class, 1);
+        entityCache.put(new ExpiringBrand(1), generation);
+        assertNull(entityCache.get(ExpiringBrand.class, 1));
+
+        entityCache.put(new ExpiringBrand(1), entityCache.generation(ExpiringBrand.class));
+        assertNotNull(entityCache.get(ExpiringBrand.class, 1));
+    }
+
+    private CacheStats stats() {
+        for (CacheStats stats : brandTable.getManagement().getEntityCache().getStats())
+            if (stats.getName().equals("brands"))
+                return stats;
+
+        throw new AssertionError("The brands are not cached");
+    }
+
+    @Table(name = "expiring_brands")
+    @Cacheable(maxEntries = 10, ttl = 50)
+    private static class ExpiringBrand {
+
+        @Column(name = "id", primaryKey = true)
+        private final int id;
+
+        ExpiringBrand(int id) {
+            this.id = id;
+        }
+
+    }
+
+}
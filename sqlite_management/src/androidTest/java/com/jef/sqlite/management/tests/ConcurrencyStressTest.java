@@ -0,0 +1,110 @@
+package com.jef.sqlite.management.tests;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.jef.sqlite.management.models.Line;
+import com.jef.sqlite.management.models.Product;
+import com.jef.sqlite.management.tables.LineTable;
+import com.jef.sqlite.management.tables.ProductsTable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented stress test for concurrent reads and writes on a shared SQLiteManagement.
+ * Every handler acquires and releases its own reference to the database, so a write finishing
+ * on one thread must never close the database under a cursor of another thread.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConcurrencyStressTest {
+
+    private static final int THREADS = 32;
+    private static final int ITERATIONS = 20;
+
+    private ProductsTable productsTable;
+    private Line testLine;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        productsTable = new ProductsTable(context);
+
+        Line line = new Line();
+        line.setName("Test Line for Stress");
+        testLine = new LineTable(context).saveLine(line);
+
+        cleanUpTestData();
+    }
+
+    @After
+    public void tearDown() {
+        cleanUpTestData();
+    }
+
+    private void cleanUpTestData() {
+        for (Product product : productsTable.getAllProducts())
+            if (product.getName() != null && product.getName().startsWith("Test Product Stress"))
+                productsTable.deleteById(product.getId());
+    }
+
+    @Test
+    public void testConcurrentReadsAndWrites() throws InterruptedException {
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        Product product = new Product();
+                        product.setName("Test Product Stress " + thread + "-" + i);
+                        product.setLine(testLine);
+                        Product saved = productsTable.saveProduct(product);
+
+                        Optional<Product> found = productsTable.getProductById(saved.getId());
+                        assertTrue(found.isPresent());
+
+                        // Full scans keep cursors open while other threads write
+                        if (i % 5 == 0)
+                            assertFalse(productsTable.getAllProducts().isEmpty());
+
+                        assertTrue(productsTable.productExistsById(saved.getId()));
+                        assertEquals(1, productsTable.updateProductNameById(product.getName() + " Updated", saved.getId()));
+                        assertEquals(1, productsTable.deleteById(saved.getId()));
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                } finally {
+                    done.countDown();
+                }
+            }, "stress-" + t);
+
+            worker.start();
+        }
+
+        start.countDown();
+        assertTrue("Stress threads did not finish", done.await(2, TimeUnit.MINUTES));
+
+        if (!errors.isEmpty()) {
+            Throwable first = errors.peek();
+            throw new AssertionError(errors.size() + " operations failed, first: " + first, first);
+        }
+    }
+
+}
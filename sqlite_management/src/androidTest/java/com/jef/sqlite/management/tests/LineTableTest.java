@@ -6,6 +6,7 @@ import android.content.Context;
 import androidx.test.platform.app.InstrumentationRegistry;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.jef.sqlite.management.live.LiveQuery;
 import com.jef.sqlite.management.models.Line;
 import com.jef.sqlite.management.tables.LineTable;
 
@@ -17,6 +18,9 @@ import org.junit.runner.RunWith;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -110,6 +114,55 @@ public class LineTableTest {
         assertFalse(retrievedLine.isPresent());
     }
 
+    @Test
+    public void testGetLineByIdFromReferenceTable() {
+        Line testLine = new Line();
+        testLine.setName("Test Line Reference");
+        Line savedLine = lineTable.saveLine(testLine);
+
+        // Both lookups are answered by the same in-memory copy of the table
+        Line first = lineTable.getLineById(savedLine.getId()).get();
+        Line second = lineTable.getLineById(savedLine.getId()).get();
+        assertSame(first, second);
+        assertTrue(lineTable.getManagement().getReferenceTables().isReferenceTable(Line.class));
+
+        // An update replaces the in-memory copy
+        lineTable.updateNameById("Test Line Reference Updated", savedLine.getId());
+        assertEquals("Test Line Reference Updated", lineTable.getLineById(savedLine.getId()).get().getName());
+        assertTrue(lineTable.getAllLines().stream().anyMatch(l -> l.getId() == savedLine.getId()));
+    }
+
+    @Test
+    public void testObserveLineByName() throws InterruptedException {
+        String name = "Test Line Live " + System.nanoTime();
+        LiveQuery<Optional<Line>> liveLine = lineTable.observeLineByName(name);
+
+        BlockingQueue<Optional<Line>> results = new LinkedBlockingQueue<>();
+        LiveQuery.Observer<Optional<Line>> observer = results::add;
+        liveLine.observe(observer);
+
+        try {
+            // The first run finds no line
+            Optional<Line> initial = results.poll(5, TimeUnit.SECONDS);
+            assertNotNull(initial);
+            assertFalse(initial.isPresent());
+
+            // Saving the line changes the lines table and runs the query again
+            Line testLine = new Line();
+            testLine.setName(name);
+            lineTable.saveLine(testLine);
+
+            Optional<Line> updated = results.poll(5, TimeUnit.SECONDS);
+            assertNotNull(updated);
+            assertTrue(updated.isPresent());
+            assertEquals(name, updated.get().getName());
+        } finally {
+            liveLine.removeObserver(observer);
+        }
+
+        assertFalse(liveLine.hasObservers());
+    }
+
     @Test
     public void testUpdateById() {
         // First, save a test line
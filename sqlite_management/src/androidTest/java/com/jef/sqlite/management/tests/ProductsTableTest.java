@@ -2,10 +2,19 @@ package com.jef.sqlite.management.tests;
 
 import android.content.ContentValues;
 import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.CancellationSignal;
 
 import androidx.test.platform.app.InstrumentationRegistry;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import com.jef.sqlite.management.Query.RetryPolicy;
+import com.jef.sqlite.management.SQLiteManagement;
+import com.jef.sqlite.management.cache.EntitySession;
+import com.jef.sqlite.management.cache.UniqueFilterStats;
+import com.jef.sqlite.management.cache.UniqueValueFilters;
+import com.jef.sqlite.management.exceptions.SQLiteException;
+import com.jef.sqlite.management.interfaces.ValidationMode;
 import com.jef.sqlite.management.models.Line;
 import com.jef.sqlite.management.models.Product;
 import com.jef.sqlite.management.tables.LineTable;
@@ -16,8 +25,16 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -202,6 +219,126 @@ public class ProductsTableTest {
         assertEquals(savedProduct.getLine().getId(), retrievedProduct.get().getLine().getId());
     }
 
+    @Test
+    public void testSaveExistingProductUpdates() {
+        // Create and save a test product
+        Product product = new Product();
+        product.setName("Test Product Upsert");
+        product.setLine(testLine);
+        Product savedProduct = productsTable.saveProduct(product);
+
+        // Save the same product again with other values
+        savedProduct.setName("Test Product Upsert Updated");
+        savedProduct.setActive(false);
+        Product updatedProduct = productsTable.saveProduct(savedProduct);
+
+        // Verify the existing row was updated instead of inserting a new one
+        assertEquals(savedProduct.getId(), updatedProduct.getId());
+        assertTrue(productsTable.getProductsByName("Test Product Upsert").isEmpty());
+
+        Optional<Product> retrievedProduct = productsTable.getProductById(savedProduct.getId());
+        assertTrue(retrievedProduct.isPresent());
+        assertEquals("Test Product Upsert Updated", retrievedProduct.get().getName());
+        assertFalse(retrievedProduct.get().isActive());
+    }
+
+    @Test
+    public void testPreCheckResavesExistingProduct() {
+        productsTable.getManagement().setValidationMode(ValidationMode.PRE_CHECK);
+        try {
+            Product product = new Product();
+            product.setName("Test Product PreCheck");
+            product.setLine(testLine);
+            Product savedProduct = productsTable.saveProduct(product);
+
+            // The unique name of the product belongs to its own row, saving it again updates it
+            savedProduct.setActive(false);
+            assertEquals(savedProduct.getId(), productsTable.saveProduct(savedProduct).getId());
+            assertTrue(productsTable.validateAllProducts(java.util.Arrays.asList(savedProduct)).isEmpty());
+            assertFalse(productsTable.getProductById(savedProduct.getId()).get().isActive());
+
+            // Another product with the same name is still a duplicate
+            Product duplicated = new Product();
+            duplicated.setName("Test Product PreCheck");
+            duplicated.setLine(testLine);
+            try {
+                productsTable.saveProduct(duplicated);
+                fail("Expected SQLiteException");
+            } catch (SQLiteException e) {
+                assertTrue(e.getMessage().contains("Field 'name' must be unique"));
+            }
+        } finally {
+            productsTable.getManagement().setValidationMode(ValidationMode.CONSTRAINT);
+        }
+    }
+
+    @Test
+    public void testSaveDuplicateProductReportsField() {
+        Product product = new Product();
+        product.setName("Test Product Duplicate");
+        product.setLine(testLine);
+        productsTable.saveProduct(product);
+
+        Product duplicated = new Product();
+        duplicated.setName("Test Product Duplicate");
+        duplicated.setLine(testLine);
+
+        // The UNIQUE constraint violation is reported with the validation message of the field
+        try {
+            productsTable.saveProduct(duplicated);
+            fail("Expected SQLiteException");
+        } catch (SQLiteException e) {
+            assertTrue(e.getMessage().contains("Field 'name' must be unique"));
+        }
+    }
+
+    @Test
+    public void testSaveAllProducts() {
+        // Create a list with a new product and an already saved product
+        Product existing = new Product();
+        existing.setName("Test Product SaveAll Existing");
+        existing.setLine(testLine);
+        existing = productsTable.saveProduct(existing);
+        existing.setName("Test Product SaveAll Existing Updated");
+
+        Product product = new Product();
+        product.setName("Test Product SaveAll New");
+        product.setLine(testLine);
+
+        List<Product> saved = productsTable.saveAllProducts(java.util.Arrays.asList(existing, product));
+
+        // Verify the new product was inserted and the existing one updated
+        assertEquals(2, saved.size());
+        assertNotEquals(0, saved.get(1).getId());
+        assertEquals("Test Product SaveAll Existing Updated", productsTable.getProductById(existing.getId()).get().getName());
+        assertTrue(productsTable.getProductById(saved.get(1).getId()).isPresent());
+    }
+
+    @Test
+    public void testSaveAllRollbackRestoresGeneratedKeys() {
+        Product product = new Product();
+        product.setName("Test Product SaveAll Rollback");
+        product.setLine(testLine);
+
+        Product duplicated = new Product();
+        duplicated.setName("Test Product SaveAll Rollback");
+        duplicated.setLine(testLine);
+
+        // The duplicated name rolls back the whole collection
+        try {
+            productsTable.saveAllProducts(java.util.Arrays.asList(product, duplicated));
+            fail("Expected SQLiteException");
+        } catch (SQLiteException e) {
+            assertTrue(e.getMessage().contains("Field 'name' must be unique"));
+        }
+
+        // The key generated for the first product was never committed, saving it again inserts it
+        assertEquals(0, product.getId());
+        Product saved = productsTable.saveProduct(product);
+        assertNotEquals(0, saved.getId());
+        assertTrue(productsTable.getProductById(saved.getId()).isPresent());
+    }
+
     @Test
     public void testUpdateProductById() {
         // Create and save a test product
@@ -293,6 +430,154 @@ public class ProductsTableTest {
         assertFalse(isInvalid);
     }
 
+    @Test
+    public void testValidateAllProducts() {
+        Product existing = new Product();
+        existing.setName("Test Product ValidateAll Existing");
+        existing.setLine(testLine);
+        productsTable.saveProduct(existing);
+
+        // A valid product, a product with an existing name, a product without name and a repeated name
+        Product valid = new Product();
+        valid.setName("Test Product ValidateAll Valid");
+        valid.setLine(testLine);
+
+        Product duplicated = new Product();
+        duplicated.setName("Test Product ValidateAll Existing");
+        duplicated.setLine(testLine);
+
+        Product withoutName = new Product();
+        withoutName.setLine(testLine);
+
+        Product repeated = new Product();
+        repeated.setName("Test Product ValidateAll Valid");
+        repeated.setLine(testLine);
+
+        Map<Product, List<String>> invalid = productsTable.validateAllProducts(
+                java.util.Arrays.asList(valid, duplicated, withoutName, repeated));
+
+        // Verify only the offending products are reported
+        assertEquals(3, invalid.size());
+        assertFalse(invalid.containsKey(valid));
+        assertTrue(invalid.containsKey(duplicated));
+        assertTrue(invalid.containsKey(withoutName));
+        assertTrue(invalid.containsKey(repeated));
+    }
+
+    @Test
+    public void testValidateProductWithUniqueFilters() {
+        productsTable.getManagement().setUniqueFiltersEnabled(true);
+        try {
+            Product existing = new Product();
+            existing.setName("Test Product Filter Existing");
+            existing.setLine(testLine);
+            productsTable.saveProduct(existing);
+
+            // A new name is discarded by the filter, an existing name is still reported
+            Product product = new Product();
+            product.setName("Test Product Filter New");
+            product.setLine(testLine);
+            assertTrue(productsTable.validateProduct(product));
+
+            product.setName("Test Product Filter Existing");
+            assertFalse(productsTable.validateProduct(product));
+
+            List<UniqueFilterStats> stats = productsTable.getManagement().getUniqueValueFilters().getStats();
+            assertEquals(1, stats.size());
+            assertEquals("name", stats.get(0).getColumnName());
+            assertTrue(stats.get(0).getMemoryBytes() > 0);
+            assertTrue(stats.get(0).getChecks() >= 2);
+        } finally {
+            productsTable.getManagement().setUniqueFiltersEnabled(false);
+        }
+    }
+
+    @Test
+    public void testUniqueFiltersCompareFloatingValues() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        try {
+            db.execSQL("CREATE TABLE prices (amount REAL UNIQUE)");
+            db.execSQL("INSERT INTO prices (amount) VALUES (100000000.0)");
+
+            UniqueValueFilters filters = new UniqueValueFilters();
+            filters.setEnabled(true);
+
+            // SQLite reads the stored value as 100000000.0, a Double is bound as 1.0E8
+            assertTrue(filters.mightExist(db, "prices", "amount", String.valueOf(1.0E8)));
+            assertTrue(filters.mightExist(db, "prices", "amount", "100000000"));
+
+            ContentValues values = new ContentValues();
+            values.put("amount", 0.1 + 0.2);
+            db.insert("prices", null, values);
+            filters.recordWrite("prices", values, false);
+            assertTrue(filters.mightExist(db, "prices", "amount", String.valueOf(0.1 + 0.2)));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void testGetAllProductsFromQueryCache() {
+        productsTable.getManagement().setQueryCacheEnabled(true);
+        try {
+            Product product = new Product();
+            product.setName("Test Product Query Cache");
+            product.setLine(testLine);
+            productsTable.saveProduct(product);
+
+            // The second query is answered by the cache
+            int count = productsTable.getAllProducts().size();
+            assertEquals(count, productsTable.getAllProducts().size());
+            assertTrue(productsTable.getManagement().getQueryResultCache().getStats().getHits() >= 1);
+
+            // A save bumps the version of the table and the cached result is dropped
+            Product other = new Product();
+            other.setName("Test Product Query Cache Other");
+            other.setLine(testLine);
+            productsTable.saveProduct(other);
+
+            assertEquals(count + 1, productsTable.getAllProducts().size());
+            assertTrue(productsTable.getManagement().getQueryResultCache().getStats().getStaleEntries() >= 1);
+        } finally {
+            productsTable.getManagement().setQueryCacheEnabled(false);
+        }
+    }
+
+    @Test
+    public void testSharedLineIsMaterializedOnce() {
+        Product first = new Product();
+        first.setName("Test Product Identity First");
+        first.setLine(testLine);
+        productsTable.saveProduct(first);
+
+        Product second = new Product();
+        second.setName("Test Product Identity Second");
+        second.setLine(testLine);
+        productsTable.saveProduct(second);
+
+        // Products of the same query share the instance of their line
+        List<Product> products = productsTable.getAllProducts();
+        Product firstLoaded = null;
+        Product secondLoaded = null;
+        for (Product product : products) {
+            if (product.getId() == first.getId())
+                firstLoaded = product;
+            else if (product.getId() == second.getId())
+                secondLoaded = product;
+        }
+
+        assertNotNull(firstLoaded);
+        assertNotNull(secondLoaded);
+        assertSame(firstLoaded.getLine(), secondLoaded.getLine());
+
+        // Inside a session separate queries return the same instance
+        try (EntitySession session = productsTable.getManagement().openSession()) {
+            Product loaded = productsTable.getProductById(first.getId()).get();
+            assertSame(loaded, productsTable.getProductById(first.getId()).get());
+            assertTrue(session.size() >= 2);
+        }
+    }
+
     @Test
     public void testGetProductsByNameAndActive() {
         // Create and save test products with different active statuses but different names
@@ -374,4 +659,172 @@ public class ProductsTableTest {
         // Verify the product no longer exists
         assertFalse(productsTable.productExistsById(savedProduct.getId()));
     }
+
+    @Test
+    public void testAsyncUpdateAndFind() throws Exception {
+        Product product = new Product();
+        product.setName("Test Product Async");
+        product.setActive(true);
+        product.setLine(testLine);
+        Product savedProduct = productsTable.saveProduct(product);
+
+        // The write runs on the writer thread and the read on the read pool
+        int updated = productsTable.updateProductActiveByNameAsync(false, "Test Product Async").get(5, TimeUnit.SECONDS);
+        assertEquals(1, updated);
+
+        List<Product> products = productsTable.getProductsByNameAsync("Test Product Async").get(5, TimeUnit.SECONDS);
+        assertEquals(1, products.size());
+        assertEquals(savedProduct.getId(), products.get(0).getId());
+        assertFalse(products.get(0).isActive());
+    }
+
+    @Test
+    public void testCancelledFindThrows() {
+        Product product = new Product();
+        product.setName("Test Product Cancel");
+        product.setLine(testLine);
+        productsTable.saveProduct(product);
+
+        // A live signal does not change the result, and keeps the listener of the caller
+        CancellationSignal live = new CancellationSignal();
+        CountDownLatch listened = new CountDownLatch(1);
+        live.setOnCancelListener(listened::countDown);
+        assertEquals(1, productsTable.getProductsByName("Test Product Cancel", live).size());
+        live.cancel();
+        assertEquals(0, listened.getCount());
+
+        CancellationSignal signal = new CancellationSignal();
+        signal.cancel();
+        try {
+            productsTable.getProductsByName("Test Product Cancel", signal);
+            fail("Expected SQLiteException");
+        } catch (SQLiteException e) {
+            assertTrue(e.getMessage().contains("canceled"));
+        }
+
+        // The connection was released, the next query runs normally
+        assertEquals(1, productsTable.getProductsByName("Test Product Cancel").size());
+    }
+
+    @Test
+    public void testSaveRetriesWhileAnotherConnectionHoldsTheLock() throws Exception {
+        SQLiteManagement management = productsTable.getManagement();
+        RetryPolicy retryPolicy = management.getRetryPolicy();
+        long retries = retryPolicy.getRetryCount();
+
+        // Fail at once on the lock, so the wait comes from the retries
+        management.setBusyTimeout(0);
+        retryPolicy.setMaxAttempts(20);
+        retryPolicy.setMaxDelayMillis(100);
+
+        String path = context.getDatabasePath(management.getDatabaseName()).getPath();
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            SQLiteDatabase other = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READWRITE);
+            try {
+                other.beginTransaction();
+                locked.countDown();
+                Thread.sleep(300);
+                other.endTransaction();
+            } catch (InterruptedException e) {
+                other.endTransaction();
+            } finally {
+                other.close();
+            }
+        });
+
+        try {
+            holder.start();
+            assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+            Product product = new Product();
+            product.setName("Test Product Busy");
+            product.setLine(testLine);
+            Product savedProduct = productsTable.saveProduct(product);
+
+            assertTrue(savedProduct.getId() > 0);
+            assertTrue(retryPolicy.getRetryCount() > retries);
+        } finally {
+            holder.join();
+            management.setBusyTimeout(2500);
+            retryPolicy.setMaxAttempts(RetryPolicy.DEFAULT_MAX_ATTEMPTS);
+            retryPolicy.setMaxDelayMillis(RetryPolicy.DEFAULT_MAX_DELAY_MILLIS);
+        }
+    }
+
+    @Test
+    public void testConcurrentSavesThroughWriteQueue() throws Exception {
+        Product original = new Product();
+        original.setName("Test Product Queue Original");
+        original.setLine(testLine);
+        productsTable.saveProduct(original);
+
+        productsTable.getManagement().setWriteQueueEnabled(true);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Product>> saves = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                String name = "Test Product Queue " + i;
+                saves.add(threads.submit(() -> {
+                    Product product = new Product();
+                    product.setName(name);
+                    product.setLine(testLine);
+                    return productsTable.saveProduct(product);
+                }));
+            }
+
+            // The duplicated write fails on its own, the writes batched with it are still saved
+            Future<Product> duplicated = threads.submit(() -> {
+                Product product = new Product();
+                product.setName("Test Product Queue Original");
+                product.setLine(testLine);
+                return productsTable.saveProduct(product);
+            });
+
+            for (Future<Product> save : saves)
+                assertTrue(save.get(10, TimeUnit.SECONDS).getId() > 0);
+
+            try {
+                duplicated.get(10, TimeUnit.SECONDS);
+                fail("Expected SQLiteException");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof SQLiteException);
+            }
+
+            assertEquals(40, productsTable.getAllProducts().stream()
+                    .filter(p -> p.getName().startsWith("Test Product Queue ") && !p.getName().endsWith("Original"))
+                    .count());
+            assertTrue(productsTable.getManagement().getWriteQueue().getWriteCount() >= 41);
+        } finally {
+            threads.shutdown();
+            productsTable.getManagement().setWriteQueueEnabled(false);
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void testWriteQueueInsideCallerTransaction() {
+        SQLiteManagement management = productsTable.getManagement();
+        management.setWriteQueueEnabled(true);
+
+        SQLiteDatabase db = management.acquireWritableDatabase();
+        try {
+            // The save runs on this thread, inside its transaction, instead of waiting for the writer thread
+            db.beginTransaction();
+            try {
+                Product product = new Product();
+                product.setName("Test Product Queue Transaction");
+                product.setLine(testLine);
+                assertTrue(productsTable.saveProduct(product).getId() > 0);
+
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            management.releaseDatabase(db);
+            management.setWriteQueueEnabled(false);
+        }
+
+        assertEquals(1, productsTable.getProductsByName("Test Product Queue Transaction").size());
+    }
 }
@@ -0,0 +1,274 @@
+package com.jef.sqlite.management.tests;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.jef.sqlite.management.metrics.HistogramMetricsListener;
+import com.jef.sqlite.management.metrics.LatencyHistogram;
+import com.jef.sqlite.management.metrics.NPlusOneDetector;
+import com.jef.sqlite.management.metrics.QueryMetrics;
+import com.jef.sqlite.management.metrics.QueryMetricsListener;
+import com.jef.sqlite.management.metrics.SlowQueryLog;
+import com.jef.sqlite.management.models.Line;
+import com.jef.sqlite.management.models.Product;
+import com.jef.sqlite.management.queries.ProductQuery;
+import com.jef.sqlite.management.tables.LineTable;
+import com.jef.sqlite.management.tables.ProductsTable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for the query metrics listeners and the latency histogram.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryMetricsTest {
+
+    private ProductsTable productsTable;
+    private Line testLine;
+    private final List<QueryMetrics> recorded = new ArrayList<>();
+    private final QueryMetricsListener recorder = recorded::add;
+    private final HistogramMetricsListener histograms = new HistogramMetricsListener();
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        productsTable = new ProductsTable(context);
+
+        Line line = new Line();
+        line.setName("Test Line for Metrics");
+        testLine = new LineTable(context).saveLine(line);
+
+        cleanUpTestData();
+
+        productsTable.getManagement().addQueryMetricsListener(recorder);
+        productsTable.getManagement().addQueryMetricsListener(histograms);
+    }
+
+    @After
+    public void tearDown() {
+        productsTable.getManagement().removeQueryMetricsListener(recorder);
+        productsTable.getManagement().removeQueryMetricsListener(histograms);
+        cleanUpTestData();
+    }
+
+    private void cleanUpTestData() {
+        for (Product product : productsTable.getAllProducts())
+            if (product.getName() != null && product.getName().startsWith("Test Product Metrics"))
+                productsTable.deleteById(product.getId());
+    }
+
+    @Test
+    public void testMetricsOfSaveAndFind() {
+        Product product = new Product();
+        product.setName("Test Product Metrics");
+        product.setLine(testLine);
+        productsTable.saveProduct(product);
+
+        recorded.clear();
+        List<Product> products = productsTable.getProductsByName("Test Product Metrics");
+        assertEquals(1, products.size());
+
+        assertEquals(1, recorded.size());
+        QueryMetrics metrics = recorded.get(0);
+        assertEquals("ProductQuery.findByName", metrics.getMethodName());
+        assertTrue(metrics.getSql().startsWith("SELECT"));
+        assertEquals("Test Product Metrics", metrics.getArguments()[0]);
+        assertEquals(1, metrics.getRowCount());
+        assertNull(metrics.getError());
+        assertTrue(metrics.getTotalNanos() >= metrics.getPrepareNanos() + metrics.getExecuteNanos() + metrics.getMapNanos());
+
+        LatencyHistogram histogram = histograms.getHistogram("ProductQuery.findByName");
+        assertNotNull(histogram);
+        assertEquals(1, histogram.getCount());
+        assertTrue(histograms.toText().contains("ProductQuery.findByName count=1"));
+        assertNotNull(histograms.getHistogram("ProductQuery.save"));
+    }
+
+    @Test
+    public void testMetricsOfFailedWrite() {
+        Product product = new Product();
+        product.setName("Test Product Metrics Duplicated");
+        product.setLine(testLine);
+        productsTable.saveProduct(product);
+
+        recorded.clear();
+        Product duplicated = new Product();
+        duplicated.setName("Test Product Metrics Duplicated");
+        duplicated.setLine(testLine);
+        try {
+            productsTable.saveProduct(duplicated);
+            fail("Expected SQLiteException");
+        } catch (RuntimeException e) {
+            assertEquals(1, recorded.size());
+            assertSame(e, recorded.get(0).getError());
+        }
+    }
+
+    @Test
+    public void testSlowQueryLogFlagsFullScan() {
+        Product product = new Product();
+        product.setName("Test Product Metrics Slow");
+        product.setActive(true);
+        product.setLine(testLine);
+        productsTable.saveProduct(product);
+
+        // Every call is slow and every table is large, the OR on a column without index scans products
+        SlowQueryLog slowQueryLog = new SlowQueryLog(productsTable.getManagement(), 0);
+        slowQueryLog.setLargeTableRows(0);
+        productsTable.getManagement().addQueryMetricsListener(slowQueryLog);
+        try {
+            productsTable.getProductsByNameOrActive("Test Product Metrics Slow", true);
+            productsTable.getProductsByNameOrActive("Test Product Metrics Slow", true);
+        } finally {
+            productsTable.getManagement().removeQueryMetricsListener(slowQueryLog);
+        }
+
+        List<SlowQueryLog.SlowQuery> entries = slowQueryLog.getEntries();
+        assertEquals(2, entries.size());
+        assertEquals("ProductQuery.findByNameOrActive", entries.get(0).getMetrics().getMethodName());
+
+        // The statement is explained once and its plan shared by both calls
+        assertEquals(1, slowQueryLog.getPlans().size());
+        assertSame(entries.get(0).getPlan(), entries.get(1).getPlan());
+
+        SlowQueryLog.QueryPlan plan = entries.get(0).getPlan();
+        assertNull(plan.getError());
+        assertFalse(plan.getDetails().isEmpty());
+        assertTrue(plan.getFullScans().contains("products"));
+        assertTrue(slowQueryLog.toText().contains("FULL SCAN of large table: products"));
+    }
+
+    @Test
+    public void testSlowQueryLogFlagsTableThatGrows() {
+        Product product = new Product();
+        product.setName("Test Product Metrics Grows");
+        product.setActive(true);
+        product.setLine(testLine);
+        productsTable.saveProduct(product);
+
+        // The table becomes large with the next product
+        SlowQueryLog slowQueryLog = new SlowQueryLog(productsTable.getManagement(), 0);
+        slowQueryLog.setLargeTableRows(productsTable.getAllProducts().size() + 1);
+        productsTable.getManagement().addQueryMetricsListener(slowQueryLog);
+        try {
+            productsTable.getProductsByNameOrActive("Test Product Metrics Grows", true);
+
+            Product other = new Product();
+            other.setName("Test Product Metrics Grows Other");
+            other.setLine(testLine);
+            productsTable.saveProduct(other);
+
+            productsTable.getProductsByNameOrActive("Test Product Metrics Grows", true);
+        } finally {
+            productsTable.getManagement().removeQueryMetricsListener(slowQueryLog);
+        }
+
+        // The save bumped the version of products, the table is counted again and flagged
+        List<SlowQueryLog.SlowQuery> entries = slowQueryLog.getEntries();
+        SlowQueryLog.SlowQuery first = entries.get(0);
+        SlowQueryLog.SlowQuery last = entries.get(entries.size() - 1);
+        assertEquals("ProductQuery.findByNameOrActive", last.getMetrics().getMethodName());
+        assertFalse(first.getPlan().hasFullScan());
+        assertTrue(last.getPlan().getFullScans().contains("products"));
+        assertTrue(slowQueryLog.getPlans().contains(last.getPlan()));
+    }
+
+    @Test
+    public void testNPlusOneDetector() throws Exception {
+        NPlusOneDetector detector = new NPlusOneDetector();
+        List<NPlusOneDetector.Warning> warnings = new ArrayList<>();
+        detector.setListener(warnings::add);
+
+        // Lines are a reference table and never queried, the metrics of an N+1 load are built by hand
+        Field lineField = Product.class.getDeclaredField("line");
+        detector.onQuery(joinMetrics(lineField, 20, 20));
+        detector.onQuery(joinMetrics(lineField, 20, 2));
+        detector.onQuery(joinMetrics(lineField, 3, 3));
+
+        assertEquals(1, warnings.size());
+        assertEquals("Product.line", warnings.get(0).getField());
+        assertEquals("ProductQuery.findAllOrderByIdAsc", warnings.get(0).getMethodName());
+        assertEquals(20, warnings.get(0).getJoinQueries());
+
+        List<NPlusOneDetector.Hotspot> hotspots = detector.getHotspots();
+        assertEquals(1, hotspots.size());
+        assertEquals(1, hotspots.get(0).getCalls());
+        assertTrue(detector.toText().startsWith("Product.line"));
+    }
+
+    private QueryMetrics joinMetrics(Field field, int rows, int joinQueries) throws Exception {
+        QueryMetrics metrics = new QueryMetrics(ProductQuery.class, ProductQuery.class.getMethod("findAllOrderByIdAsc"));
+        long time = System.nanoTime();
+        for (int i = 0; i < rows; i++)
+            time = metrics.mapped(time);
+        for (int i = 0; i < joinQueries; i++)
+            metrics.joinQuery(field);
+
+        metrics.finish(null);
+        return metrics;
+    }
+
+    @Test
+    public void testQueriesWithTracingEnabled() {
+        productsTable.getManagement().setTracingEnabled(true);
+        try {
+            Product product = new Product();
+            product.setName("Test Product Metrics Traced");
+            product.setLine(testLine);
+            Product savedProduct = productsTable.saveProduct(product);
+
+            assertEquals(1, productsTable.getProductsByName("Test Product Metrics Traced").size());
+            assertTrue(productsTable.productExistsById(savedProduct.getId()));
+            assertEquals(1, productsTable.updateProductNameById("Test Product Metrics Traced Updated", savedProduct.getId()));
+
+            // A failed call closes its sections too
+            try {
+                Product duplicated = new Product();
+                duplicated.setName("Test Product Metrics Traced Updated");
+                duplicated.setLine(testLine);
+                productsTable.saveProduct(duplicated);
+                fail("Expected SQLiteException");
+            } catch (RuntimeException e) {
+                // Expected
+            }
+
+            assertEquals(1, productsTable.deleteById(savedProduct.getId()));
+        } finally {
+            productsTable.getManagement().setTracingEnabled(false);
+        }
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++)
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1), histogram.getMinNanos());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), histogram.getMaxNanos());
+
+        // Every value is reported within the relative error of its bucket
+        double error = 1.0 / LatencyHistogram.SUB_BUCKETS;
+        assertEquals(500_000, histogram.getValueAtPercentile(50), 500_000 * error);
+        assertEquals(990_000, histogram.getValueAtPercentile(99), 990_000 * error);
+        assertEquals(500_500, histogram.getMeanNanos(), 1);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+}
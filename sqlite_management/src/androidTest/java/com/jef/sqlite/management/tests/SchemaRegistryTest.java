@@ -0,0 +1,192 @@
+package com.jef.sqlite.management.tests;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.jef.sqlite.management.Management;
+import com.jef.sqlite.management.SQLiteTable;
+import com.jef.sqlite.management.models.Line;
+import com.jef.sqlite.management.models.Product;
+import com.jef.sqlite.management.schema.MigrationListener;
+import com.jef.sqlite.management.schema.SchemaRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented test for the schema bootstrap and migrations of SQLiteManagement.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SchemaRegistryTest {
+
+    private static final String DATABASE = "management";
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE);
+    }
+
+    @Test
+    public void testTablesAreCreatedOnFirstOpen() {
+        Management management = new Management(context);
+        new SQLiteTable<Line>(management) {};
+        new SQLiteTable<Product>(management) {};
+
+        // Constructing the tables must not create the database
+        assertFalse(context.getDatabasePath(DATABASE).exists());
+        assertTrue(management.getSchemaRegistry().isPending());
+
+        SQLiteDatabase db = management.getWritableDatabase();
+        Map<String, String> fingerprints = readFingerprints(db);
+
+        assertFalse(management.getSchemaRegistry().isPending());
+        assertEquals(management.getSchemaRegistry().getTable("lines").getFingerprint(), fingerprints.get("lines"));
+        assertEquals(management.getSchemaRegistry().getTable("products").getFingerprint(), fingerprints.get("products"));
+        management.close();
+    }
+
+    @Test
+    public void testTableRegisteredAfterOpenIsCreated() {
+        Management management = new Management(context);
+        new SQLiteTable<Line>(management) {};
+        management.getWritableDatabase();
+
+        new SQLiteTable<Product>(management) {};
+
+        Map<String, String> fingerprints = readFingerprints(management.getWritableDatabase());
+        assertTrue(fingerprints.containsKey("products"));
+        management.close();
+    }
+
+    @Test
+    public void testReopenVerifiesStoredFingerprints() {
+        Management first = new Management(context);
+        new SQLiteTable<Line>(first) {};
+        new SQLiteTable<Product>(first) {};
+        first.getWritableDatabase();
+        first.close();
+
+        // A new instance checks the stored fingerprints when it opens the existing database
+        Management second = new Management(context);
+        new SQLiteTable<Line>(second) {};
+        new SQLiteTable<Product>(second) {};
+        assertTrue(second.getSchemaRegistry().isPending());
+
+        Map<String, String> fingerprints = readFingerprints(second.getWritableDatabase());
+        assertFalse(second.getSchemaRegistry().isPending());
+        assertEquals(second.getSchemaRegistry().getTable("products").getFingerprint(), fingerprints.get("products"));
+        second.close();
+    }
+
+    @Test
+    public void testMigrationAddsMissingColumn() {
+        createLegacyProductsTable("CREATE TABLE products (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL UNIQUE, line INTEGER NOT NULL)");
+
+        Management management = new Management(context);
+        List<Boolean> migrations = new ArrayList<>();
+        management.setMigrationListener(new MigrationListener() {
+            @Override
+            public void onProgress(String tableName, long copiedRows, long totalRows) {
+            }
+
+            @Override
+            public void onTableMigrated(String tableName, boolean rebuilt) {
+                migrations.add(rebuilt);
+            }
+        });
+        new SQLiteTable<Product>(management) {};
+
+        SQLiteDatabase db = management.getWritableDatabase();
+        assertTrue(readColumns(db).contains("active"));
+        assertEquals(1, migrations.size());
+        assertFalse(migrations.get(0));
+        assertEquals(1, countProducts(db));
+        management.close();
+    }
+
+    @Test
+    public void testMigrationRebuildsTable() {
+        // The legacy table has no UNIQUE constraint on name, so it cannot be altered in place
+        createLegacyProductsTable("CREATE TABLE products (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, line INTEGER NOT NULL, old_column TEXT)");
+
+        Management management = new Management(context);
+        List<Long> progress = new ArrayList<>();
+        List<Boolean> migrations = new ArrayList<>();
+        management.setMigrationListener(new MigrationListener() {
+            @Override
+            public void onProgress(String tableName, long copiedRows, long totalRows) {
+                progress.add(copiedRows);
+            }
+
+            @Override
+            public void onTableMigrated(String tableName, boolean rebuilt) {
+                migrations.add(rebuilt);
+            }
+        });
+        new SQLiteTable<Product>(management) {};
+
+        SQLiteDatabase db = management.getWritableDatabase();
+        List<String> columns = readColumns(db);
+        assertTrue(columns.contains("active"));
+        assertFalse(columns.contains("old_column"));
+        assertEquals(1, migrations.size());
+        assertTrue(migrations.get(0));
+        assertEquals(Long.valueOf(1), progress.get(progress.size() - 1));
+        assertEquals(1, countProducts(db));
+        management.close();
+    }
+
+    private void createLegacyProductsTable(String createSql) {
+        Management legacy = new Management(context);
+        SQLiteDatabase db = legacy.getWritableDatabase();
+        db.execSQL(createSql);
+        db.execSQL("INSERT INTO products (name, line) VALUES ('Legacy Product', 1)");
+        legacy.close();
+    }
+
+    private List<String> readColumns(SQLiteDatabase db) {
+        List<String> columns = new ArrayList<>();
+
+        Cursor cursor = db.rawQuery("PRAGMA table_info(products)", null);
+        while (cursor.moveToNext())
+            columns.add(cursor.getString(cursor.getColumnIndex("name")));
+
+        cursor.close();
+        return columns;
+    }
+
+    private long countProducts(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM products WHERE name = 'Legacy Product'", null);
+        cursor.moveToFirst();
+        long count = cursor.getLong(0);
+        cursor.close();
+        return count;
+    }
+
+    private Map<String, String> readFingerprints(SQLiteDatabase db) {
+        Map<String, String> fingerprints = new HashMap<>();
+
+        Cursor cursor = db.rawQuery("SELECT table_name, fingerprint FROM " + SchemaRegistry.SCHEMA_TABLE, null);
+        while (cursor.moveToNext())
+            fingerprints.put(cursor.getString(0), cursor.getString(1));
+
+        cursor.close();
+        return fingerprints;
+    }
+
+}
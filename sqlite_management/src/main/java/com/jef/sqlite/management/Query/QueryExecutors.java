@@ -0,0 +1,139 @@
+package com.jef.sqlite.management.Query;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors of the query methods that return a {@link java.util.concurrent.CompletableFuture}.
+ * <p>
+ * Reads run on a pool sized to the reader connections of the database, so they do not wait for a connection,
+ * and writes run on a single thread, since SQLite allows a single writer at a time.
+ * The default pools are created on first use and their idle threads end after {@link #KEEP_ALIVE_SECONDS}.
+ * A separate timer thread cancels the queries that exceed their {@link com.jef.sqlite.management.interfaces.QueryTimeout}.
+ * All the methods are thread safe.
+ */
+public class QueryExecutors {
+
+    /**
+     * Default number of reader connections, the size of the connection pool Android uses in WAL mode.
+     */
+    public static final int DEFAULT_READER_CONNECTIONS = 4;
+
+    /**
+     * Seconds an idle thread of the default pools is kept alive.
+     */
+    public static final long KEEP_ALIVE_SECONDS = 30;
+
+    private int readerConnections = DEFAULT_READER_CONNECTIONS;
+    private Executor readExecutor;
+    private Executor writeExecutor;
+    private ScheduledThreadPoolExecutor timer;
+
+    /**
+     * Sets the number of threads of the default read pool.
+     * Must be called before the first asynchronous read.
+     *
+     * @param readerConnections The number of reader connections of the database
+     */
+    public synchronized void setReaderConnections(int readerConnections) {
+        if (readerConnections < 1)
+            throw new IllegalArgumentException("Reader connections must be positive: " + readerConnections);
+        if (readExecutor != null)
+            throw new IllegalStateException("The read executor is already created");
+
+        this.readerConnections = readerConnections;
+    }
+
+    /**
+     * Replaces the executor of the asynchronous reads.
+     *
+     * @param executor The executor
+     */
+    public synchronized void setReadExecutor(Executor executor) {
+        if (executor == null)
+            throw new IllegalArgumentException("Executor must not be null");
+
+        this.readExecutor = executor;
+    }
+
+    /**
+     * Replaces the executor of the asynchronous writes. It should run a single task at a time.
+     *
+     * @param executor The executor
+     */
+    public synchronized void setWriteExecutor(Executor executor) {
+        if (executor == null)
+            throw new IllegalArgumentException("Executor must not be null");
+
+        this.writeExecutor = executor;
+    }
+
+    /**
+     * Gets the executor of the asynchronous reads, creating the default pool if needed.
+     *
+     * @return The read executor
+     */
+    public synchronized Executor getReadExecutor() {
+        if (readExecutor == null)
+            readExecutor = newPool(readerConnections, "sqlite-read-");
+
+        return readExecutor;
+    }
+
+    /**
+     * Gets the executor of the asynchronous writes, creating the default single thread if needed.
+     *
+     * @return The write executor
+     */
+    public synchronized Executor getWriteExecutor() {
+        if (writeExecutor == null)
+            writeExecutor = newPool(1, "sqlite-write-");
+
+        return writeExecutor;
+    }
+
+    /**
+     * Schedules the timeout of a query.
+     *
+     * @param timeout The task that cancels the query
+     * @param delayMillis The timeout in milliseconds
+     * @return The scheduled task, to be cancelled when the query finishes in time
+     */
+    public ScheduledFuture<?> scheduleTimeout(Runnable timeout, long delayMillis) {
+        return timer().schedule(timeout, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized ScheduledThreadPoolExecutor timer() {
+        if (timer == null) {
+            timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "sqlite-query-timeout");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.setRemoveOnCancelPolicy(true);
+        }
+
+        return timer;
+    }
+
+    private static Executor newPool(int threads, String namePrefix) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+}
@@ -3,10 +3,13 @@ package com.jef.sqlite.management.Query.QueryInvocation;
 import android.database.sqlite.SQLiteDatabase;
 
 import com.jef.sqlite.management.SQLiteManagement;
+import com.jef.sqlite.management.cache.WriteScope;
 import com.jef.sqlite.management.exceptions.SQLiteException;
 import com.jef.sqlite.management.interfaces.Column;
 import com.jef.sqlite.management.interfaces.Join;
 import com.jef.sqlite.management.interfaces.Table;
+import com.jef.sqlite.management.metrics.QueryMetrics;
+import com.jef.sqlite.management.metrics.QueryTracer;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -56,14 +59,33 @@ public class DeleteHandler<T> {
         String whereClause = extractWhereClause(method);
         String[] queryArgs = createArgs(args);
 
-        SQLiteDatabase db = management.getWritableDatabase();
+        SQLiteDatabase db = management.acquireWritableDatabase();
         try {
-            return db.delete(tableName, whereClause, queryArgs);
+            QueryMetrics metrics = management.getQueryMetrics().current();
+            long start = metrics != null ? System.nanoTime() : 0;
+
+            int deleted;
+            boolean traced = management.getQueryTracer().begin(QueryTracer.EXECUTE);
+            try {
+                deleted = db.delete(tableName, whereClause, queryArgs);
+            } finally {
+                management.getQueryTracer().end(traced);
+            }
+
+            if (metrics != null)
+                metrics.written("DELETE FROM " + tableName + " WHERE " + whereClause, queryArgs, start, deleted);
+
+            management.getUniqueValueFilters().recordDelete(tableName, deleted);
+            if (deleted > 0) {
+                WriteScope.entitiesWritten(management, tableName);
+                WriteScope.tableWritten(management, tableName);
+            }
+
+            return deleted;
         } catch (android.database.sqlite.SQLiteException e) {
             throw new SQLiteException("Error deleting entity: " + e.getMessage(), e);
         } finally {
-            if (db != null && db.isOpen())
-                db.close();
+            management.releaseDatabase(db);
         }
 
     }
@@ -8,6 +8,8 @@ import com.jef.sqlite.management.exceptions.SQLiteException;
 import com.jef.sqlite.management.interfaces.Column;
 import com.jef.sqlite.management.interfaces.Join;
 import com.jef.sqlite.management.interfaces.Table;
+import com.jef.sqlite.management.metrics.QueryMetrics;
+import com.jef.sqlite.management.metrics.QueryTracer;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -128,22 +130,27 @@ public class QueryExistsHandler<T> {
      * @throws SQLiteException If there's an error executing the query
      */
     private boolean executeExistsQuery(String sql, Object[] args) {
-        SQLiteDatabase db = management.getReadableDatabase();
+        String[] arguments = createArgs(args);
+        SQLiteDatabase db = management.acquireReadableDatabase();
 
-        try {
-            Cursor cursor = db.rawQuery(sql, createArgs(args));
-            boolean exists = false;
+        QueryMetrics metrics = management.getQueryMetrics().current();
+        long time = metrics != null ? System.nanoTime() : 0;
 
-            if (cursor.moveToFirst()) {
-                exists = cursor.getInt(0) > 0;
-            }
+        boolean traced = management.getQueryTracer().begin(QueryTracer.EXECUTE);
+        try (Cursor cursor = db.rawQuery(sql, arguments)) {
+            if (metrics != null)
+                time = metrics.prepared(sql, arguments, time);
+
+            boolean exists = cursor.moveToFirst() && cursor.getInt(0) > 0;
+            if (metrics != null)
+                metrics.executed(time);
 
-            cursor.close();
             return exists;
         } catch (Exception ex) {
             throw new SQLiteException("Error executing query: " + ex.getMessage(), ex);
         } finally {
-            db.close();
+            management.getQueryTracer().end(traced);
+            management.releaseDatabase(db);
         }
     }
 
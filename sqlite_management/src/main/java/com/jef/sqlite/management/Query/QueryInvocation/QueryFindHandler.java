@@ -2,23 +2,40 @@ package com.jef.sqlite.management.Query.QueryInvocation;
 
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.os.CancellationSignal;
 
 import com.jef.sqlite.management.SQLiteManagement;
+import com.jef.sqlite.management.cache.EntityCache;
+import com.jef.sqlite.management.cache.IdentityMap;
+import com.jef.sqlite.management.cache.QueryResultCache;
+import com.jef.sqlite.management.cache.ReferenceTables;
+import com.jef.sqlite.management.cache.SqlTables;
 import com.jef.sqlite.management.exceptions.SQLiteException;
 import com.jef.sqlite.management.interfaces.Column;
 import com.jef.sqlite.management.interfaces.Join;
+import com.jef.sqlite.management.interfaces.QueryTimeout;
 import com.jef.sqlite.management.interfaces.SQLiteQuery;
 import com.jef.sqlite.management.interfaces.Table;
+import com.jef.sqlite.management.live.LiveQuery;
+import com.jef.sqlite.management.metrics.QueryMetrics;
+import com.jef.sqlite.management.metrics.QueryTracer;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 
 /**
@@ -34,6 +51,13 @@ public class QueryFindHandler<T> {
     private final SQLiteManagement management;
     private final String tableName;
     private final Map<String, String> fieldToColumn;
+    private final Set<String> readTables;
+    private final boolean referenceTable;
+
+    /**
+     * Signal of the find method running on the current thread, passed to every query and checked on every row.
+     */
+    private final ThreadLocal<CancellationSignal> cancellationSignal = new ThreadLocal<>();
 
     /**
      * Constructor for QueryFindHandler
@@ -52,6 +76,8 @@ public class QueryFindHandler<T> {
             throw new IllegalArgumentException("Entity class " + entityClass.getName() + " is not annotated with @Table");
 
         fieldToColumn = new HashMap<>();
+        readTables = SqlTables.readTables(entityClass);
+        referenceTable = management.getReferenceTables().isReferenceTable(entityClass);
 
         for (Field field : entityClass.getDeclaredFields()) {
             if (field.isAnnotationPresent(Column.class)) {
@@ -68,13 +94,68 @@ public class QueryFindHandler<T> {
     /**
      * Main method to handle all find operations.
      * This method parses the method name and delegates to the appropriate handler.
+     * A trailing CancellationSignal argument and the QueryTimeout annotation of the method cancel the query:
+     * the cursor is closed, the connection released and a SQLiteException is thrown.
+     * The caller's signal is passed to the query as is, its listener is not replaced. When the method also
+     * has a timeout, the timeout cancels the caller's signal.
      * 
      * @param method The method being invoked
      * @param args The arguments passed to the method
      * @return The result of the query (entity, list of entities, or Optional)
      * @throws UnsupportedOperationException If the method name is not supported
+     * @throws SQLiteException If the query is cancelled or times out
      */
     public Object handleFindMethod(Method method , Object[] args) {
+        CancellationSignal callerSignal = null;
+        if (args != null && args.length > 0 && args[args.length - 1] instanceof CancellationSignal) {
+            callerSignal = (CancellationSignal) args[args.length - 1];
+            args = Arrays.copyOf(args, args.length - 1);
+        }
+
+        QueryTimeout timeout = method.getAnnotation(QueryTimeout.class);
+        if (callerSignal == null && timeout == null)
+            return dispatchFindMethod(method, args);
+
+        // The caller signal cancels the query directly, a signal of its own is only needed for the timeout
+        CancellationSignal signal = callerSignal != null ? callerSignal : new CancellationSignal();
+
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> timer = timeout == null ? null : management.getQueryExecutors().scheduleTimeout(() -> {
+            timedOut.set(true);
+            signal.cancel();
+        }, timeout.value());
+
+        CancellationSignal previous = cancellationSignal.get();
+        cancellationSignal.set(signal);
+        try {
+            return dispatchFindMethod(method, args);
+        } catch (RuntimeException e) {
+            if (!signal.isCanceled())
+                throw e;
+
+            if (timedOut.get())
+                throw new SQLiteException("Query timed out after " + timeout.value() + " ms: " + method.getName(), e);
+
+            throw new SQLiteException("Query canceled: " + method.getName(), e);
+        } finally {
+            if (previous != null)
+                cancellationSignal.set(previous);
+            else
+                cancellationSignal.remove();
+
+            if (timer != null)
+                timer.cancel(false);
+        }
+    }
+
+    /**
+     * Delegates a find method to the query of its kind.
+     *
+     * @param method The method being invoked
+     * @param args The arguments passed to the method, without the CancellationSignal
+     * @return The result of the query
+     */
+    private Object dispatchFindMethod(Method method, Object[] args) {
         if (method.isAnnotationPresent(SQLiteQuery.class))
             return executeCustomQuery(method, args);
 
@@ -86,6 +167,65 @@ public class QueryFindHandler<T> {
         throw new UnsupportedOperationException("Method not supported: " + methodName);
     }
 
+    /**
+     * Creates a live query for a find method or a SQLiteQuery method that captures its result.
+     * The query observes the tables it reads: the table of the entity and the tables of its joins,
+     * plus the tables of the SQL of a custom query. If the tables of a custom query cannot be determined
+     * it runs again after any write.
+     *
+     * @param method The method, declared as LiveQuery<List<T>> or LiveQuery<Optional<T>>
+     * @param args The arguments passed to the method
+     * @return The live query, it runs when its first observer is added
+     * @throws SQLiteException If the method is not a find method
+     */
+    public LiveQuery<Object> liveQuery(Method method, Object[] args) {
+        Set<String> tables = readTables;
+        SQLiteQuery annotation = method.getAnnotation(SQLiteQuery.class);
+
+        if (annotation != null) {
+            if (!annotation.captureResult())
+                throw new SQLiteException("LiveQuery requires a SQLiteQuery that captures its result: " + method.getName());
+
+            tables = SqlTables.readTables(annotation.sql());
+            if (tables != null)
+                tables.addAll(readTables);
+        } else if (!method.getName().startsWith("find")) {
+            throw new SQLiteException("LiveQuery is only supported for find methods: " + method.getName());
+        }
+
+        // Validates the declared result type before the first run
+        resultType(method);
+
+        return new LiveQuery<>(management.getInvalidationTracker(), management.getTableVersions(), tables,
+                () -> handleFindMethod(method, args));
+    }
+
+    /**
+     * Gets the type of the result of a find method, the type argument of a LiveQuery or CompletableFuture return type.
+     *
+     * @param method The method
+     * @return The List or Optional class of the result
+     * @throws SQLiteException If a LiveQuery or CompletableFuture does not declare its type argument
+     */
+    private Class<?> resultType(Method method) {
+        Class<?> returnType = method.getReturnType();
+        if (returnType != LiveQuery.class && returnType != CompletableFuture.class)
+            return returnType;
+
+        Type genericType = method.getGenericReturnType();
+        if (genericType instanceof ParameterizedType) {
+            Type argument = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+            if (argument instanceof ParameterizedType)
+                argument = ((ParameterizedType) argument).getRawType();
+
+            if (argument instanceof Class)
+                return (Class<?>) argument;
+        }
+
+        throw new SQLiteException(returnType.getSimpleName() + " must declare its result type, List<T> or Optional<T>: " +
+                method.getName());
+    }
+
     /**
      * Executes a SQL query and returns a list of entities.
      *
@@ -95,19 +235,49 @@ public class QueryFindHandler<T> {
      * @throws SQLiteException If there's an error executing the query
      */
     public List<T> queryList(String sql, Object[] args) {
-        SQLiteDatabase db = management.getReadableDatabase();
+        String[] arguments = createArgs(args);
+        SQLiteDatabase db = management.acquireReadableDatabase();
         List<T> results = new ArrayList<>();
 
-        try {
-            Cursor cursor = db.rawQuery(sql, createArgs(args));
-            while (cursor.moveToNext())
+        // Rows and joins that share a primary key are materialized once per query
+        management.beginIdentityScope();
+        CancellationSignal signal = cancellationSignal.get();
+
+        // Android prepares the statement in rawQuery and executes it when the cursor fills its first window
+        QueryMetrics metrics = management.getQueryMetrics().current();
+        long time = metrics != null ? System.nanoTime() : 0;
+
+        QueryTracer tracer = management.getQueryTracer();
+        boolean traced = tracer.begin(QueryTracer.EXECUTE);
+        try (Cursor cursor = db.rawQuery(sql, arguments, signal)) {
+            if (metrics != null)
+                time = metrics.prepared(sql, arguments, time);
+
+            boolean hasRow = cursor.moveToFirst();
+            if (metrics != null)
+                time = metrics.executed(time);
+
+            traced = tracer.end(traced);
+            traced = tracer.begin(QueryTracer.ITERATE);
+            for (; hasRow; hasRow = cursor.moveToNext()) {
+                if (signal != null)
+                    signal.throwIfCanceled();
+                if (metrics != null)
+                    time = metrics.executed(time);
+
                 results.add((T) getResultCursor(cursor, entityClass));
+                if (metrics != null)
+                    time = metrics.mapped(time);
+            }
 
-            cursor.close();
+            if (metrics != null)
+                metrics.executed(time);
         } catch (Exception ex) {
             throw new SQLiteException("Error executing query: " + ex.getMessage(), ex);
         } finally {
-            db.close();
+            tracer.end(traced);
+            management.endIdentityScope();
+            management.releaseDatabase(db);
         }
 
         return results;
@@ -122,48 +292,173 @@ public class QueryFindHandler<T> {
      * @throws SQLiteException If there's an error executing the query
      */
     public Optional<T> queryItem(String sql, String[] selectionArgs) {
-        SQLiteDatabase db = management.getReadableDatabase();
+        SQLiteDatabase db = management.acquireReadableDatabase();
 
-        try {
-            Cursor cursor = db.rawQuery(sql, selectionArgs);
-            if (cursor.moveToFirst())
-                return Optional.of((T) getResultCursor(cursor, entityClass));
+        management.beginIdentityScope();
+        QueryMetrics metrics = management.getQueryMetrics().current();
+        long time = metrics != null ? System.nanoTime() : 0;
+
+        QueryTracer tracer = management.getQueryTracer();
+        boolean traced = tracer.begin(QueryTracer.EXECUTE);
+        try (Cursor cursor = db.rawQuery(sql, selectionArgs, cancellationSignal.get())) {
+            if (metrics != null)
+                time = metrics.prepared(sql, selectionArgs, time);
+
+            boolean found = cursor.moveToFirst();
+            if (metrics != null)
+                time = metrics.executed(time);
+
+            traced = tracer.end(traced);
+            if (found) {
+                T entity = (T) getResultCursor(cursor, entityClass);
+                if (metrics != null)
+                    metrics.mapped(time);
+
+                return Optional.of(entity);
+            }
         } catch (Exception ex) {
             throw new SQLiteException("Error executing query: " + ex.getMessage(), ex);
         } finally {
-            db.close();
+            tracer.end(traced);
+            management.endIdentityScope();
+            management.releaseDatabase(db);
         }
 
         return Optional.empty();
     }
 
 
+    /**
+     * Executes a SQL query through the query result cache.
+     *
+     * @param sql The SQL query to execute
+     * @param arguments The arguments for the query
+     * @param tables The tables read by the query, or null if they are unknown and the result cannot be cached
+     * @return A list of entities that match the query
+     * @throws SQLiteException If there's an error executing the query
+     */
+    private List<T> cachedQueryList(String sql, String[] arguments, Set<String> tables) {
+        QueryResultCache cache = management.getQueryResultCache();
+        if (!cache.isEnabled() || tables == null)
+            return queryList(sql, arguments);
+
+        List<T> cached = cache.get(sql, arguments);
+        if (cached != null)
+            return new ArrayList<>(cached);
+
+        // The versions are taken before the query, a concurrent write makes the result stale
+        long[] versions = cache.versionsOf(tables);
+        List<T> results = queryList(sql, arguments);
+        cache.put(sql, arguments, tables, versions, results);
+        return results;
+    }
+
+    /**
+     * Executes a SQL query for a single entity through the query result cache.
+     * The entry is keyed by the SQL with a LIMIT 1 suffix, so it does not collide with the list result of the same query.
+     *
+     * @param sql The SQL query to execute
+     * @param arguments The arguments for the query
+     * @param tables The tables read by the query, or null if they are unknown and the result cannot be cached
+     * @return An Optional containing the entity if found, or empty if not found
+     * @throws SQLiteException If there's an error executing the query
+     */
+    private Optional<T> cachedQueryItem(String sql, String[] arguments, Set<String> tables) {
+        QueryResultCache cache = management.getQueryResultCache();
+        if (!cache.isEnabled() || tables == null)
+            return queryItem(sql, arguments);
+
+        String key = sql + " LIMIT 1";
+        List<T> cached = cache.get(key, arguments);
+        if (cached != null)
+            return cached.isEmpty() ? Optional.empty() : Optional.of(cached.get(0));
+
+        long[] versions = cache.versionsOf(tables);
+        Optional<T> result = queryItem(sql, arguments);
+
+        List<T> results = new ArrayList<>();
+        result.ifPresent(results::add);
+        cache.put(key, arguments, tables, versions, results);
+        return result;
+    }
+
     /**
      * Creates an entity instance from a database cursor.
+     * If an identity map is active and an instance with the same primary key was already
+     * materialized, that instance is returned instead.
      *
      * @param cursor The database cursor positioned at the row to read
      * @return An instance of the entity populated with data from the cursor
      * @throws SQLiteException If there's an error creating the entity
      */
     public Object getResultCursor(Cursor cursor, Class<?> entityClass) {
+        QueryTracer tracer = management.getQueryTracer();
+        boolean traced = tracer.begin(QueryTracer.MAP);
         try {
+            IdentityMap identityMap = management.getIdentityMap();
+            Object key = null;
+
+            if (identityMap != null) {
+                Field keyField = IdentityMap.keyField(entityClass);
+                if (keyField != null)
+                    key = readKey(cursor, cursor.getColumnIndex(keyField.getAnnotation(Column.class).name()), keyField);
+
+                if (key != null) {
+                    Object existing = identityMap.get(entityClass, key);
+                    if (existing != null)
+                        return existing;
+                }
+            }
+
             Object instance = entityClass.newInstance();
 
+            // Registered before the joins are resolved, so cyclic relationships reuse the instance
+            if (key != null)
+                identityMap.put(entityClass, key, instance);
+
             // Process all fields
             for (Field field : entityClass.getDeclaredFields()) {
                 if (field.isAnnotationPresent(Column.class))
                     processColumnField(cursor, instance, field);
-                else if (field.isAnnotationPresent(Join.class))
-                    processJoinField(cursor, instance, field);
+                else if (field.isAnnotationPresent(Join.class)) {
+                    boolean joining = tracer.begin(QueryTracer.JOIN);
+                    try {
+                        processJoinField(cursor, instance, field);
+                    } finally {
+                        tracer.end(joining);
+                    }
+                }
 
             }
 
             return instance;
         } catch (Exception e) {
             throw new SQLiteException("Error creating entity from cursor: " + e.getMessage(), e);
+        } finally {
+            tracer.end(traced);
         }
     }
 
+    /**
+     * Reads a primary key value from the cursor, normalized for the identity map.
+     *
+     * @param cursor The database cursor
+     * @param columnIndex The index of the key column
+     * @param keyField The primary key field of the entity
+     * @return The normalized key, or null if the column is missing or null
+     */
+    private Object readKey(Cursor cursor, int columnIndex, Field keyField) {
+        if (columnIndex == -1 || cursor.isNull(columnIndex))
+            return null;
+
+        Class<?> keyType = keyField.getType();
+        if (keyType == int.class || keyType == Integer.class || keyType == long.class || keyType == Long.class ||
+                keyType == short.class || keyType == Short.class)
+            return IdentityMap.normalizeKey(cursor.getLong(columnIndex));
+
+        return IdentityMap.normalizeKey(cursor.getString(columnIndex));
+    }
+
     /**
      * Processes a field annotated with @Column, setting its value from the cursor.
      *
@@ -245,26 +540,70 @@ public class QueryFindHandler<T> {
 
         String targetNameValue = cursor.getString(columnIndex);
 
+        boolean keyJoin = fieldJoin.equals(IdentityMap.keyField(relationshipClass));
+
+        // A join on the primary key of a reference table is resolved from memory
+        ReferenceTables referenceTables = management.getReferenceTables();
+        if (keyJoin && referenceTables.isReferenceTable(relationshipClass)) {
+            Object relatedInstance = referenceTables.find(relationshipClass, cursor.getLong(columnIndex), this::loadReferenceTable);
+
+            field.setAccessible(true);
+            field.set(instance, relatedInstance);
+            return;
+        }
+
+        // A join on the primary key of an entity already materialized in the identity map reuses that instance
+        IdentityMap identityMap = management.getIdentityMap();
+
+        if (identityMap != null && keyJoin) {
+            Object relatedInstance = identityMap.get(relationshipClass, readKey(cursor, columnIndex, fieldJoin));
+
+            if (relatedInstance != null) {
+                field.setAccessible(true);
+                field.set(instance, relatedInstance);
+                return;
+            }
+        }
+
+        // A join on the primary key of a cacheable entity is resolved from the entity cache
+        EntityCache entityCache = management.getEntityCache();
+        boolean cached = keyJoin && entityCache.isCacheable(relationshipClass);
+
+        if (cached) {
+            Object relatedInstance = entityCache.get(relationshipClass, cursor.getLong(columnIndex));
+
+            if (relatedInstance != null) {
+                field.setAccessible(true);
+                field.set(instance, relatedInstance);
+                return;
+            }
+        }
+
         // Create a query to find the related entity
         final String sql = "SELECT * FROM " + relationshipClass.getAnnotation(Table.class).name() +
                 " WHERE " + sourceColumnName + " = ?";
 
-        // Execute the query
-        SQLiteDatabase db = management.getReadableDatabase();
-        try {
-            Cursor cursorJoin = db.rawQuery(sql, new String[] { targetNameValue });
+        // Join queries run while the row is mapped, their time is part of the mapping time
+        QueryMetrics metrics = management.getQueryMetrics().current();
+        if (metrics != null)
+            metrics.joinQuery(field);
+
+        // Execute the query, the related entity is not cached if its class is invalidated meanwhile
+        long generation = cached ? entityCache.generation(relationshipClass) : 0;
+        SQLiteDatabase db = management.acquireReadableDatabase();
+        try (Cursor cursorJoin = db.rawQuery(sql, new String[] { targetNameValue }, cancellationSignal.get())) {
             if (cursorJoin.moveToFirst()) {
 
                 Object relatedInstance = getResultCursor(cursorJoin, relationshipClass);
+                if (cached)
+                    entityCache.put(relatedInstance, generation);
 
                 // Set the related instance in the main entity
                 field.setAccessible(true);
                 field.set(instance, relatedInstance);
             }
-
-            cursorJoin.close();
         } finally {
-            db.close();
+            management.releaseDatabase(db);
         }
     }
 
@@ -288,12 +627,17 @@ public class QueryFindHandler<T> {
 
         final String[] queryArgs = createArgs(args);
 
+        // The result depends on the tables of the query and on the tables of the joins of the entity
+        Set<String> tables = SqlTables.readTables(sql);
+        if (tables != null)
+            tables.addAll(readTables);
+
         // Check the return type and execute the appropriate query
-        Class<?> returnType = method.getReturnType();
+        Class<?> returnType = resultType(method);
         if (List.class.isAssignableFrom(returnType)) {
-            return queryList(sql, queryArgs);
+            return cachedQueryList(sql, queryArgs, tables);
         } else if (Optional.class.isAssignableFrom(returnType)) {
-            return queryItem(sql, queryArgs);
+            return cachedQueryItem(sql, queryArgs, tables);
         } else {
             throw new SQLiteException("Unsupported return type for SQLiteQuery: " + returnType.getName() +
                     ". Must be List<T> or Optional<T>");
@@ -313,7 +657,49 @@ public class QueryFindHandler<T> {
     public Object executeQuery(Method method, Object[] args) {
         String methodName = method.getName();
 
+        if (referenceTable && isKeyLookup(methodName, args))
+            return toResult(method, (T) management.getReferenceTables()
+                    .find(entityClass, ((Number) args[0]).longValue(), this::loadReferenceTable));
+
+        if (referenceTable && methodName.equals("findAll"))
+            return findAllInReferenceTable(method);
+
+        if (isCachedKeyLookup(methodName, args))
+            return findByCachedKey(method, args[0]);
+
         String[] arguments = createArgs(args);
+
+        String sql;
+        QueryTracer tracer = management.getQueryTracer();
+        boolean traced = tracer.begin(QueryTracer.PLAN);
+        try {
+            sql = buildSql(method);
+        } finally {
+            tracer.end(traced);
+        }
+
+        Class<?> returnType = resultType(method);
+
+        if (List.class.isAssignableFrom(returnType)) {
+            return cachedQueryList(sql, arguments, readTables);
+        } else if (Optional.class.isAssignableFrom(returnType)) {
+            return cachedQueryItem(sql, arguments, readTables);
+        } else {
+            throw new SQLiteException("Unsupported return type for method: " + returnType.getName() +
+                    ". Must be List<T> or Optional<T>");
+        }
+
+    }
+
+    /**
+     * Builds the SQL of a find method from its name.
+     * For example: findByNameOrderByIdAsc returns "SELECT * FROM products WHERE name = ? ORDER BY id ASC"
+     *
+     * @param method The find method
+     * @return The SQL query
+     */
+    private String buildSql(Method method) {
+        String methodName = method.getName();
         String sql = "SELECT * FROM " + tableName;
 
         if (methodName.startsWith("findBy")) {
@@ -332,17 +718,147 @@ public class QueryFindHandler<T> {
                 sql += " ORDER BY " + orderByClause;
         }
 
-        Class<?> returnType = method.getReturnType();
+        return sql;
+    }
+
+    /**
+     * Checks if a method is a lookup by the primary key of a cacheable entity,
+     * for example findById(1) when the entity class is annotated with @Cacheable.
+     *
+     * @param methodName The method name
+     * @param args The arguments passed to the method
+     * @return true if the lookup can be answered from the entity cache
+     */
+    private boolean isCachedKeyLookup(String methodName, Object[] args) {
+        if (args == null || args.length != 1 || !(args[0] instanceof Number))
+            return false;
+
+        String keyFieldName = management.getEntityCache().getKeyFieldName(entityClass);
+        if (keyFieldName == null)
+            return false;
+
+        return methodName.equals("findBy" + Character.toUpperCase(keyFieldName.charAt(0)) + keyFieldName.substring(1));
+    }
+
+    /**
+     * Checks if a method is a lookup by the primary key of the entity, for example findById(1).
+     *
+     * @param methodName The method name
+     * @param args The arguments passed to the method
+     * @return true if the method looks up a single numeric primary key
+     */
+    private boolean isKeyLookup(String methodName, Object[] args) {
+        if (args == null || args.length != 1 || !(args[0] instanceof Number))
+            return false;
+
+        Field keyField = IdentityMap.keyField(entityClass);
+        if (keyField == null)
+            return false;
+
+        String keyFieldName = keyField.getName();
+        return methodName.equals("findBy" + Character.toUpperCase(keyFieldName.charAt(0)) + keyFieldName.substring(1));
+    }
+
+    /**
+     * Gets all the entities of a reference table from memory, ordered by primary key.
+     *
+     * @param method The method being invoked
+     * @return The result of the query, either a List<T> or Optional<T> depending on the method's return type
+     * @throws SQLiteException If there's an error loading the table or if the return type is not supported
+     */
+    private Object findAllInReferenceTable(Method method) {
+        List<Object> entities = management.getReferenceTables().findAll(entityClass, this::loadReferenceTable);
+
+        Class<?> returnType = resultType(method);
+        if (Optional.class.isAssignableFrom(returnType))
+            return toResult(method, entities.isEmpty() ? null : (T) entities.get(0));
+
+        if (!List.class.isAssignableFrom(returnType))
+            throw new SQLiteException("Unsupported return type for method: " + returnType.getName() +
+                    ". Must be List<T> or Optional<T>");
+
+        List<T> results = new ArrayList<>();
+        for (Object entity : entities)
+            results.add((T) entity);
+
+        return results;
+    }
+
+    /**
+     * Loads all the rows of a reference table ordered by primary key.
+     * The rows are read outside the identity map of the caller, the instances are shared by every query.
+     *
+     * @param referenceClass The entity class of the reference table
+     * @return The entities of the table
+     * @throws SQLiteException If there's an error executing the query
+     */
+    public List<Object> loadReferenceTable(Class<?> referenceClass) {
+        Field keyField = IdentityMap.keyField(referenceClass);
+        String sql = "SELECT * FROM " + referenceClass.getAnnotation(Table.class).name() +
+                " ORDER BY " + keyField.getAnnotation(Column.class).name();
+
+        SQLiteDatabase db = management.acquireReadableDatabase();
+        List<Object> results = new ArrayList<>();
+
+        IdentityMap identityMap = management.suspendIdentityMap();
+        try (Cursor cursor = db.rawQuery(sql, null)) {
+            while (cursor.moveToNext())
+                results.add(getResultCursor(cursor, referenceClass));
+        } catch (Exception ex) {
+            throw new SQLiteException("Error loading reference table: " + ex.getMessage(), ex);
+        } finally {
+            management.resumeIdentityMap(identityMap);
+            management.releaseDatabase(db);
+        }
+
+        return results;
+    }
+
+    /**
+     * Finds an entity by its primary key, first in the entity cache and then in the database.
+     *
+     * @param method The method being invoked
+     * @param key The primary key
+     * @return The result of the query, either a List<T> or Optional<T> depending on the method's return type
+     * @throws SQLiteException If there's an error executing the query or if the return type is not supported
+     */
+    private Object findByCachedKey(Method method, Object key) {
+        EntityCache entityCache = management.getEntityCache();
+        T entity = (T) entityCache.get(entityClass, ((Number) key).longValue());
+
+        if (entity == null) {
+            long generation = entityCache.generation(entityClass);
+            String sql = "SELECT * FROM " + tableName + " WHERE " + extractWhereClause(method);
+            entity = queryItem(sql, createArgs(new Object[]{key})).orElse(null);
+            entityCache.put(entity, generation);
+        }
+
+        return toResult(method, entity);
+    }
+
+    /**
+     * Wraps an entity found by primary key in the return type of the method.
+     *
+     * @param method The method being invoked
+     * @param entity The entity, or null if it was not found
+     * @return A List<T> or Optional<T> depending on the method's return type
+     * @throws SQLiteException If the return type is not supported
+     */
+    private Object toResult(Method method, T entity) {
+        Class<?> returnType = resultType(method);
 
         if (List.class.isAssignableFrom(returnType)) {
-            return queryList(sql, arguments);
+            List<T> results = new ArrayList<>();
+            if (entity != null)
+                results.add(entity);
+
+            return results;
         } else if (Optional.class.isAssignableFrom(returnType)) {
-            return queryItem(sql, arguments);
+            return Optional.ofNullable(entity);
         } else {
             throw new SQLiteException("Unsupported return type for method: " + returnType.getName() +
                     ". Must be List<T> or Optional<T>");
         }
-
     }
 
     /**
@@ -2,12 +2,26 @@ package com.jef.sqlite.management.Query.QueryInvocation;
 
 import android.database.sqlite.SQLiteDatabase;
 
+import com.jef.sqlite.management.Query.WriteQueue;
 import com.jef.sqlite.management.SQLiteManagement;
+import com.jef.sqlite.management.cache.SqlTables;
+import com.jef.sqlite.management.cache.WriteScope;
 import com.jef.sqlite.management.exceptions.SQLiteException;
+import com.jef.sqlite.management.interfaces.ConflictStrategy;
+import com.jef.sqlite.management.interfaces.OnConflict;
 import com.jef.sqlite.management.interfaces.SQLiteQuery;
+import com.jef.sqlite.management.live.InvalidationTracker;
+import com.jef.sqlite.management.live.LiveQuery;
+import com.jef.sqlite.management.metrics.QueryMetrics;
+import com.jef.sqlite.management.metrics.QueryTracer;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 /**
  * Manejador de invocación para consultas dinámicas.
@@ -55,9 +69,14 @@ public class QueryInvocationHandler<T> implements InvocationHandler {
      * Metodo principal que intercepta todas las llamadas a métodos en la interfaz de consulta.
      * Analiza el nombre del metodo y los argumentos para determinar qué operación realizar.
      * Distribuye las consultas a los manejadores especializados según el tipo de operación:
-     * - Métodos que comienzan con "save" se dirigen a QuerySaveHandler
+     * - Métodos "save", "saveAll" y "upsertAll" se dirigen a QuerySaveHandler
      * - Métodos que comienzan con "find" se dirigen a QueryFindHandler
      * - Métodos que comienzan con "updateBy" se dirigen a QueryUpdateHandler
+     * Las escrituras que fallan porque otra conexión bloquea la base de datos se reintentan según la
+     * {@link com.jef.sqlite.management.Query.RetryPolicy} del gestor.
+     * Cada llamada se mide y se informa a los receptores de métricas registrados en el gestor.
+     * Los métodos que devuelven CompletableFuture se ejecutan en el grupo de hilos de lectura o en el hilo
+     * de escritura de {@link com.jef.sqlite.management.Query.QueryExecutors}, según el tipo de operación.
      *
      * @param proxy El objeto proxy en el que se invocó el metodo
      * @param method El metodo invocado
@@ -68,9 +87,71 @@ public class QueryInvocationHandler<T> implements InvocationHandler {
      */
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) {
+        boolean write = !isRead(method) && method.getReturnType() != LiveQuery.class;
+
+        // Writes are executed again while another connection holds the lock of the database
+        Supplier<Object> execution = write ?
+                () -> management.getRetryPolicy().execute(() -> execute(method, args)) :
+                () -> execute(method, args);
+
+        // The call is measured and traced on the thread that executes it, when metrics listeners are registered
+        // and tracing is enabled
+        Class<?> queryInterface = proxy.getClass().getInterfaces()[0];
+        Supplier<Object> operation = () -> management.getQueryTracer().trace(queryInterface, method,
+                () -> management.getQueryMetrics().measure(queryInterface, method, execution));
+
+        // Writes go through the write queue when it is enabled, to be committed in a batch
+        WriteQueue writeQueue = management.getWriteQueue();
+        boolean queued = write && writeQueue.isEnabled();
+
+        // Asynchronous methods run on the read pool or on the writer thread and complete off the caller thread
+        if (method.getReturnType() == CompletableFuture.class) {
+            if (queued)
+                return writeQueue.submit(operation);
+
+            Executor executor = write ?
+                    management.getQueryExecutors().getWriteExecutor() :
+                    management.getQueryExecutors().getReadExecutor();
+
+            return CompletableFuture.supplyAsync(operation, executor);
+        }
+
+        if (queued)
+            return writeQueue.execute(operation);
+
+        return operation.get();
+    }
+
+    /**
+     * Checks if a method only reads the database.
+     *
+     * @param method The method
+     * @return true for find, exists and validate methods and SQLiteQuery methods that capture their result
+     */
+    private boolean isRead(Method method) {
+        SQLiteQuery annotation = method.getAnnotation(SQLiteQuery.class);
+        if (annotation != null)
+            return annotation.captureResult();
+
+        String methodName = method.getName();
+        return methodName.startsWith("find") || methodName.startsWith("existsBy") || methodName.startsWith("validate");
+    }
+
+    /**
+     * Executes a query method on the current thread.
+     *
+     * @param method The method being invoked
+     * @param args The arguments passed to the method
+     * @return The result of the operation
+     */
+    private Object execute(Method method, Object[] args) {
         String methodName = method.getName();
 
         try {
+            // Live queries run their find method again when the tables it reads change
+            if (method.getReturnType() == LiveQuery.class)
+                return findHandler.liveQuery(method, args == null ? new Object[0] : args);
+
             // Check for SQLiteQuery annotation
             if (method.isAnnotationPresent(SQLiteQuery.class)) {
                 SQLiteQuery sqLiteQuery = method.getAnnotation(SQLiteQuery.class);
@@ -81,7 +162,7 @@ public class QueryInvocationHandler<T> implements InvocationHandler {
                 }
 
                 if (sqLiteQuery.captureResult())
-                    return findHandler.executeCustomQuery(method, args);
+                    return findHandler.handleFindMethod(method, args);
                 else {
                     return executeCustomQuery(method, args);
                 }
@@ -117,18 +198,40 @@ public class QueryInvocationHandler<T> implements InvocationHandler {
                 }
             }
 
+            if (methodName.equals("validateAll")) {
+                if (args == null || args.length == 0 || !(args[0] instanceof Collection))
+                    throw new SQLiteException("Collection of entities is required for validateAll method");
+
+                try {
+                    return validatorHandler.validateAll((Collection<T>) args[0]);
+                } catch (ClassCastException e) {
+                    throw new SQLiteException("Entities must be of type " + entityClass.getName());
+                }
+            }
+
             // Operaciones de guardado
             if (methodName.equals("save")) {
                 if (args == null || args.length == 0 || args[0] == null)
                     throw new SQLiteException("Entity is required for save method");
 
                 try {
-                    return saveHandler.save((T) args[0]);
+                    return saveHandler.save((T) args[0], conflictStrategy(method));
                 } catch (ClassCastException e) {
                     throw new SQLiteException("Entity must be of type " + entityClass.getName());
                 }
             }
 
+            if (methodName.equals("saveAll") || methodName.equals("upsertAll")) {
+                if (args == null || args.length == 0 || !(args[0] instanceof Collection))
+                    throw new SQLiteException("Collection of entities is required for " + methodName + " method");
+
+                try {
+                    return saveHandler.saveAll((Collection<T>) args[0], conflictStrategy(method));
+                } catch (ClassCastException e) {
+                    throw new SQLiteException("Entities must be of type " + entityClass.getName());
+                }
+            }
+
             // Operaciones de búsqueda
             if (methodName.startsWith("find"))
                 // Let QueryFindHandler handle all find operations
@@ -157,6 +260,28 @@ public class QueryInvocationHandler<T> implements InvocationHandler {
         }
     }
 
+    /**
+     * Gets the conflict strategy of a save method from its OnConflict annotation.
+     *
+     * @param method The save method
+     * @return The conflict strategy, UPDATE if the method is not annotated
+     */
+    private ConflictStrategy conflictStrategy(Method method) {
+        OnConflict onConflict = method.getAnnotation(OnConflict.class);
+        return onConflict != null ? onConflict.value() : ConflictStrategy.UPDATE;
+    }
+
+    /**
+     * Drops the cached data of a table written by a custom query and reports the change.
+     *
+     * @param tableName The table name
+     */
+    private void invalidateTable(String tableName) {
+        management.getUniqueValueFilters().invalidate(tableName);
+        WriteScope.entitiesWritten(management, tableName);
+        WriteScope.tableWritten(management, tableName);
+    }
+
     /**
      * Executes a custom SQL query defined in a SQLiteQuery annotation that doesn't return results.
      * This is used for non-query operations like INSERT, UPDATE, DELETE.
@@ -177,48 +302,87 @@ public class QueryInvocationHandler<T> implements InvocationHandler {
             throw new SQLiteException("SQL query cannot be empty in SQLiteQuery annotation");
 
         // Execute the SQL statement
-        SQLiteDatabase db = management.getWritableDatabase();
+        SQLiteDatabase db = management.acquireWritableDatabase();
+        InvalidationTracker tracker = management.getInvalidationTracker();
+        Set<String> changedTables;
+
         try {
-            // For non-query operations, we use execSQL
-            if (args.length > 0) {
-                // Replace ? placeholders with actual values
-                for (Object arg : args) {
-                    String typeName = arg.getClass().getSimpleName().toLowerCase();
-
-                    switch (typeName) {
-                        case "string":
-                            sql = sql.replaceFirst("\\?", "'" + arg + "'");
-                            break;
-
-                        case "short":
-                        case "int":
-                        case "integer":
-                        case "long":
-                        case "double":
-                        case "float":
-                            sql = sql.replaceFirst("\\?", arg.toString());
-                            break;
-                        case "boolean":
-                            boolean value = (boolean) arg;
-                            sql = sql.replaceFirst("\\?", (value ? "1" : "0"));
-                            break;
-
-                        default:
-                            throw new SQLiteException("Unsupported type for parameter: " + arg.getClass().getSimpleName());
+            // The triggers are installed before the transaction, so a rollback of the write does not drop them
+            boolean tracked = tracker.beginTrackedWrite(db);
+
+            // The transaction keeps the statement and the change log of the triggers on the same connection
+            db.beginTransaction();
+            try {
+                // For non-query operations, we use execSQL
+                if (args.length > 0) {
+                    // Replace ? placeholders with actual values
+                    for (Object arg : args) {
+                        String typeName = arg.getClass().getSimpleName().toLowerCase();
+
+                        switch (typeName) {
+                            case "string":
+                                sql = sql.replaceFirst("\\?", "'" + arg + "'");
+                                break;
+
+                            case "short":
+                            case "int":
+                            case "integer":
+                            case "long":
+                            case "double":
+                            case "float":
+                                sql = sql.replaceFirst("\\?", arg.toString());
+                                break;
+                            case "boolean":
+                                boolean value = (boolean) arg;
+                                sql = sql.replaceFirst("\\?", (value ? "1" : "0"));
+                                break;
+
+                            default:
+                                throw new SQLiteException("Unsupported type for parameter: " + arg.getClass().getSimpleName());
+                        }
+
                     }
 
                 }
 
-            }
+                QueryMetrics metrics = management.getQueryMetrics().current();
+                long start = metrics != null ? System.nanoTime() : 0;
 
-            db.execSQL(sql);
-            return true;
+                boolean traced = management.getQueryTracer().begin(QueryTracer.EXECUTE);
+                try {
+                    db.execSQL(sql);
+                } finally {
+                    management.getQueryTracer().end(traced);
+                }
+
+                if (metrics != null)
+                    metrics.written(sql, null, start, 0);
+
+                changedTables = tracker.endTrackedWrite(db, tracked);
+                db.setTransactionSuccessful();
+            } finally {
+                // Ends only this transaction: when nested, the outer one commits or rolls back with its owner
+                db.endTransaction();
+            }
 
         } catch (android.database.sqlite.SQLiteException e) {
             throw new SQLiteException("Error executing query: " + e.getMessage(), e);
         } finally {
-            db.close();
+            management.releaseDatabase(db);
+        }
+
+        // The rows written by a custom query are unknown, the caches of its table are dropped.
+        // Tables changed through cascades or triggers of the database are only known through the change log
+        String writtenTable = SqlTables.writtenTable(sql);
+        if (writtenTable != null) {
+            changedTables.add(writtenTable);
+            for (String changedTable : changedTables)
+                invalidateTable(changedTable);
+        } else {
+            management.getUniqueValueFilters().invalidateAll();
+            WriteScope.allWritten(management);
         }
+        return true;
     }
 
 
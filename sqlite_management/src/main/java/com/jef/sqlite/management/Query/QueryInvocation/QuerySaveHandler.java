@@ -1,28 +1,66 @@
 package com.jef.sqlite.management.Query.QueryInvocation;
 
 import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteProgram;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
 
 import com.jef.sqlite.management.SQLiteManagement;
+import com.jef.sqlite.management.cache.WriteScope;
 import com.jef.sqlite.management.exceptions.SQLiteException;
 import com.jef.sqlite.management.interfaces.Column;
+import com.jef.sqlite.management.interfaces.ConflictStrategy;
 import com.jef.sqlite.management.interfaces.Join;
 import com.jef.sqlite.management.interfaces.Table;
+import com.jef.sqlite.management.interfaces.ValidationMode;
+import com.jef.sqlite.management.metrics.QueryMetrics;
+import com.jef.sqlite.management.metrics.QueryTracer;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Handler class for save operations in the query system.
  * This class contains all methods related to saving entities.
- * 
+ * <p>
+ * Saving is an upsert: when the entity has a primary key value and a row with that key exists,
+ * the row is updated in the same statement, otherwise a new row is inserted.
+ * On API levels whose SQLite does not support {@code ON CONFLICT ... DO UPDATE} the upsert
+ * falls back to an update followed by {@code insertWithOnConflict}.
+ * <p>
+ * Keys generated by the database and default values of columns left null are assigned back
+ * onto the entity, using a {@code RETURNING} clause when SQLite supports it.
+ *
  * @param <T> The entity type being saved
  */
 public class QuerySaveHandler<T> {
 
+    /**
+     * First API level that ships SQLite 3.24 or newer, which supports the upsert syntax.
+     */
+    private static final int UPSERT_MIN_SDK = Build.VERSION_CODES.R;
+
+    /**
+     * First API level that ships SQLite 3.35 or newer, which supports the RETURNING clause.
+     */
+    private static final int RETURNING_MIN_SDK = Build.VERSION_CODES.UPSIDE_DOWN_CAKE;
+
+    /**
+     * Alias of the row ID in the RETURNING clause.
+     */
+    private static final String RETURNING_ROW_ID = "_returning_rowid";
+
     private final SQLiteManagement management;
+    private final QueryValidatorHandler<T> validatorHandler;
 
     /**
      * Constructor for QuerySaveHandler
@@ -31,16 +69,152 @@ public class QuerySaveHandler<T> {
      */
     public QuerySaveHandler(SQLiteManagement management) {
         this.management = management;
+        this.validatorHandler = new QueryValidatorHandler<>(management);
     }
 
     /**
-     * Saves an entity to the database by inserting it.
-     * 
+     * Saves an entity to the database, inserting it or updating the row with the same primary key.
+     * The generated primary key is assigned to the entity.
+     *
      * @param entity The entity to save
-     * @return The row ID of the inserted record in the database
+     * @return The row ID of the inserted record, or the primary key of the updated record
      * @throws SQLiteException If there's an error during the save operation
      */
     public long save(T entity) throws SQLiteException {
+        return save(entity, ConflictStrategy.UPDATE);
+    }
+
+    /**
+     * Saves an entity to the database resolving conflicts with the given strategy.
+     *
+     * @param entity The entity to save
+     * @param strategy The conflict strategy
+     * @return The row ID of the inserted record, the primary key of the updated record, or -1 if the row was ignored
+     * @throws SQLiteException If there's an error during the save operation
+     */
+    public long save(T entity, ConflictStrategy strategy) throws SQLiteException {
+        SQLiteDatabase db = management.acquireWritableDatabase();
+        Map<String, SQLiteStatement> statements = new HashMap<>();
+
+        QueryMetrics metrics = management.getQueryMetrics().current();
+        long start = metrics != null ? System.nanoTime() : 0;
+
+        boolean traced = management.getQueryTracer().begin(QueryTracer.EXECUTE);
+        try {
+            long result = validateAndSave(db, entity, strategy, statements);
+            if (metrics != null)
+                metrics.written(insertSql(entity.getClass()), null, start, result == -1 ? 0 : 1);
+
+            return result;
+        } catch (android.database.sqlite.SQLiteException e) {
+            // Wrap Android's SQLiteException in our own SQLiteException
+            throw new SQLiteException("SQLite error: " + e.getMessage(), e);
+        } finally {
+            management.getQueryTracer().end(traced);
+            closeStatements(statements);
+            management.releaseDatabase(db);
+        }
+    }
+
+    /**
+     * Saves a collection of entities in a single transaction.
+     * The upsert statement is compiled once and reused for every entity.
+     * If any entity fails, no entity of the collection is saved.
+     *
+     * @param entities The entities to save
+     * @param strategy The conflict strategy
+     * @return The row IDs of the saved records, in the iteration order of the collection
+     * @throws SQLiteException If there's an error during the save operation
+     */
+    public long[] saveAll(Collection<T> entities, ConflictStrategy strategy) throws SQLiteException {
+        if (entities == null)
+            throw new SQLiteException("Cannot save null collection");
+
+        long[] ids = new long[entities.size()];
+        if (entities.isEmpty())
+            return ids;
+
+        T first = entities.iterator().next();
+
+        SQLiteDatabase db = management.acquireWritableDatabase();
+        Map<String, SQLiteStatement> statements = new HashMap<>();
+
+        QueryMetrics metrics = management.getQueryMetrics().current();
+        long start = metrics != null ? System.nanoTime() : 0;
+
+        db.beginTransaction();
+        management.beginWriteScope();
+        boolean traced = management.getQueryTracer().begin(QueryTracer.EXECUTE);
+        boolean successful = false;
+        try {
+            int index = 0;
+            int saved = 0;
+            for (T entity : entities) {
+                ids[index] = validateAndSave(db, entity, strategy, statements);
+                if (ids[index++] != -1)
+                    saved++;
+            }
+
+            db.setTransactionSuccessful();
+            successful = true;
+            if (metrics != null)
+                metrics.written(insertSql(first.getClass()), null, start, saved);
+
+            return ids;
+        } catch (android.database.sqlite.SQLiteException e) {
+            throw new SQLiteException("SQLite error: " + e.getMessage(), e);
+        } finally {
+            closeStatements(statements);
+            boolean committed = false;
+            try {
+                db.endTransaction();
+                committed = successful;
+            } finally {
+                management.getQueryTracer().end(traced);
+                management.releaseDatabase(db);
+
+                // Invalidated again once the transaction is finished, rows read before the commit become stale.
+                // After a rollback the keys generated for the entities are restored
+                management.endWriteScope(committed);
+            }
+        }
+    }
+
+    /**
+     * Saves a single entity validating it according to the validation mode of the management.
+     * In {@link ValidationMode#PRE_CHECK} mode the entity is validated before the write, in
+     * {@link ValidationMode#CONSTRAINT} mode constraint violations are translated into validation errors.
+     *
+     * @param db The writable database
+     * @param entity The entity to save
+     * @param strategy The conflict strategy
+     * @param statements The compiled upsert statements, keyed by column list, reused across calls
+     * @return The row ID of the inserted record, the primary key of the updated record, or -1 if the row was ignored
+     * @throws SQLiteException If the entity is not valid
+     */
+    private long validateAndSave(SQLiteDatabase db, T entity, ConflictStrategy strategy, Map<String, SQLiteStatement> statements) {
+        if (management.getValidationMode() == ValidationMode.PRE_CHECK) {
+            validatorHandler.validateEntity(db, entity);
+            return executeSave(db, entity, strategy, statements);
+        }
+
+        try {
+            return executeSave(db, entity, strategy, statements);
+        } catch (SQLiteConstraintException e) {
+            throw validatorHandler.translateConstraintException(entity, e);
+        }
+    }
+
+    /**
+     * Saves a single entity using an open database.
+     *
+     * @param db The writable database
+     * @param entity The entity to save
+     * @param strategy The conflict strategy
+     * @param statements The compiled upsert statements, keyed by column list, reused across calls
+     * @return The row ID of the inserted record, the primary key of the updated record, or -1 if the row was ignored
+     */
+    private long executeSave(SQLiteDatabase db, T entity, ConflictStrategy strategy, Map<String, SQLiteStatement> statements) {
         if (entity == null)
             throw new SQLiteException("Cannot save null entity");
 
@@ -92,6 +266,10 @@ public class QuerySaveHandler<T> {
 
         // Create ContentValues from entity fields
         ContentValues values = new ContentValues();
+        String primaryKeyColumn = null;
+        Object primaryKeyValue = null;
+        Field generatedKeyField = null;
+        List<Field> defaultFields = new ArrayList<>();
 
         // Process all fields with Column annotation
         for (Field field : entityClass.getDeclaredFields()) {
@@ -101,98 +279,502 @@ public class QuerySaveHandler<T> {
             Column column = field.getAnnotation(Column.class);
             String columnName = column.name();
 
-            if (column.autoIncrement())
-                continue;
-
-
             field.setAccessible(true);
             try {
                 Object value = field.get(entity);
 
-                // Add the value to ContentValues based on its type
-                if (value == null) {
-                    values.putNull(columnName);
-                } else if (value instanceof String) {
-                    values.put(columnName, (String) value);
-                } else if (value instanceof Short) {
-                    values.put(columnName, (Short) value);
-                } else if (value instanceof Integer) {
-                    values.put(columnName, (Integer) value);
-                } else if (value instanceof Long) {
-                    values.put(columnName, (Long) value);
-                } else if (value instanceof Double) {
-                    values.put(columnName, (Double) value);
-                } else if (value instanceof Float) {
-                    values.put(columnName, (Float) value);
-                } else if (value instanceof Boolean) {
-                    values.put(columnName, ((Boolean) value) ? 1 : 0);
-                } else if (value instanceof byte[]) {
-                    values.put(columnName, (byte[]) value);
-                } else if (value instanceof Byte) {
-                    values.put(columnName, (Byte) value);
-                } else if (value instanceof Date) {
-                    values.put(columnName, ((Date) value).getTime());
+                if (column.primaryKey()) {
+                    primaryKeyColumn = columnName;
+                    primaryKeyValue = value;
+                }
+
+                // An auto increment key without value is generated by the database
+                if (column.autoIncrement() && isUnsetKey(value)) {
+                    generatedKeyField = field;
+                    continue;
                 }
 
+                // A null value is left out of inserts so the database applies the default value of the column
+                if (value == null && column.defaultValue() != null && !column.defaultValue().isEmpty()) {
+                    defaultFields.add(field);
+                    continue;
+                }
+
+                putValue(values, columnName, value);
             } catch (IllegalAccessException e) {
                 throw new SQLiteException("Error accessing field " + field.getName() + ": " + e.getMessage(), e);
             }
         }
 
         // Add foreign key values from the map
-        for (Map.Entry<String, Object> entry : foreignKeyValues.entrySet()) {
-            String columnName = entry.getKey();
-            Object value = entry.getValue();
-
-            // Add the value to ContentValues based on its type
-            if (value == null) {
-                values.putNull(columnName);
-            } else if (value instanceof String) {
-                values.put(columnName, (String) value);
-            } else if (value instanceof Short) {
-                values.put(columnName, (Short) value);
-            } else if (value instanceof Integer) {
-                values.put(columnName, (Integer) value);
-            } else if (value instanceof Long) {
-                values.put(columnName, (Long) value);
-            } else if (value instanceof Double) {
-                values.put(columnName, (Double) value);
-            } else if (value instanceof Float) {
-                values.put(columnName, (Float) value);
-            } else if (value instanceof Boolean) {
-                values.put(columnName, ((Boolean) value) ? 1 : 0);
-            } else if (value instanceof byte[]) {
-                values.put(columnName, (byte[]) value);
-            } else if (value instanceof Byte) {
-                values.put(columnName, (Byte) value);
-            } else if (value instanceof Date) {
-                values.put(columnName, ((Date) value).getTime());
-            }
+        for (Map.Entry<String, Object> entry : foreignKeyValues.entrySet())
+            putValue(values, entry.getKey(), entry.getValue());
+
+        // Without a primary key value there is nothing to update, the entity is always inserted
+        boolean upsert = strategy == ConflictStrategy.UPDATE && primaryKeyColumn != null && values.containsKey(primaryKeyColumn);
+        boolean overwrites = upsert ||
+                (strategy == ConflictStrategy.REPLACE && primaryKeyColumn != null && values.containsKey(primaryKeyColumn));
+
+        // An existing row keeps the null values of the entity, only new rows get the default values
+        if (overwrites) {
+            for (Field field : defaultFields)
+                values.putNull(field.getAnnotation(Column.class).name());
+
+            defaultFields.clear();
+        }
+
+        // Default values are read back with RETURNING in the same statement when SQLite supports it,
+        // a generated key alone is the row ID returned by the insert
+        if (!defaultFields.isEmpty() && Build.VERSION.SDK_INT >= RETURNING_MIN_SDK) {
+            List<Field> readBackFields = new ArrayList<>(defaultFields);
+            if (generatedKeyField != null)
+                readBackFields.add(generatedKeyField);
+
+            long result = saveReturning(db, tableName, values, strategy, entity, readBackFields);
+            if (result != -1)
+                recordWrite(entityClass, tableName, values, upsert, strategy, primaryKeyValue);
 
+            return result;
         }
 
-        // Perform the database operation
-        SQLiteDatabase db = management.getWritableDatabase();
+        long result;
+        if (!upsert)
+            result = insert(db, tableName, values, strategy, statements);
+        else if (Build.VERSION.SDK_INT >= UPSERT_MIN_SDK)
+            result = upsert(db, tableName, values, primaryKeyColumn, primaryKeyValue, statements);
+        else
+            result = updateOrInsert(db, tableName, values, primaryKeyColumn, primaryKeyValue);
+
+        if (result == -1)
+            return result;
+
+        recordWrite(entityClass, tableName, values, upsert, strategy, primaryKeyValue);
+
+        if (generatedKeyField != null)
+            setGeneratedKey(entity, generatedKeyField, result);
+
+        if (!defaultFields.isEmpty())
+            readDefaultValues(db, tableName, "rowid", String.valueOf(result), entity, defaultFields);
+
+        return result;
+    }
+
+    /**
+     * Updates the unique value filters, invalidates the cached entities affected by a write
+     * and bumps the version of the table. Inside a transaction of the library, the same invalidation
+     * is repeated after the commit by its {@link WriteScope}.
+     *
+     * @param entityClass The entity class
+     * @param tableName The table name
+     * @param values The written values
+     * @param upsert true if the write may have updated the row with the same primary key
+     * @param strategy The conflict strategy
+     * @param primaryKeyValue The primary key of the entity, or null if it was generated
+     */
+    private void recordWrite(Class<?> entityClass, String tableName, ContentValues values, boolean upsert,
+                             ConflictStrategy strategy, Object primaryKeyValue) {
+        management.getUniqueValueFilters().recordWrite(tableName, values, upsert || strategy == ConflictStrategy.REPLACE);
+
+        // REPLACE deletes the rows in conflict with any unique column, not only the one with the same key
+        if (strategy == ConflictStrategy.REPLACE || (upsert && !(primaryKeyValue instanceof Number)))
+            WriteScope.entitiesWritten(management, tableName);
+        else if (upsert)
+            WriteScope.entityWritten(management, entityClass, ((Number) primaryKeyValue).longValue());
+
+        WriteScope.tableWritten(management, tableName);
+    }
+
+    /**
+     * Inserts a row with a RETURNING clause and assigns the generated key and the default values
+     * back onto the entity, without an extra SELECT.
+     * The SQL only depends on the columns, so the rows of a batch reuse the statement prepared
+     * by the connection for the first one.
+     *
+     * @param db The writable database
+     * @param tableName The table name
+     * @param values The values to insert
+     * @param strategy The conflict strategy
+     * @param entity The entity being saved
+     * @param readBackFields The fields whose values are generated by the database
+     * @return The row ID of the inserted record, or -1 if no row was written
+     */
+    private long saveReturning(SQLiteDatabase db, String tableName, ContentValues values,
+                               ConflictStrategy strategy, Object entity, List<Field> readBackFields) {
+        List<String> columns = new ArrayList<>(values.keySet());
+        String sql = buildInsertSql(tableName, columns, strategy) + " RETURNING rowid AS " + RETURNING_ROW_ID + ", *";
+
+        final Object[] bindArgs = new Object[columns.size()];
+        for (int i = 0; i < columns.size(); i++)
+            bindArgs[i] = values.get(columns.get(i));
+
+        Cursor cursor = db.rawQueryWithFactory((database, driver, editTable, query) -> {
+            for (int i = 0; i < bindArgs.length; i++)
+                bindValue(query, i + 1, bindArgs[i]);
+
+            return new SQLiteCursor(driver, editTable, query);
+        }, sql, null, null);
+
         try {
-            try {
-                // Insert new entity
-                long result = db.insert(tableName, null, values);
+            if (!cursor.moveToFirst())
+                return -1;
+
+            for (Field field : readBackFields)
+                setColumnValue(cursor, entity, field);
+
+            return cursor.getLong(cursor.getColumnIndex(RETURNING_ROW_ID));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Reads the values assigned by the database to the columns that were left out of the insert.
+     * Only used when RETURNING is not available.
+     *
+     * @param db The database
+     * @param tableName The table name
+     * @param whereColumn The column that identifies the row (rowid or primary key)
+     * @param whereValue The value of the column that identifies the row
+     * @param entity The entity being saved
+     * @param fields The fields to read back
+     */
+    private void readDefaultValues(SQLiteDatabase db, String tableName, String whereColumn, String whereValue,
+                                   Object entity, List<Field> fields) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0)
+                sql.append(", ");
+
+            sql.append(fields.get(i).getAnnotation(Column.class).name());
+        }
+        sql.append(" FROM ").append(tableName).append(" WHERE ").append(whereColumn).append(" = ?");
+
+        Cursor cursor = db.rawQuery(sql.toString(), new String[]{whereValue});
+        try {
+            if (cursor.moveToFirst())
+                for (Field field : fields)
+                    setColumnValue(cursor, entity, field);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Assigns the key generated by the database to the primary key field of the entity.
+     *
+     * @param entity The saved entity
+     * @param field The auto increment primary key field
+     * @param key The generated key
+     * @throws SQLiteException If the field cannot be assigned
+     */
+    private void setGeneratedKey(Object entity, Field field, long key) {
+        Class<?> fieldType = field.getType();
+        WriteScope.fieldAssigned(management, entity, field);
 
-                return result;
-            } catch (android.database.sqlite.SQLiteException e) {
-                // Wrap Android's SQLiteException in our own SQLiteException
-                throw new SQLiteException("SQLite error: " + e.getMessage(), e);
+        try {
+            if (fieldType == int.class || fieldType == Integer.class)
+                field.set(entity, (int) key);
+            else if (fieldType == long.class || fieldType == Long.class)
+                field.set(entity, key);
+            else if (fieldType == short.class || fieldType == Short.class)
+                field.set(entity, (short) key);
+        } catch (IllegalAccessException e) {
+            throw new SQLiteException("Error accessing field " + field.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sets the value of a @Column field from the cursor.
+     *
+     * @param cursor The cursor positioned at the saved row
+     * @param entity The saved entity
+     * @param field The field to set
+     * @throws SQLiteException If the field cannot be assigned
+     */
+    private void setColumnValue(Cursor cursor, Object entity, Field field) {
+        int columnIndex = cursor.getColumnIndex(field.getAnnotation(Column.class).name());
+        if (columnIndex == -1)
+            return;
+
+        Class<?> fieldType = field.getType();
+        WriteScope.fieldAssigned(management, entity, field);
+
+        try {
+            if (cursor.isNull(columnIndex)) {
+                if (!fieldType.isPrimitive())
+                    field.set(entity, null);
+                return;
             }
+
+            if (fieldType == String.class)
+                field.set(entity, cursor.getString(columnIndex));
+            else if (fieldType == short.class || fieldType == Short.class)
+                field.set(entity, cursor.getShort(columnIndex));
+            else if (fieldType == int.class || fieldType == Integer.class)
+                field.set(entity, cursor.getInt(columnIndex));
+            else if (fieldType == long.class || fieldType == Long.class)
+                field.set(entity, cursor.getLong(columnIndex));
+            else if (fieldType == double.class || fieldType == Double.class)
+                field.set(entity, cursor.getDouble(columnIndex));
+            else if (fieldType == float.class || fieldType == Float.class)
+                field.set(entity, cursor.getFloat(columnIndex));
+            else if (fieldType == boolean.class || fieldType == Boolean.class)
+                field.set(entity, cursor.getInt(columnIndex) == 1);
+            else if (fieldType == byte.class || fieldType == Byte.class)
+                field.set(entity, (byte) cursor.getShort(columnIndex));
+            else if (fieldType == byte[].class)
+                field.set(entity, cursor.getBlob(columnIndex));
+            else if (fieldType == Date.class)
+                field.set(entity, new Date(cursor.getLong(columnIndex)));
+        } catch (IllegalAccessException e) {
+            throw new SQLiteException("Error accessing field " + field.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Inserts a row with a statement compiled once per strategy and column list and reused across calls.
+     *
+     * @return The row ID of the inserted record, or -1 if the row was ignored
+     */
+    private long insert(SQLiteDatabase db, String tableName, ContentValues values, ConflictStrategy strategy,
+                        Map<String, SQLiteStatement> statements) {
+        List<String> columns = new ArrayList<>(values.keySet());
+        String key = strategy.name() + ":" + String.join(",", columns);
+
+        SQLiteStatement statement = statements.get(key);
+        if (statement == null) {
+            statement = db.compileStatement(buildInsertSql(tableName, columns, strategy));
+            statements.put(key, statement);
+        }
+
+        statement.clearBindings();
+        for (int i = 0; i < columns.size(); i++)
+            bindValue(statement, i + 1, values.get(columns.get(i)));
+
+        return statement.executeInsert();
+    }
+
+    /**
+     * Inserts or updates a row with a single INSERT ... ON CONFLICT(pk) DO UPDATE statement.
+     *
+     * @return The primary key of the row when it is numeric, otherwise the row ID returned by SQLite
+     */
+    private long upsert(SQLiteDatabase db, String tableName, ContentValues values, String primaryKeyColumn,
+                        Object primaryKeyValue, Map<String, SQLiteStatement> statements) {
+        List<String> columns = new ArrayList<>(values.keySet());
+        String key = String.join(",", columns);
+
+        SQLiteStatement statement = statements.get(key);
+        if (statement == null) {
+            statement = db.compileStatement(buildUpsertSql(tableName, columns, primaryKeyColumn));
+            statements.put(key, statement);
+        }
+
+        statement.clearBindings();
+        for (int i = 0; i < columns.size(); i++)
+            bindValue(statement, i + 1, values.get(columns.get(i)));
+
+        long rowId = statement.executeInsert();
+
+        if (primaryKeyValue instanceof Number)
+            return ((Number) primaryKeyValue).longValue();
+
+        return rowId;
+    }
+
+    /**
+     * Fallback of the upsert for old SQLite versions: updates the row with the primary key
+     * and inserts it when no row was updated, both inside a transaction.
+     *
+     * @return The primary key of the row when it is numeric, otherwise the row ID of the inserted record
+     */
+    private long updateOrInsert(SQLiteDatabase db, String tableName, ContentValues values,
+                                String primaryKeyColumn, Object primaryKeyValue) {
+        db.beginTransaction();
+        try {
+            long result;
+            int updated = db.update(tableName, values, primaryKeyColumn + " = ?", new String[]{convertKey(primaryKeyValue)});
+
+            if (updated > 0)
+                result = primaryKeyValue instanceof Number ? ((Number) primaryKeyValue).longValue() : -1;
+            else
+                result = db.insertWithOnConflict(tableName, null, values, SQLiteDatabase.CONFLICT_ABORT);
+
+            db.setTransactionSuccessful();
+            return result;
         } finally {
-            db.close();
+            db.endTransaction();
         }
     }
 
+    /**
+     * Describes the inserts of an entity class for the metrics, the columns depend on each entity.
+     * For example: "INSERT INTO products"
+     *
+     * @param entityClass The entity class, annotated with @Table
+     * @return The description of the insert
+     */
+    private String insertSql(Class<?> entityClass) {
+        return "INSERT INTO " + entityClass.getAnnotation(Table.class).name();
+    }
+
+    /**
+     * Builds the insert statement for a list of columns with the conflict clause of the strategy.
+     * For example: "INSERT OR IGNORE INTO products (name) VALUES (?)"
+     *
+     * @param tableName The table name
+     * @param columns The columns to insert
+     * @param strategy The conflict strategy
+     * @return The insert SQL
+     */
+    private String buildInsertSql(String tableName, List<String> columns, ConflictStrategy strategy) {
+        StringBuilder sql = new StringBuilder("INSERT");
+
+        if (strategy != ConflictStrategy.UPDATE)
+            sql.append(" OR ").append(strategy.name());
+
+        sql.append(" INTO ").append(tableName);
+
+        if (columns.isEmpty())
+            return sql.append(" DEFAULT VALUES").toString();
+
+        sql.append(" (").append(String.join(", ", columns)).append(") VALUES (");
+        for (int i = 0; i < columns.size(); i++)
+            sql.append(i > 0 ? ", ?" : "?");
+
+        return sql.append(")").toString();
+    }
+
+    /**
+     * Builds the upsert statement for a list of columns.
+     * For example: "INSERT INTO products (id, name) VALUES (?, ?) ON CONFLICT(id) DO UPDATE SET name = excluded.name"
+     *
+     * @param tableName The table name
+     * @param columns The columns to insert
+     * @param primaryKeyColumn The primary key column used as conflict target
+     * @return The upsert SQL
+     */
+    private String buildUpsertSql(String tableName, List<String> columns, String primaryKeyColumn) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName).append(" (");
+        StringBuilder placeholders = new StringBuilder();
+        StringBuilder updates = new StringBuilder();
+
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i);
+
+            if (i > 0) {
+                sql.append(", ");
+                placeholders.append(", ");
+            }
+
+            sql.append(column);
+            placeholders.append("?");
+
+            if (column.equals(primaryKeyColumn))
+                continue;
+
+            if (updates.length() > 0)
+                updates.append(", ");
 
+            updates.append(column).append(" = excluded.").append(column);
+        }
+
+        sql.append(") VALUES (").append(placeholders).append(") ON CONFLICT(").append(primaryKeyColumn).append(")");
 
+        if (updates.length() == 0)
+            sql.append(" DO NOTHING");
+        else
+            sql.append(" DO UPDATE SET ").append(updates);
 
+        return sql.toString();
+    }
 
+    /**
+     * Checks if the value of an auto increment key is unset (null or zero).
+     *
+     * @param value The key value
+     * @return true if the database must generate the key, false otherwise
+     */
+    private boolean isUnsetKey(Object value) {
+        return value == null || (value instanceof Number && ((Number) value).longValue() == 0);
+    }
 
+    /**
+     * Converts a primary key value to a string for use as where argument.
+     *
+     * @param value The key value
+     * @return The string representation of the key
+     */
+    private String convertKey(Object value) {
+        if (value instanceof Boolean)
+            return ((Boolean) value) ? "1" : "0";
+
+        if (value instanceof Date)
+            return String.valueOf(((Date) value).getTime());
+
+        return String.valueOf(value);
+    }
 
+    /**
+     * Adds a value to ContentValues based on its type.
+     *
+     * @param values The ContentValues to fill
+     * @param columnName The column name
+     * @param value The value to add
+     */
+    private void putValue(ContentValues values, String columnName, Object value) {
+        if (value == null) {
+            values.putNull(columnName);
+        } else if (value instanceof String) {
+            values.put(columnName, (String) value);
+        } else if (value instanceof Short) {
+            values.put(columnName, (Short) value);
+        } else if (value instanceof Integer) {
+            values.put(columnName, (Integer) value);
+        } else if (value instanceof Long) {
+            values.put(columnName, (Long) value);
+        } else if (value instanceof Double) {
+            values.put(columnName, (Double) value);
+        } else if (value instanceof Float) {
+            values.put(columnName, (Float) value);
+        } else if (value instanceof Boolean) {
+            values.put(columnName, ((Boolean) value) ? 1 : 0);
+        } else if (value instanceof byte[]) {
+            values.put(columnName, (byte[]) value);
+        } else if (value instanceof Byte) {
+            values.put(columnName, (Byte) value);
+        } else if (value instanceof Date) {
+            values.put(columnName, ((Date) value).getTime());
+        }
+    }
+
+    /**
+     * Binds a value taken from ContentValues to a compiled statement or query.
+     *
+     * @param statement The statement
+     * @param index The 1-based index of the parameter
+     * @param value The value to bind
+     */
+    private void bindValue(SQLiteProgram statement, int index, Object value) {
+        if (value == null)
+            statement.bindNull(index);
+        else if (value instanceof String)
+            statement.bindString(index, (String) value);
+        else if (value instanceof Double || value instanceof Float)
+            statement.bindDouble(index, ((Number) value).doubleValue());
+        else if (value instanceof Number)
+            statement.bindLong(index, ((Number) value).longValue());
+        else if (value instanceof Boolean)
+            statement.bindLong(index, ((Boolean) value) ? 1 : 0);
+        else if (value instanceof byte[])
+            statement.bindBlob(index, (byte[]) value);
+        else
+            statement.bindString(index, value.toString());
+    }
+
+    private void closeStatements(Map<String, SQLiteStatement> statements) {
+        for (SQLiteStatement statement : statements.values())
+            statement.close();
+    }
 
 }
@@ -4,10 +4,13 @@ import android.content.ContentValues;
 import android.database.sqlite.SQLiteDatabase;
 
 import com.jef.sqlite.management.SQLiteManagement;
+import com.jef.sqlite.management.cache.WriteScope;
 import com.jef.sqlite.management.exceptions.SQLiteException;
 import com.jef.sqlite.management.interfaces.Column;
 import com.jef.sqlite.management.interfaces.Join;
 import com.jef.sqlite.management.interfaces.Table;
+import com.jef.sqlite.management.metrics.QueryMetrics;
+import com.jef.sqlite.management.metrics.QueryTracer;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -82,15 +85,33 @@ public class QueryUpdateHandler<T> {
 
         String[] whereArgs = createArgs(whereArgsObjects);
 
-        SQLiteDatabase db = management.getWritableDatabase();
+        SQLiteDatabase db = management.acquireWritableDatabase();
         try {
-            return db.update(tableName, values, whereClause, whereArgs);
+            QueryMetrics metrics = management.getQueryMetrics().current();
+            long start = metrics != null ? System.nanoTime() : 0;
+
+            int updated;
+            boolean traced = management.getQueryTracer().begin(QueryTracer.EXECUTE);
+            try {
+                updated = db.update(tableName, values, whereClause, whereArgs);
+            } finally {
+                management.getQueryTracer().end(traced);
+            }
+
+            if (metrics != null)
+                metrics.written(updateSql(values, whereClause), whereArgs, start, updated);
+
+            if (updated > 0) {
+                management.getUniqueValueFilters().recordWrite(tableName, values, true);
+                WriteScope.entitiesWritten(management, tableName);
+                WriteScope.tableWritten(management, tableName);
+            }
+
+            return updated;
         } catch (android.database.sqlite.SQLiteException e) {
             throw new SQLiteException("Error updating entity: " + e.getMessage(), e);
         } finally {
-            if (db != null && db.isOpen()) {
-                db.close();
-            }
+            management.releaseDatabase(db);
         }
 
     }
@@ -172,18 +193,48 @@ public class QueryUpdateHandler<T> {
 
         String[] whereArgs = createArgs(args, columnsToUpdate.length);
 
-        SQLiteDatabase db = management.getWritableDatabase();
+        SQLiteDatabase db = management.acquireWritableDatabase();
         try {
-            return db.update(tableName, contentValues, whereClause, whereArgs);
+            QueryMetrics metrics = management.getQueryMetrics().current();
+            long start = metrics != null ? System.nanoTime() : 0;
+
+            int updated;
+            boolean traced = management.getQueryTracer().begin(QueryTracer.EXECUTE);
+            try {
+                updated = db.update(tableName, contentValues, whereClause, whereArgs);
+            } finally {
+                management.getQueryTracer().end(traced);
+            }
+
+            if (metrics != null)
+                metrics.written(updateSql(contentValues, whereClause), whereArgs, start, updated);
+
+            if (updated > 0) {
+                management.getUniqueValueFilters().recordWrite(tableName, contentValues, true);
+                WriteScope.entitiesWritten(management, tableName);
+                WriteScope.tableWritten(management, tableName);
+            }
+
+            return updated;
         } catch (android.database.sqlite.SQLiteException e) {
             throw new SQLiteException("Error updating entity: " + e.getMessage(), e);
         } finally {
-            if (db != null && db.isOpen()) {
-                db.close();
-            }
+            management.releaseDatabase(db);
         }
     }
 
+    /**
+     * Builds the SQL of an update for the metrics, Android generates the statement from the values.
+     * For example: "UPDATE products SET name = ? WHERE id = ?"
+     *
+     * @param values The values to update
+     * @param whereClause The where clause
+     * @return The update SQL
+     */
+    private String updateSql(ContentValues values, String whereClause) {
+        return "UPDATE " + tableName + " SET " + String.join(" = ?, ", values.keySet()) + " = ? WHERE " + whereClause;
+    }
+
 
     /**
      * Extracts the where clause from a method name.
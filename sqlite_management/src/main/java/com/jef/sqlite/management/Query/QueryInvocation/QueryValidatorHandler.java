@@ -1,9 +1,11 @@
 package com.jef.sqlite.management.Query.QueryInvocation;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 
 import com.jef.sqlite.management.SQLiteManagement;
+import com.jef.sqlite.management.cache.UniqueValueFilters;
 import com.jef.sqlite.management.exceptions.SQLiteException;
 import com.jef.sqlite.management.interfaces.Column;
 import com.jef.sqlite.management.interfaces.Join;
@@ -11,16 +13,36 @@ import com.jef.sqlite.management.interfaces.Table;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Handler class for validating entities before database operations.
- * This class contains methods to check if entities are valid for insertion or update.
+ * This class contains methods to check if entities are valid for insertion or update,
+ * and translates constraint violations raised by the database into validation errors.
  * 
  * @param <T> The entity type being validated
  */
 public class QueryValidatorHandler<T> {
 
+    /**
+     * Maximum number of arguments of an IN (...) query, below the SQLITE_MAX_VARIABLE_NUMBER of old SQLite versions.
+     */
+    private static final int MAX_IN_ARGS = 500;
+
+    /**
+     * Message of a constraint violation, the first group is the constraint and the second the failing columns.
+     */
+    private static final Pattern CONSTRAINT_FAILED = Pattern.compile("(UNIQUE|NOT NULL) constraint failed: ([\\w.]+(?:, *[\\w.]+)*)");
+
     private final SQLiteManagement management;
 
     /**
@@ -38,22 +60,162 @@ public class QueryValidatorHandler<T> {
      * 1. The entity is not null
      * 2. All non-null fields have values
      * 3. For unique fields, no existing records have the same values
+     * All the uniqueness checks of the entity are combined into a single query.
+     * The row with the primary key of the entity, if it has one, is not a duplicate: saving it updates that row.
      * 
      * @param entity The entity to validate
      * @return true if the entity is valid, false otherwise
      * @throws SQLiteException If there's an error during validation
      */
     public boolean validateEntity(T entity) throws SQLiteException {
+        SQLiteDatabase db = management.acquireReadableDatabase();
+
+        try {
+            return validateEntity(db, entity);
+        } finally {
+            management.releaseDatabase(db);
+        }
+    }
+
+    /**
+     * Validates an entity using a database connection borrowed from the caller.
+     * The connection is not closed.
+     *
+     * @param db The database to run the uniqueness query on
+     * @param entity The entity to validate
+     * @return true if the entity is valid
+     * @throws SQLiteException If the entity is not valid or there's an error during validation
+     */
+    public boolean validateEntity(SQLiteDatabase db, T entity) throws SQLiteException {
+        List<String> validationErrors = new ArrayList<>();
+        List<UniqueCheck> uniqueChecks = new ArrayList<>();
+        String tableName = collectChecks(entity, validationErrors, uniqueChecks);
+
+        if (!uniqueChecks.isEmpty()) {
+            boolean[] exists = existsWithSameValues(db, tableName, uniqueChecks, primaryKey(entity));
+
+            for (int i = 0; i < uniqueChecks.size(); i++)
+                if (exists[i])
+                    validationErrors.add(uniqueChecks.get(i).error());
+        }
+
+        // If there are validation errors, throw an exception with all errors
+        if (!validationErrors.isEmpty()) {
+            throw new SQLiteException("Entity validation failed: " + String.join(", ", validationErrors));
+        }
+
+        return true;
+    }
+
+    /**
+     * Validates a batch of entities.
+     * The uniqueness of each unique column is checked for the whole batch with one IN (...) query,
+     * values repeated inside the batch are also reported.
+     *
+     * @param entities The entities to validate
+     * @return The offending entities mapped to their validation errors, empty if all the entities are valid
+     * @throws SQLiteException If there's an error during validation
+     */
+    public Map<T, List<String>> validateAll(Collection<T> entities) throws SQLiteException {
+        if (entities == null)
+            throw new SQLiteException("Cannot validate null collection");
+
+        Map<T, List<String>> invalidEntities = new LinkedHashMap<>();
+        if (entities.isEmpty())
+            return invalidEntities;
+
+        // Unique checks grouped by column, in the iteration order of the collection
+        Map<String, List<UniqueCheck>> checksByColumn = new LinkedHashMap<>();
+        Map<UniqueCheck, T> owners = new HashMap<>();
+        Map<T, String[]> keys = new HashMap<>();
+        String tableName = null;
+        String keyColumn = null;
+
+        for (T entity : entities) {
+            List<String> errors = new ArrayList<>();
+            List<UniqueCheck> uniqueChecks = new ArrayList<>();
+            tableName = collectChecks(entity, errors, uniqueChecks);
+
+            if (!errors.isEmpty())
+                invalidEntities.put(entity, errors);
+
+            String[] key = primaryKey(entity);
+            if (key != null) {
+                keys.put(entity, key);
+                keyColumn = key[0];
+            }
+
+            for (UniqueCheck check : uniqueChecks) {
+                List<UniqueCheck> columnChecks = checksByColumn.get(check.columnName);
+                if (columnChecks == null) {
+                    columnChecks = new ArrayList<>();
+                    checksByColumn.put(check.columnName, columnChecks);
+                }
+
+                columnChecks.add(check);
+                owners.put(check, entity);
+            }
+        }
+
+        if (checksByColumn.isEmpty())
+            return invalidEntities;
+
+        SQLiteDatabase db = management.acquireReadableDatabase();
+
+        try {
+            for (Map.Entry<String, List<UniqueCheck>> entry : checksByColumn.entrySet()) {
+                Set<String> seen = new HashSet<>();
+                Map<String, String> existing = findExistingValues(db, tableName, entry.getKey(), keyColumn, entry.getValue());
+
+                for (UniqueCheck check : entry.getValue()) {
+                    String error = null;
+                    String[] key = keys.get(owners.get(check));
+
+                    // The row of the entity itself is not a duplicate
+                    if (existing.containsKey(check.value) && (key == null || !key[1].equals(existing.get(check.value))))
+                        error = check.error();
+                    else if (!seen.add(check.value))
+                        error = check.duplicatedError();
+
+                    if (error == null)
+                        continue;
+
+                    T entity = owners.get(check);
+                    List<String> errors = invalidEntities.get(entity);
+                    if (errors == null) {
+                        errors = new ArrayList<>();
+                        invalidEntities.put(entity, errors);
+                    }
+
+                    errors.add(error);
+                }
+            }
+        } finally {
+            management.releaseDatabase(db);
+        }
+
+        return invalidEntities;
+    }
+
+    /**
+     * Checks the null restrictions of an entity and collects its uniqueness checks.
+     *
+     * @param entity The entity to validate
+     * @param validationErrors The list that receives the null restriction errors
+     * @param uniqueChecks The list that receives the uniqueness checks to run against the database
+     * @return The table name of the entity
+     * @throws SQLiteException If the entity is null or is not annotated with @Table
+     */
+    private String collectChecks(T entity, List<String> validationErrors, List<UniqueCheck> uniqueChecks) throws SQLiteException {
         if (entity == null)
             throw new SQLiteException("Cannot validate null entity");
 
         Class<?> entityClass = entity.getClass();
-        final String tableName = entityClass.getAnnotation(Table.class).name();
 
         if (!entityClass.isAnnotationPresent(Table.class))
             throw new SQLiteException("Entity class " + entityClass.getName() + " is not annotated with @Table");
 
-        List<String> validationErrors = new ArrayList<>();
+        final String tableName = entityClass.getAnnotation(Table.class).name();
 
         // Check all fields with Column annotation
         for (Field field : entityClass.getDeclaredFields()) {
@@ -78,10 +240,9 @@ public class QueryValidatorHandler<T> {
                 if (value == null)
                     continue;
 
-                // Check if field is unique and if there are existing records with the same value
+                // Unique fields are checked later against the existing records
                 if (column.unique() && !column.autoIncrement())
-                    if (existsWithSameValue(tableName, columnName, value))
-                        validationErrors.add("Field '" + fieldName + "' must be unique. Value '" + value + "' already exists");
+                    uniqueChecks.add(new UniqueCheck(fieldName, columnName, convertValueToString(value), false));
 
             } catch (IllegalAccessException e) {
                 throw new SQLiteException("Error accessing field " + fieldName + ": " + e.getMessage(), e);
@@ -111,67 +272,273 @@ public class QueryValidatorHandler<T> {
                     continue;
 
                 // For Join fields, we need to extract the source field value from the related entity
-                String source = join.source();
                 String targetName = join.targetName();
-                Object sourceValue = null;
-
-                // Find the source field in the related entity
-                for (Field relatedField : relatedEntity.getClass().getDeclaredFields())
-                    if (relatedField.getName().equals(source)) {
-                        relatedField.setAccessible(true);
-                        sourceValue = relatedField.get(relatedEntity);
-                        break;
-                    }
-
+                Object sourceValue = getSourceValue(join, relatedEntity);
 
-                // Check if the join field is unique and if there are existing records with the same value
+                // Unique join fields are checked later against the existing records
                 if (join.unique() && sourceValue != null)
-                    if (existsWithSameValue(tableName, targetName, sourceValue))
-                        validationErrors.add("Field '" + fieldName + "' with Join annotation must be unique. Value '" + sourceValue + "' already exists");
+                    uniqueChecks.add(new UniqueCheck(fieldName, targetName, convertValueToString(sourceValue), true));
 
             } catch (IllegalAccessException e) {
                 throw new SQLiteException("Error accessing field " + fieldName + ": " + e.getMessage(), e);
             }
         }
 
-        // If there are validation errors, throw an exception with all errors
-        if (!validationErrors.isEmpty()) {
-            throw new SQLiteException("Entity validation failed: " + String.join(", ", validationErrors));
+        return tableName;
+    }
+
+    /**
+     * Gets the primary key of an entity that identifies an existing row.
+     *
+     * @param entity The entity
+     * @return The primary key column and its value as a string, or null if the entity has no primary key value,
+     * or an auto increment key that is not assigned yet
+     * @throws SQLiteException If the key field cannot be read
+     */
+    private String[] primaryKey(T entity) throws SQLiteException {
+        for (Field field : entity.getClass().getDeclaredFields()) {
+            Column column = field.getAnnotation(Column.class);
+            if (column == null || !column.primaryKey())
+                continue;
+
+            field.setAccessible(true);
+            try {
+                Object value = field.get(entity);
+
+                if (value == null || (column.autoIncrement() && value instanceof Number && ((Number) value).longValue() == 0))
+                    return null;
+
+                return new String[]{column.name(), convertValueToString(value)};
+            } catch (IllegalAccessException e) {
+                throw new SQLiteException("Error accessing field " + field.getName() + ": " + e.getMessage(), e);
+            }
         }
 
-        return true;
+        return null;
     }
 
     /**
-     * Checks if there are existing records with the same value for a specific column.
-     * 
-     * @param columnName The name of the column to check
-     * @param value The value to check for
-     * @return true if there are existing records, false otherwise
+     * Translates a constraint violation raised while saving an entity into the same detailed
+     * message produced by {@link #validateEntity(Object)}.
+     * The failing columns are parsed from the SQLite error message, for example
+     * "UNIQUE constraint failed: products.name" or "NOT NULL constraint failed: products.line".
+     *
+     * @param entity The entity that was being saved
+     * @param e The constraint violation
+     * @return The exception to throw, with the constraint violation as cause
+     */
+    public SQLiteException translateConstraintException(T entity, SQLiteConstraintException e) {
+        String message = e.getMessage() == null ? "" : e.getMessage();
+        List<String> validationErrors = new ArrayList<>();
+
+        Matcher matcher = CONSTRAINT_FAILED.matcher(message);
+        if (matcher.find()) {
+            boolean unique = matcher.group(1).equals("UNIQUE");
+
+            for (String column : matcher.group(2).split(",")) {
+                String columnName = column.trim();
+                int dot = columnName.lastIndexOf('.');
+                String error = describeViolation(entity, columnName.substring(dot + 1), unique);
+
+                if (error != null)
+                    validationErrors.add(error);
+            }
+        }
+
+        if (validationErrors.isEmpty())
+            return new SQLiteException("SQLite error: " + message, e);
+
+        return new SQLiteException("Entity validation failed: " + String.join(", ", validationErrors), e);
+    }
+
+    /**
+     * Describes the violation of a constraint on a column with the message of the validation.
+     *
+     * @param entity The entity that was being saved
+     * @param columnName The failing column
+     * @param unique true for a UNIQUE violation, false for a NOT NULL violation
+     * @return The validation error, or null if the column is not mapped by the entity
+     */
+    private String describeViolation(T entity, String columnName, boolean unique) {
+        if (entity == null)
+            return null;
+
+        for (Field field : entity.getClass().getDeclaredFields()) {
+            String fieldName = field.getName();
+            field.setAccessible(true);
+
+            try {
+                if (field.isAnnotationPresent(Column.class) && field.getAnnotation(Column.class).name().equalsIgnoreCase(columnName)) {
+                    Object value = field.get(entity);
+
+                    if (!unique || value == null)
+                        return "Field '" + fieldName + "' cannot be null";
+
+                    return new UniqueCheck(fieldName, columnName, convertValueToString(value), false).error();
+                }
+
+                if (field.isAnnotationPresent(Join.class) && field.getAnnotation(Join.class).targetName().equalsIgnoreCase(columnName)) {
+                    Object relatedEntity = field.get(entity);
+                    Object sourceValue = relatedEntity == null ? null : getSourceValue(field.getAnnotation(Join.class), relatedEntity);
+
+                    if (!unique || sourceValue == null)
+                        return "Field '" + fieldName + "' with Join annotation cannot be null";
+
+                    return new UniqueCheck(fieldName, columnName, convertValueToString(sourceValue), true).error();
+                }
+            } catch (IllegalAccessException e) {
+                throw new SQLiteException("Error accessing field " + fieldName + ": " + e.getMessage(), e);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the value of the source field of a related entity.
+     *
+     * @param join The Join annotation
+     * @param relatedEntity The related entity
+     * @return The value of the source field, or null if the field does not exist
+     * @throws IllegalAccessException If the field cannot be accessed
+     */
+    private Object getSourceValue(Join join, Object relatedEntity) throws IllegalAccessException {
+        // Find the source field in the related entity
+        for (Field relatedField : relatedEntity.getClass().getDeclaredFields())
+            if (relatedField.getName().equals(join.source())) {
+                relatedField.setAccessible(true);
+                return relatedField.get(relatedEntity);
+            }
+
+        return null;
+    }
+
+    /**
+     * Checks in a single query if there are existing records with the same value for each unique column.
+     * Values discarded by the Bloom filter of their column are not queried.
+     * For example: "SELECT EXISTS(SELECT 1 FROM products WHERE name = ? AND id <> ?), EXISTS(SELECT 1 FROM products WHERE code = ? AND id <> ?)"
+     *
+     * @param db The database
+     * @param tableName The table name
+     * @param uniqueChecks The columns and values to check
+     * @param key The primary key column and value of the row being saved, excluded from the check, or null
+     * @return For each check, true if there are other records with the same value
      * @throws SQLiteException If there's an error executing the query
      */
-    private boolean existsWithSameValue(String tableName, String columnName, Object value) throws SQLiteException {
-        SQLiteDatabase db = management.getReadableDatabase();
+    private boolean[] existsWithSameValues(SQLiteDatabase db, String tableName, List<UniqueCheck> uniqueChecks, String[] key) throws SQLiteException {
+        UniqueValueFilters filters = management.getUniqueValueFilters();
+        boolean[] exists = new boolean[uniqueChecks.size()];
 
         try {
-            String sql = "SELECT COUNT(*) FROM " + tableName + " WHERE " + columnName + " = ?";
-            String[] args = new String[]{convertValueToString(value)};
+            // Values discarded by the Bloom filter of their column do not need to be queried
+            List<Integer> queried = new ArrayList<>();
+            for (int i = 0; i < uniqueChecks.size(); i++) {
+                UniqueCheck check = uniqueChecks.get(i);
+
+                if (filters.mightExist(db, tableName, check.columnName, check.value))
+                    queried.add(i);
+            }
+
+            if (queried.isEmpty())
+                return exists;
+
+            StringBuilder sql = new StringBuilder("SELECT ");
+            List<String> args = new ArrayList<>();
 
-            Cursor cursor = db.rawQuery(sql, args);
-            boolean exists = false;
+            for (int i = 0; i < queried.size(); i++) {
+                if (i > 0)
+                    sql.append(", ");
+
+                UniqueCheck check = uniqueChecks.get(queried.get(i));
+                sql.append("EXISTS(SELECT 1 FROM ").append(tableName)
+                        .append(" WHERE ").append(check.columnName).append(" = ?");
+                args.add(check.value);
+
+                if (key != null) {
+                    sql.append(" AND ").append(key[0]).append(" <> ?");
+                    args.add(key[1]);
+                }
+
+                sql.append(")");
+            }
 
-            if (cursor.moveToFirst())
-                exists = cursor.getInt(0) > 0;
+            try (Cursor cursor = db.rawQuery(sql.toString(), args.toArray(new String[0]))) {
+                if (cursor.moveToFirst())
+                    for (int i = 0; i < queried.size(); i++) {
+                        int index = queried.get(i);
+                        exists[index] = cursor.getInt(i) > 0;
+
+                        // Without the excluded row, a missing value is a false positive of the filter
+                        if (key == null)
+                            filters.recordQueryResult(tableName, uniqueChecks.get(index).columnName, exists[index]);
+                    }
+            }
 
-            cursor.close();
             return exists;
         } catch (Exception ex) {
             throw new SQLiteException("Error executing query: " + ex.getMessage(), ex);
-        } finally {
-            db.close();
         }
     }
 
+    /**
+     * Finds which of the values of a unique column already exist in the table.
+     * The values are checked with IN (...) queries of at most {@link #MAX_IN_ARGS} arguments,
+     * values discarded by the Bloom filter of the column are not queried.
+     *
+     * @param db The database
+     * @param tableName The table name
+     * @param columnName The unique column
+     * @param keyColumn The primary key column, or null if the entities have no primary key value
+     * @param uniqueChecks The values to check
+     * @return The values that already exist mapped to the primary key of their row, or to null, as strings
+     * @throws SQLiteException If there's an error executing the query
+     */
+    private Map<String, String> findExistingValues(SQLiteDatabase db, String tableName, String columnName, String keyColumn,
+                                                   List<UniqueCheck> uniqueChecks) throws SQLiteException {
+        UniqueValueFilters filters = management.getUniqueValueFilters();
+        Map<String, String> existing = new HashMap<>();
+
+        try {
+            List<String> values = new ArrayList<>();
+            for (String value : new LinkedHashSet<>(valuesOf(uniqueChecks)))
+                if (filters.mightExist(db, tableName, columnName, value))
+                    values.add(value);
+
+            for (int start = 0; start < values.size(); start += MAX_IN_ARGS) {
+                List<String> chunk = values.subList(start, Math.min(start + MAX_IN_ARGS, values.size()));
+
+                StringBuilder sql = new StringBuilder("SELECT DISTINCT ").append(columnName)
+                        .append(keyColumn != null ? ", " + keyColumn : "")
+                        .append(" FROM ").append(tableName)
+                        .append(" WHERE ").append(columnName).append(" IN (");
+                for (int i = 0; i < chunk.size(); i++)
+                    sql.append(i > 0 ? ", ?" : "?");
+                sql.append(")");
+
+                try (Cursor cursor = db.rawQuery(sql.toString(), chunk.toArray(new String[0]))) {
+                    while (cursor.moveToNext())
+                        existing.put(cursor.getString(0), keyColumn != null ? cursor.getString(1) : null);
+                }
+            }
+
+            if (filters.isEnabled())
+                for (String value : values)
+                    filters.recordQueryResult(tableName, columnName, existing.containsKey(value));
+
+            return existing;
+        } catch (Exception ex) {
+            throw new SQLiteException("Error executing query: " + ex.getMessage(), ex);
+        }
+    }
+
+    private List<String> valuesOf(List<UniqueCheck> uniqueChecks) {
+        List<String> values = new ArrayList<>(uniqueChecks.size());
+        for (UniqueCheck check : uniqueChecks)
+            values.add(check.value);
+
+        return values;
+    }
+
     /**
      * Converts a value to a string for use in SQL queries.
      * 
@@ -201,10 +568,31 @@ public class QueryValidatorHandler<T> {
         }
     }
 
+    /**
+     * Uniqueness check of a field value that has to be run against the database.
+     */
+    private static class UniqueCheck {
+
+        private final String fieldName;
+        private final String columnName;
+        private final String value;
+        private final boolean join;
+
+        UniqueCheck(String fieldName, String columnName, String value, boolean join) {
+            this.fieldName = fieldName;
+            this.columnName = columnName;
+            this.value = value;
+            this.join = join;
+        }
 
+        String error() {
+            return "Field '" + fieldName + "'" + (join ? " with Join annotation" : "") + " must be unique. Value '" + value + "' already exists";
+        }
 
+        String duplicatedError() {
+            return "Field '" + fieldName + "'" + (join ? " with Join annotation" : "") + " must be unique. Value '" + value + "' is repeated in the batch";
+        }
 
-
-
+    }
 
 }
@@ -0,0 +1,205 @@
+package com.jef.sqlite.management.Query;
+
+import android.database.sqlite.SQLiteDatabaseLockedException;
+import android.database.sqlite.SQLiteTableLockedException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Retry policy of the writes that fail because another connection or process holds the lock of the database.
+ * <p>
+ * A write that fails with SQLITE_BUSY or SQLITE_LOCKED, even when wrapped by the handlers, is executed again after a delay
+ * that starts at {@link #setInitialDelayMillis(long) the initial delay} and is multiplied on every attempt, up to
+ * {@link #setMaxDelayMillis(long) a maximum}. A random part of each delay, {@link #setJitter(double) the jitter}, keeps
+ * the connections that failed together from retrying together.
+ * <p>
+ * The whole write is retried, including the BEGIN of its transaction: retrying a single statement inside a transaction
+ * could wait forever for a connection that waits for this one. Writes executed inside another retried write are not
+ * retried on their own. All the methods are thread safe.
+ */
+public class RetryPolicy {
+
+    /**
+     * Default number of attempts of a write, including the first one.
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+    /**
+     * Default delay before the first retry.
+     */
+    public static final long DEFAULT_INITIAL_DELAY_MILLIS = 10;
+
+    /**
+     * Default maximum delay between two attempts.
+     */
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 1000;
+
+    /**
+     * Default factor applied to the delay after every retry.
+     */
+    public static final double DEFAULT_MULTIPLIER = 2.0;
+
+    /**
+     * Default fraction of the delay that is random.
+     */
+    public static final double DEFAULT_JITTER = 0.5;
+
+    private final ThreadLocal<Boolean> retrying = new ThreadLocal<>();
+    private final AtomicLong retryCount = new AtomicLong();
+
+    private volatile int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private volatile long initialDelayMillis = DEFAULT_INITIAL_DELAY_MILLIS;
+    private volatile long maxDelayMillis = DEFAULT_MAX_DELAY_MILLIS;
+    private volatile double multiplier = DEFAULT_MULTIPLIER;
+    private volatile double jitter = DEFAULT_JITTER;
+
+    /**
+     * Sets the number of attempts of a write, including the first one.
+     *
+     * @param maxAttempts The number of attempts, 1 to disable the retries
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1)
+            throw new IllegalArgumentException("Max attempts must be positive: " + maxAttempts);
+
+        this.maxAttempts = maxAttempts;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Sets the delay before the first retry.
+     *
+     * @param initialDelayMillis The delay in milliseconds
+     */
+    public void setInitialDelayMillis(long initialDelayMillis) {
+        if (initialDelayMillis < 0)
+            throw new IllegalArgumentException("Initial delay must not be negative: " + initialDelayMillis);
+
+        this.initialDelayMillis = initialDelayMillis;
+    }
+
+    public long getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+
+    /**
+     * Sets the maximum delay between two attempts.
+     *
+     * @param maxDelayMillis The delay in milliseconds
+     */
+    public void setMaxDelayMillis(long maxDelayMillis) {
+        if (maxDelayMillis < 0)
+            throw new IllegalArgumentException("Max delay must not be negative: " + maxDelayMillis);
+
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * Sets the factor applied to the delay after every retry.
+     *
+     * @param multiplier The factor, 1 for a constant delay
+     */
+    public void setMultiplier(double multiplier) {
+        if (multiplier < 1)
+            throw new IllegalArgumentException("Multiplier must be at least 1: " + multiplier);
+
+        this.multiplier = multiplier;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * Sets the fraction of every delay that is random.
+     *
+     * @param jitter The fraction, from 0 for a fixed delay to 1 for a delay between 0 and the computed delay
+     */
+    public void setJitter(double jitter) {
+        if (jitter < 0 || jitter > 1)
+            throw new IllegalArgumentException("Jitter must be between 0 and 1: " + jitter);
+
+        this.jitter = jitter;
+    }
+
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * @return The number of retries executed since the creation of the policy
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * Executes a write, retrying it while the database is locked.
+     *
+     * @param write The write
+     * @param <R> The type of the result
+     * @return The result of the write
+     * @throws RuntimeException The error of the last attempt, as thrown by the write
+     */
+    public <R> R execute(Supplier<R> write) {
+        // Only the outermost write can retry, a nested write shares the transaction of its caller
+        if (retrying.get() != null)
+            return write.get();
+
+        retrying.set(Boolean.TRUE);
+        try {
+            long delay = initialDelayMillis;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return write.get();
+                } catch (RuntimeException e) {
+                    if (attempt >= maxAttempts || !isBusy(e))
+                        throw e;
+
+                    retryCount.incrementAndGet();
+                    sleep(delay, e);
+                    delay = Math.min(maxDelayMillis, (long) (delay * multiplier));
+                }
+            }
+        } finally {
+            retrying.remove();
+        }
+    }
+
+    /**
+     * Checks if an error, or one of its causes, reports a locked database.
+     *
+     * @param error The error
+     * @return true for SQLITE_BUSY and SQLITE_LOCKED
+     */
+    public static boolean isBusy(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLiteDatabaseLockedException || cause instanceof SQLiteTableLockedException)
+                return true;
+            if (cause.getCause() == cause)
+                break;
+        }
+
+        return false;
+    }
+
+    private void sleep(long delay, RuntimeException error) {
+        long randomPart = (long) (delay * jitter * ThreadLocalRandom.current().nextDouble());
+        try {
+            Thread.sleep(delay - randomPart);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw error;
+        }
+    }
+
+}
@@ -0,0 +1,299 @@
+package com.jef.sqlite.management.Query;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.jef.sqlite.management.SQLiteManagement;
+import com.jef.sqlite.management.exceptions.SQLiteException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Serialized write pipeline with group commit.
+ * <p>
+ * When enabled, the writes of the query methods of every thread are queued and executed by a single writer thread.
+ * The writer packs the writes queued within {@link #setWindowMillis(long) a short window}, up to
+ * {@link #setMaxBatchSize(int) a maximum number}, into one transaction, so they share a single commit instead of
+ * contending for the write lock and syncing the journal one by one. Each caller still receives its own result or error:
+ * if a write of a batch fails, the batch is rolled back and its writes are executed again one by one, in order,
+ * with the keys generated for their entities in the failed attempt restored.
+ * <p>
+ * The handlers acquire the same database on the writer thread, so they write inside the transaction of the batch.
+ * All the methods are thread safe.
+ */
+public class WriteQueue {
+
+    /**
+     * Default time the writer waits for more writes after the first write of a batch.
+     */
+    public static final long DEFAULT_WINDOW_MILLIS = 2;
+
+    /**
+     * Default maximum number of writes of a batch.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+    private final SQLiteManagement management;
+    private final LinkedBlockingQueue<Write<?>> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+
+    private volatile boolean enabled;
+    private volatile long windowMillis = DEFAULT_WINDOW_MILLIS;
+    private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private volatile Thread writer;
+
+    /**
+     * @param management The management whose writes are queued
+     */
+    public WriteQueue(SQLiteManagement management) {
+        this.management = management;
+    }
+
+    /**
+     * Enables or disables the queue. When disabled, writes run on the caller thread.
+     *
+     * @param enabled true to queue the writes
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets the time the writer waits for more writes after the first write of a batch.
+     *
+     * @param windowMillis The window in milliseconds, 0 to only batch the writes already queued
+     */
+    public void setWindowMillis(long windowMillis) {
+        if (windowMillis < 0)
+            throw new IllegalArgumentException("Window must not be negative: " + windowMillis);
+
+        this.windowMillis = windowMillis;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * Sets the maximum number of writes committed in one transaction.
+     *
+     * @param maxBatchSize The maximum number of writes
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1)
+            throw new IllegalArgumentException("Batch size must be positive: " + maxBatchSize);
+
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * @return The number of writes executed by the writer thread
+     */
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    /**
+     * @return The number of transactions committed by the writer thread, the writes per batch is
+     * {@link #getWriteCount()} divided by this value
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Queues a write. The caches invalidated by the write, of any table, are invalidated again after the commit.
+     * A write issued from a thread that is in a transaction runs on that thread, inside its transaction.
+     *
+     * @param operation The write, executed on the writer thread
+     * @param <R> The type of the result
+     * @return A future completed with the result or the error of the write
+     */
+    public <R> CompletableFuture<R> submit(Supplier<R> operation) {
+        Write<R> write = new Write<>(operation);
+
+        // A write issued by a write of the batch, or by a thread in its own transaction, cannot wait for the batch:
+        // the writer thread would wait for the write lock that the caller holds
+        if (Thread.currentThread() == writer || inTransaction()) {
+            write.run();
+            return write.future;
+        }
+
+        startWriter();
+        queue.add(write);
+        return write.future;
+    }
+
+    /**
+     * Queues a write and waits for its result.
+     *
+     * @param operation The write, executed on the writer thread
+     * @param <R> The type of the result
+     * @return The result of the write
+     * @throws SQLiteException If the write fails, the error of the write is rethrown as is when it is unchecked
+     */
+    public <R> R execute(Supplier<R> operation) {
+        try {
+            return submit(operation).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+
+            throw new SQLiteException("Error executing write: " + cause, cause);
+        }
+    }
+
+    /**
+     * Checks if the calling thread holds a transaction of the database, the transactions belong to a thread.
+     */
+    private boolean inTransaction() {
+        SQLiteDatabase db = management.acquireWritableDatabase();
+        try {
+            return db.inTransaction();
+        } finally {
+            management.releaseDatabase(db);
+        }
+    }
+
+    private synchronized void startWriter() {
+        if (writer != null)
+            return;
+
+        writer = new Thread(this::drain, "sqlite-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void drain() {
+        List<Write<?>> batch = new ArrayList<>();
+
+        while (true) {
+            try {
+                batch.add(queue.take());
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Write<?> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null)
+                        break;
+
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // The writer thread is never interrupted by the library, the queued writes are still executed
+            }
+
+            if (!batch.isEmpty())
+                runBatch(batch);
+
+            batch.clear();
+        }
+    }
+
+    private void runBatch(List<Write<?>> batch) {
+        writeCount.addAndGet(batch.size());
+        batchCount.incrementAndGet();
+
+        if (batch.size() == 1) {
+            batch.get(0).run();
+            return;
+        }
+
+        Object[] results = new Object[batch.size()];
+        boolean committed = false;
+
+        try {
+            // The batch is retried as a whole while the database is locked, its writes are nested and not retried
+            committed = management.getRetryPolicy().execute(() -> {
+                SQLiteDatabase db = management.acquireWritableDatabase();
+                try {
+                    db.beginTransaction();
+                    // The caches invalidated by the writes, of any table, are invalidated again once the batch is finished,
+                    // and after a rollback the keys generated for the entities are restored before they are written again
+                    management.beginWriteScope();
+                    boolean batchCommitted = false;
+                    try {
+                        try {
+                            for (int i = 0; i < batch.size(); i++)
+                                results[i] = batch.get(i).operation.get();
+
+                            db.setTransactionSuccessful();
+                        } finally {
+                            db.endTransaction();
+                        }
+                        batchCommitted = true;
+                    } finally {
+                        management.endWriteScope(batchCommitted);
+                    }
+                } finally {
+                    management.releaseDatabase(db);
+                }
+
+                return true;
+            });
+        } catch (RuntimeException | Error e) {
+            // The failed write may have left the transaction marked as failed, the batch is replayed below
+            committed = false;
+        }
+
+        if (!committed) {
+            for (Write<?> write : batch)
+                write.run();
+
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++)
+            batch.get(i).complete(results[i]);
+    }
+
+    /**
+     * A queued write and the future of its caller.
+     */
+    private static class Write<R> {
+
+        private final Supplier<R> operation;
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+
+        Write(Supplier<R> operation) {
+            this.operation = operation;
+        }
+
+        /**
+         * Executes the write in its own transaction and completes the future.
+         */
+        void run() {
+            try {
+                future.complete(operation.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void complete(Object result) {
+            future.complete((R) result);
+        }
+
+    }
+
+}
@@ -1,17 +1,67 @@
 package com.jef.sqlite.management;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
 import androidx.annotation.Nullable;
 
+import com.jef.sqlite.management.cache.EntityCache;
+import com.jef.sqlite.management.cache.EntitySession;
+import com.jef.sqlite.management.cache.IdentityMap;
+import com.jef.sqlite.management.Query.QueryExecutors;
+import com.jef.sqlite.management.Query.QueryInvocation.QueryFindHandler;
+import com.jef.sqlite.management.Query.RetryPolicy;
+import com.jef.sqlite.management.Query.WriteQueue;
+import com.jef.sqlite.management.cache.QueryResultCache;
+import com.jef.sqlite.management.cache.ReferenceTables;
+import com.jef.sqlite.management.cache.TableVersions;
+import com.jef.sqlite.management.cache.UniqueValueFilters;
+import com.jef.sqlite.management.cache.WriteScope;
+import com.jef.sqlite.management.exceptions.SQLiteException;
+import com.jef.sqlite.management.interfaces.ValidationMode;
+import com.jef.sqlite.management.live.InvalidationTracker;
+import com.jef.sqlite.management.metrics.QueryMetrics;
+import com.jef.sqlite.management.metrics.QueryMetricsCollector;
+import com.jef.sqlite.management.metrics.QueryMetricsListener;
+import com.jef.sqlite.management.metrics.QueryTracer;
+import com.jef.sqlite.management.schema.MigrationListener;
+import com.jef.sqlite.management.schema.SchemaRegistry;
+import com.jef.sqlite.management.schema.TableSchema;
+
 /**
  * Clase abstracta que extiende SQLiteOpenHelper para gestionar la base de datos SQLite.
  * Proporciona métodos para crear y actualizar la base de datos.
+ * Las tablas se registran en un {@link SchemaRegistry} y su DDL se aplica una sola vez,
+ * dentro de una transacción, cuando se abre la base de datos.
+ * Las subclases que sobrescriban onCreate, onUpgrade u onOpen deben invocar la implementación de esta clase.
  */
 public abstract class SQLiteManagement extends SQLiteOpenHelper {
 
+    /**
+     * Intentos para adquirir la base de datos si otro hilo la cierra al mismo tiempo.
+     */
+    private static final int ACQUIRE_ATTEMPTS = 3;
+
+    private final SchemaRegistry schemaRegistry = new SchemaRegistry();
+    private final UniqueValueFilters uniqueValueFilters = new UniqueValueFilters();
+    private final EntityCache entityCache = new EntityCache();
+    private final InvalidationTracker invalidationTracker = new InvalidationTracker();
+    private final TableVersions tableVersions = new TableVersions(invalidationTracker);
+    private final QueryResultCache queryResultCache = new QueryResultCache(tableVersions);
+    private final ReferenceTables referenceTables = new ReferenceTables();
+    private final QueryExecutors queryExecutors = new QueryExecutors();
+    private final WriteQueue writeQueue = new WriteQueue(this);
+    private final RetryPolicy retryPolicy = new RetryPolicy();
+    private final QueryMetricsCollector queryMetrics = new QueryMetricsCollector();
+    private final QueryTracer queryTracer = new QueryTracer();
+    private final ThreadLocal<IdentityMap> identityMaps = new ThreadLocal<>();
+    private final ThreadLocal<WriteScope> writeScopes = new ThreadLocal<>();
+    private volatile boolean opened;
+    private volatile long busyTimeoutMillis = -1;
+    private volatile ValidationMode validationMode = ValidationMode.CONSTRAINT;
+
     /**
      * Constructor para SQLiteManagement.
      * 
@@ -23,6 +73,94 @@ public abstract class SQLiteManagement extends SQLiteOpenHelper {
         super(context, name, null, version);
     }
 
+    /**
+     * Obtiene la base de datos para escritura y adquiere una referencia sobre ella.
+     * Cada llamada debe liberarse con {@link #releaseDatabase(SQLiteDatabase)}; la conexión no se cierra
+     * mientras algún hilo tenga una referencia, por lo que las operaciones concurrentes no se cierran la
+     * base de datos entre sí. {@link #close()} solo libera la referencia propia del helper.
+     *
+     * @return La base de datos SQLite con una referencia adquirida
+     * @throws SQLiteException Si la base de datos se cierra repetidamente mientras se adquiere
+     */
+    public SQLiteDatabase acquireWritableDatabase() {
+        QueryMetrics metrics = queryMetrics.current();
+        long start = metrics != null ? System.nanoTime() : 0;
+
+        boolean traced = queryTracer.begin(QueryTracer.ACQUIRE);
+        try {
+            for (int attempt = 0; attempt < ACQUIRE_ATTEMPTS; attempt++) {
+                SQLiteDatabase db = getWritableDatabase();
+                try {
+                    db.acquireReference();
+                    if (metrics != null)
+                        metrics.connectionAcquired(start);
+
+                    return db;
+                } catch (IllegalStateException e) {
+                    // Cerrada con close() entre ambas llamadas, la siguiente llamada la vuelve a abrir
+                }
+            }
+        } finally {
+            queryTracer.end(traced);
+        }
+
+        throw new SQLiteException("The database was closed while acquiring it");
+    }
+
+    /**
+     * Obtiene la base de datos para lectura y adquiere una referencia sobre ella.
+     * Cada llamada debe liberarse con {@link #releaseDatabase(SQLiteDatabase)}.
+     *
+     * @return La base de datos SQLite con una referencia adquirida
+     * @throws SQLiteException Si la base de datos se cierra repetidamente mientras se adquiere
+     */
+    public SQLiteDatabase acquireReadableDatabase() {
+        QueryMetrics metrics = queryMetrics.current();
+        long start = metrics != null ? System.nanoTime() : 0;
+
+        boolean traced = queryTracer.begin(QueryTracer.ACQUIRE);
+        try {
+            for (int attempt = 0; attempt < ACQUIRE_ATTEMPTS; attempt++) {
+                SQLiteDatabase db = getReadableDatabase();
+                try {
+                    db.acquireReference();
+                    if (metrics != null)
+                        metrics.connectionAcquired(start);
+
+                    return db;
+                } catch (IllegalStateException e) {
+                    // Cerrada con close() entre ambas llamadas, la siguiente llamada la vuelve a abrir
+                }
+            }
+        } finally {
+            queryTracer.end(traced);
+        }
+
+        throw new SQLiteException("The database was closed while acquiring it");
+    }
+
+    /**
+     * Libera una referencia adquirida con {@link #acquireWritableDatabase()} o {@link #acquireReadableDatabase()}.
+     *
+     * @param db La base de datos, puede ser null
+     */
+    public void releaseDatabase(SQLiteDatabase db) {
+        if (db != null)
+            db.releaseReference();
+    }
+
+    /**
+     * Se llama al configurar la conexión, antes de crearla o actualizarla.
+     * Aplica el tiempo de espera configurado con {@link #setBusyTimeout(long)}.
+     *
+     * @param db La base de datos SQLite
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        applyBusyTimeout(db);
+    }
+
     /**
      * Se llama cuando la base de datos se crea por primera vez.
      * 
@@ -30,11 +168,13 @@ public abstract class SQLiteManagement extends SQLiteOpenHelper {
      */
     @Override
     public void onCreate(SQLiteDatabase db) {
-
+        schemaRegistry.ensure(db);
     }
 
     /**
      * Se llama cuando la base de datos necesita ser actualizada.
+     * Las tablas registradas cuya declaración cambió se migran automáticamente: las columnas nuevas
+     * se agregan con ALTER TABLE y, cuando no es posible, la tabla se reconstruye copiando sus filas.
      * 
      * @param db La base de datos SQLite
      * @param oldVersion La versión antigua de la base de datos
@@ -42,7 +182,423 @@ public abstract class SQLiteManagement extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        schemaRegistry.ensure(db);
+    }
+
+    /**
+     * Se llama cuando la base de datos ha sido abierta.
+     * Aplica el esquema de las tablas registradas cuya huella no coincide con la almacenada.
+     *
+     * @param db La base de datos SQLite
+     */
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        opened = true;
+        schemaRegistry.ensure(db);
+    }
+
+    /**
+     * Registra la definición de una tabla.
+     * Si la base de datos ya fue abierta, el esquema se aplica inmediatamente;
+     * en caso contrario se aplicará junto con las demás tablas al abrir la base de datos.
+     *
+     * @param schema La definición de la tabla
+     */
+    public void registerTable(TableSchema schema) {
+        schemaRegistry.register(schema);
+
+        if (opened)
+            schemaRegistry.ensure(getWritableDatabase());
+    }
+
+    /**
+     * Establece el listener que recibe el progreso de las migraciones de esquema.
+     *
+     * @param listener El listener, o null para eliminarlo
+     */
+    public void setMigrationListener(MigrationListener listener) {
+        schemaRegistry.setMigrationListener(listener);
+    }
+
+    /**
+     * Establece cómo se validan las entidades al guardarlas.
+     * Por defecto es {@link ValidationMode#CONSTRAINT}: el guardado se basa en las restricciones de la tabla
+     * y no ejecuta consultas previas de unicidad.
+     *
+     * @param validationMode El modo de validación
+     */
+    public void setValidationMode(ValidationMode validationMode) {
+        if (validationMode == null)
+            throw new SQLiteException("Validation mode cannot be null");
+
+        this.validationMode = validationMode;
+    }
 
+    /**
+     * Obtiene el modo de validación de las entidades al guardarlas.
+     *
+     * @return El modo de validación
+     */
+    public ValidationMode getValidationMode() {
+        return validationMode;
+    }
+
+    /**
+     * Activa o desactiva los filtros Bloom en memoria de las columnas únicas.
+     * Con los filtros activos, la validación de unicidad no consulta la base de datos para los valores
+     * que el filtro descarta con certeza. Están desactivados por defecto.
+     *
+     * @param enabled true para activar los filtros
+     */
+    public void setUniqueFiltersEnabled(boolean enabled) {
+        uniqueValueFilters.setEnabled(enabled);
+    }
+
+    /**
+     * Obtiene los filtros Bloom de las columnas únicas, con sus métricas de tasa de falsos positivos y memoria.
+     *
+     * @return Los filtros de las columnas únicas
+     */
+    public UniqueValueFilters getUniqueValueFilters() {
+        return uniqueValueFilters;
+    }
+
+    /**
+     * Obtiene la caché de las entidades anotadas con {@link com.jef.sqlite.management.interfaces.Cacheable},
+     * con sus contadores de aciertos.
+     *
+     * @return La caché de entidades
+     */
+    public EntityCache getEntityCache() {
+        return entityCache;
+    }
+
+    /**
+     * Activa o desactiva la caché de resultados de consultas, indexada por SQL y argumentos.
+     * Los resultados se descartan cuando cambia alguna de las tablas que leyó la consulta.
+     * Está desactivada por defecto.
+     *
+     * @param enabled true para activar la caché
+     */
+    public void setQueryCacheEnabled(boolean enabled) {
+        queryResultCache.setEnabled(enabled);
+    }
+
+    /**
+     * Obtiene la caché de resultados de consultas, para configurar sus límites de memoria y leer sus estadísticas.
+     *
+     * @return La caché de resultados
+     */
+    public QueryResultCache getQueryResultCache() {
+        return queryResultCache;
+    }
+
+    /**
+     * Obtiene los contadores de versión de las tablas, incrementados por cada escritura de la biblioteca.
+     *
+     * @return Los contadores de versión de las tablas
+     */
+    public TableVersions getTableVersions() {
+        return tableVersions;
+    }
+
+    /**
+     * Obtiene el rastreador de invalidaciones, que notifica qué tablas cambió cada escritura.
+     * Las consultas que devuelven {@link com.jef.sqlite.management.live.LiveQuery} lo usan para
+     * volver a ejecutarse solo cuando cambia alguna de sus tablas.
+     *
+     * @return El rastreador de invalidaciones
+     */
+    public InvalidationTracker getInvalidationTracker() {
+        return invalidationTracker;
+    }
+
+    /**
+     * Obtiene los ejecutores de los métodos de consulta que devuelven {@link java.util.concurrent.CompletableFuture}:
+     * un grupo de hilos para las lecturas, del tamaño de las conexiones de lectura, y un único hilo para las escrituras.
+     *
+     * @return Los ejecutores de las consultas asíncronas
+     */
+    public QueryExecutors getQueryExecutors() {
+        return queryExecutors;
+    }
+
+    /**
+     * Activa o desactiva la cola de escrituras. Con la cola activa, las escrituras de todos los hilos se ejecutan
+     * en un único hilo de escritura, que agrupa las escrituras cercanas en el tiempo en una sola transacción.
+     * Está desactivada por defecto.
+     * <p>
+     * Las escrituras de un hilo que tiene abierta su propia transacción no pasan por la cola: se ejecutan en ese hilo,
+     * dentro de su transacción, porque el hilo de escritura esperaría el bloqueo que mantiene ese hilo.
+     *
+     * @param enabled true para activar la cola
+     */
+    public void setWriteQueueEnabled(boolean enabled) {
+        writeQueue.setEnabled(enabled);
+    }
+
+    /**
+     * Obtiene la cola de escrituras, para configurar su ventana de agrupación y leer sus contadores.
+     *
+     * @return La cola de escrituras
+     */
+    public WriteQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    /**
+     * Define cuánto espera SQLite a que otra conexión o proceso libere el bloqueo de la base de datos
+     * antes de fallar con SQLITE_BUSY (PRAGMA busy_timeout). Se aplica a la conexión de escritura,
+     * inmediatamente si la base de datos ya está abierta y cada vez que se vuelve a abrir.
+     * Por defecto se conserva el tiempo de espera de Android.
+     *
+     * @param millis El tiempo de espera en milisegundos, 0 para fallar sin esperar
+     */
+    public void setBusyTimeout(long millis) {
+        if (millis < 0)
+            throw new IllegalArgumentException("Busy timeout must not be negative: " + millis);
+
+        busyTimeoutMillis = millis;
+        if (!opened)
+            return;
+
+        SQLiteDatabase db = acquireWritableDatabase();
+        try {
+            applyBusyTimeout(db);
+        } finally {
+            releaseDatabase(db);
+        }
+    }
+
+    /**
+     * Obtiene el tiempo de espera configurado con {@link #setBusyTimeout(long)}.
+     *
+     * @return El tiempo de espera en milisegundos, negativo si se conserva el de Android
+     */
+    public long getBusyTimeout() {
+        return busyTimeoutMillis;
+    }
+
+    /**
+     * Obtiene la política de reintentos de las escrituras que fallan porque la base de datos está bloqueada,
+     * para configurar sus intentos, esperas y variación aleatoria.
+     *
+     * @return La política de reintentos
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Aplica el tiempo de espera a una conexión. El pragma devuelve una fila, por lo que se ejecuta como consulta.
+     *
+     * @param db La base de datos SQLite
+     */
+    private void applyBusyTimeout(SQLiteDatabase db) {
+        long millis = busyTimeoutMillis;
+        if (millis < 0)
+            return;
+
+        try (Cursor cursor = db.rawQuery("PRAGMA busy_timeout = " + millis, null)) {
+            cursor.moveToFirst();
+        } catch (Exception e) {
+            throw new SQLiteException("Error setting busy timeout: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Registra un receptor de métricas. Por cada llamada a un método de consulta recibe el metodo, el SQL generado,
+     * el tiempo de espera de la conexión, de preparación, de ejecución y de conversión de filas, las filas devueltas
+     * y las consultas de joins. Mientras no haya receptores las consultas no se miden.
+     *
+     * @param listener El receptor
+     */
+    public void addQueryMetricsListener(QueryMetricsListener listener) {
+        queryMetrics.addListener(listener);
+    }
+
+    /**
+     * Elimina un receptor de métricas registrado con {@link #addQueryMetricsListener(QueryMetricsListener)}.
+     *
+     * @param listener El receptor
+     */
+    public void removeQueryMetricsListener(QueryMetricsListener listener) {
+        queryMetrics.removeListener(listener);
+    }
+
+    /**
+     * Obtiene el recolector de métricas usado por los manejadores de consultas.
+     *
+     * @return El recolector de métricas
+     */
+    public QueryMetricsCollector getQueryMetrics() {
+        return queryMetrics;
+    }
+
+    /**
+     * Activa o desactiva las secciones de android.os.Trace alrededor de cada llamada a un metodo de consulta y de
+     * cada etapa: construcción del SQL, adquisición de la conexión, ejecución, recorrido del cursor, conversión de
+     * filas y resolución de joins. Las secciones llevan el nombre del metodo y se ven en systrace y Perfetto.
+     * Está desactivado por defecto y, mientras lo esté, no tiene costo.
+     *
+     * @param enabled true para emitir las secciones
+     */
+    public void setTracingEnabled(boolean enabled) {
+        queryTracer.setEnabled(enabled);
+    }
+
+    /**
+     * Obtiene el emisor de secciones de trazas usado por los manejadores de consultas.
+     *
+     * @return El emisor de secciones
+     */
+    public QueryTracer getQueryTracer() {
+        return queryTracer;
+    }
+
+    /**
+     * Abre una sesión en el hilo actual. Mientras esté abierta, las consultas de este hilo devuelven
+     * la misma instancia para una misma clase de entidad y clave primaria.
+     * La sesión debe cerrarse en el mismo hilo, preferiblemente con try-with-resources.
+     *
+     * @return La sesión abierta
+     */
+    public EntitySession openSession() {
+        return new EntitySession(this);
+    }
+
+    /**
+     * Inicia un ámbito del mapa de identidad del hilo actual, creándolo si no existe.
+     * Cada consulta abre su propio ámbito, que se anida en la sesión abierta si la hay.
+     *
+     * @return El mapa de identidad del hilo actual
+     */
+    public IdentityMap beginIdentityScope() {
+        IdentityMap identityMap = identityMaps.get();
+        if (identityMap == null) {
+            identityMap = new IdentityMap();
+            identityMaps.set(identityMap);
+        }
+
+        identityMap.enter();
+        return identityMap;
+    }
+
+    /**
+     * Termina un ámbito del mapa de identidad del hilo actual.
+     * Al terminar el ámbito más externo se liberan las instancias.
+     */
+    public void endIdentityScope() {
+        IdentityMap identityMap = identityMaps.get();
+
+        if (identityMap != null && identityMap.exit())
+            identityMaps.remove();
+    }
+
+    /**
+     * Obtiene el mapa de identidad activo en el hilo actual.
+     *
+     * @return El mapa de identidad, o null si no hay una consulta o sesión en curso
+     */
+    public IdentityMap getIdentityMap() {
+        return identityMaps.get();
+    }
+
+    /**
+     * Desactiva temporalmente el mapa de identidad del hilo actual, por ejemplo para cargar
+     * instancias compartidas entre hilos que no deben mezclarse con las de la sesión.
+     *
+     * @return El mapa de identidad desactivado, que debe restaurarse con {@link #resumeIdentityMap(IdentityMap)}
+     */
+    public IdentityMap suspendIdentityMap() {
+        IdentityMap identityMap = identityMaps.get();
+        identityMaps.remove();
+        return identityMap;
+    }
+
+    /**
+     * Restaura el mapa de identidad desactivado con {@link #suspendIdentityMap()}.
+     *
+     * @param identityMap El mapa de identidad desactivado, puede ser null
+     */
+    public void resumeIdentityMap(IdentityMap identityMap) {
+        if (identityMap != null)
+            identityMaps.set(identityMap);
+    }
+
+    /**
+     * Inicia un ámbito de escritura en el hilo actual, creándolo si no existe. Las escrituras ejecutadas
+     * dentro registran las entidades y tablas que invalidan, para invalidarlas de nuevo al confirmar la transacción.
+     * Debe abrirse tras iniciar la transacción y cerrarse con {@link #endWriteScope(boolean)} al terminarla.
+     */
+    public void beginWriteScope() {
+        WriteScope writeScope = writeScopes.get();
+        if (writeScope == null) {
+            writeScope = new WriteScope();
+            writeScopes.set(writeScope);
+        }
+
+        writeScope.enter();
+    }
+
+    /**
+     * Termina un ámbito de escritura del hilo actual. Si su transacción se revirtió, los campos que sus escrituras
+     * asignaron en las entidades, como las claves generadas, recuperan su valor anterior.
+     * Al terminar el ámbito más externo se invalida de nuevo todo lo que registraron sus escrituras.
+     *
+     * @param committed true si la transacción se confirmó, o se marcó como correcta si estaba anidada
+     */
+    public void endWriteScope(boolean committed) {
+        WriteScope writeScope = writeScopes.get();
+
+        if (writeScope != null && writeScope.exit(committed)) {
+            writeScopes.remove();
+            writeScope.invalidate(this);
+        }
+    }
+
+    /**
+     * Obtiene el ámbito de escritura activo en el hilo actual.
+     *
+     * @return El ámbito de escritura, o null si no hay una transacción de la librería en curso
+     */
+    public WriteScope getWriteScope() {
+        return writeScopes.get();
+    }
+
+    /**
+     * Obtiene las tablas de referencia, anotadas con {@link com.jef.sqlite.management.interfaces.ReferenceTable},
+     * que se mantienen en memoria.
+     *
+     * @return Las tablas de referencia
+     */
+    public ReferenceTables getReferenceTables() {
+        return referenceTables;
+    }
+
+    /**
+     * Carga en memoria todas las tablas de referencia registradas que aún no estén cargadas.
+     * Se recomienda llamarlo una vez al iniciar la aplicación, fuera del hilo principal;
+     * si no se llama, cada tabla se carga en su primera lectura.
+     *
+     * @throws SQLiteException Si ocurre un error al leer alguna tabla
+     */
+    public void preloadReferenceTables() {
+        for (TableSchema table : schemaRegistry.getTables()) {
+            Class<?> entityClass = table.getEntityClass();
+            if (referenceTables.isReferenceTable(entityClass))
+                referenceTables.load(entityClass, new QueryFindHandler<>(entityClass, this)::loadReferenceTable);
+        }
+    }
+
+    /**
+     * Obtiene el registro de esquemas de la base de datos.
+     *
+     * @return El registro de esquemas
+     */
+    public SchemaRegistry getSchemaRegistry() {
+        return schemaRegistry;
     }
 
 
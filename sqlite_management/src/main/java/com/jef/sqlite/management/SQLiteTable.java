@@ -1,17 +1,18 @@
 package com.jef.sqlite.management;
 
-import android.database.sqlite.SQLiteDatabase;
-
 import androidx.annotation.NonNull;
 
 import com.jef.sqlite.management.exceptions.SQLiteException;
 import com.jef.sqlite.management.interfaces.Column;
 import com.jef.sqlite.management.interfaces.Join;
 import com.jef.sqlite.management.interfaces.Table;
+import com.jef.sqlite.management.schema.ColumnSchema;
+import com.jef.sqlite.management.schema.TableSchema;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -24,7 +25,8 @@ public class SQLiteTable<T> {
 
     /**
      * Constructor para SQLiteTable.
-     * Inicializa la clase de entidad y crea la tabla en la base de datos.
+     * Inicializa la clase de entidad y registra la tabla en el gestor de la base de datos.
+     * La tabla se crea la primera vez que se abre la base de datos.
      *
      * @param management El gestor de la base de datos SQLite
      */
@@ -60,6 +62,13 @@ public class SQLiteTable<T> {
         return management;
     }
 
+    /**
+     * Construye la definición de la tabla a partir de las anotaciones de la entidad
+     * y la registra en el gestor de la base de datos.
+     * El DDL no se ejecuta aquí, se aplica junto con las demás tablas al abrir la base de datos.
+     *
+     * @throws SQLiteException Si la entidad no define correctamente la tabla o sus columnas
+     */
     private void createTable() {
         Table table = entityClass.getAnnotation(Table.class);
 
@@ -77,77 +86,39 @@ public class SQLiteTable<T> {
         if (columnFields.isEmpty())
             throw new SQLiteException("Entity class " + entityClass.getName() + " has no columns defined");
 
-        StringBuilder createTableSQL = new StringBuilder("CREATE TABLE IF NOT EXISTS ");
-        createTableSQL.append(table.name()).append(" (\n");
-
-
-        boolean isFirstColumn = true;
+        List<ColumnSchema> columns = new ArrayList<>();
         for (Field columnField : columnFields) {
-            if (columnField.isAnnotationPresent(Column.class)) {
-                String createColumn = instructionCreateColumn(columnField);
-                if (isFirstColumn) {
-                    createTableSQL.append("\n").append(createColumn);
-                    isFirstColumn = false;
-                } else {
-                    createTableSQL.append(",\n").append(createColumn);
-                }
-            } else if (columnField.isAnnotationPresent(Join.class)) {
-                String createColumn = instructionCreateJoin(columnField);
-                if (isFirstColumn) {
-                    createTableSQL.append("\n").append(createColumn);
-                    isFirstColumn = false;
-                } else {
-                    createTableSQL.append(",\n").append(createColumn);
-                }
-            }
-        }
-
-
-        createTableSQL.append("\n);");
-
-        // Execute the SQL statement
-        SQLiteDatabase db = management.getWritableDatabase();
-        try {
-            db.execSQL(createTableSQL.toString());
-        } catch (Exception e) {
-            throw e;
-        } finally {
-            db.close();
+            if (columnField.isAnnotationPresent(Column.class))
+                columns.add(instructionCreateColumn(columnField));
+            else if (columnField.isAnnotationPresent(Join.class))
+                columns.add(instructionCreateJoin(columnField));
         }
 
+        management.registerTable(new TableSchema(table.name(), entityClass, columns));
     }
 
-    private String instructionCreateColumn(@NonNull Field field) {
+    private ColumnSchema instructionCreateColumn(@NonNull Field field) {
         Column column = field.getAnnotation(Column.class);
 
         if (column == null || column.name() == null || column.name().isEmpty())
             throw new SQLiteException("Field " + field.getName() + " in class " + entityClass.getName() + " has no column name defined");
 
-        StringBuilder instruction = new StringBuilder();
-        instruction.append(column.name())
-                .append(" ")
-                .append(getTypeColumn(field.getType()));
-
-        // Add constraints
-        if (!column.permitNull())
-            instruction.append(" NOT NULL");
-
-        if (column.primaryKey())
-            instruction.append(" PRIMARY KEY");
-
-        if (column.autoIncrement())
-            instruction.append(" AUTOINCREMENT");
-
-        if (column.unique())
-            instruction.append(" UNIQUE");
-
+        String defaultValue = null;
         if (column.defaultValue() != null && !column.defaultValue().isEmpty())
-            instruction.append(getDefaultValue(column.defaultValue(), field.getType()));
-
-        return instruction.toString();
+            defaultValue = getDefaultValue(column.defaultValue(), field.getType()).substring(" DEFAULT ".length());
+
+        return new ColumnSchema(
+                column.name(),
+                getTypeColumn(field.getType()),
+                !column.permitNull(),
+                column.primaryKey(),
+                column.autoIncrement(),
+                column.unique(),
+                defaultValue
+        );
     }
 
-    private String instructionCreateJoin(@NonNull Field field) {
+    private ColumnSchema instructionCreateJoin(@NonNull Field field) {
         Join join = field.getAnnotation(Join.class);
 
         if (join == null)
@@ -182,24 +153,19 @@ public class SQLiteTable<T> {
 
         Class<?> columnType = sourceField.getType();
 
-
-        StringBuilder instruction = new StringBuilder();
-        instruction.append(join.targetName())
-                .append(" ")
-                .append(getTypeColumn(columnType));
-
-        // Add constraints
-        if (!join.permitNull())
-            instruction.append(" NOT NULL");
-
-        if (join.unique())
-            instruction.append(" UNIQUE");
-
+        String defaultValue = null;
         if (join.defaultValue() != null && !join.defaultValue().isEmpty())
-            instruction
-                    .append(getDefaultValue(join.defaultValue(), columnType));
-
-        return instruction.toString();
+            defaultValue = getDefaultValue(join.defaultValue(), columnType).substring(" DEFAULT ".length());
+
+        return new ColumnSchema(
+                join.targetName(),
+                getTypeColumn(columnType),
+                !join.permitNull(),
+                false,
+                false,
+                join.unique(),
+                defaultValue
+        );
     }
 
 
@@ -0,0 +1,157 @@
+package com.jef.sqlite.management.cache;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bloom filter of string values backed by a long array.
+ * <p>
+ * A negative answer of {@link #mightContain(String)} is definite, a positive answer may be a false positive.
+ * The bit positions are derived from two 64 bit hashes of the UTF-8 bytes of the value (double hashing).
+ * The class is not thread safe.
+ */
+public class BloomFilter {
+
+    private final long[] bits;
+    private final int bitCount;
+    private final int hashCount;
+    private final int capacity;
+    private int entries;
+
+    /**
+     * Creates a filter sized for a number of values and a target false positive rate.
+     *
+     * @param capacity The expected number of values
+     * @param falsePositiveRate The target false positive rate, between 0 and 1 exclusive
+     */
+    public BloomFilter(int capacity, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+
+        this.capacity = Math.max(capacity, 1);
+
+        long optimalBits = (long) Math.ceil(-this.capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = (int) Math.max(64, Math.min(optimalBits, Integer.MAX_VALUE - 63));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / this.capacity * Math.log(2)));
+        this.bits = new long[(bitCount + 63) / 64];
+    }
+
+    /**
+     * Adds a value to the filter.
+     *
+     * @param value The value, null values are ignored
+     */
+    public void add(String value) {
+        if (value == null)
+            return;
+
+        long hash1 = hash(value, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(value, 0xC2B2AE3D27D4EB4FL);
+
+        for (int i = 0; i < hashCount; i++) {
+            int index = (int) Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            bits[index >>> 6] |= 1L << index;
+        }
+
+        entries++;
+    }
+
+    /**
+     * Checks if a value might have been added to the filter.
+     *
+     * @param value The value
+     * @return false if the value was definitely not added, true if it might have been added
+     */
+    public boolean mightContain(String value) {
+        if (value == null)
+            return false;
+
+        long hash1 = hash(value, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(value, 0xC2B2AE3D27D4EB4FL);
+
+        for (int i = 0; i < hashCount; i++) {
+            int index = (int) Long.remainderUnsigned(hash1 + i * hash2, bitCount);
+            if ((bits[index >>> 6] & (1L << index)) == 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the number of values added to the filter.
+     *
+     * @return The number of values added
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * Gets the number of values the filter was sized for.
+     *
+     * @return The capacity of the filter
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of bits of the filter.
+     *
+     * @return The number of bits
+     */
+    public int getBitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Gets the number of hash functions of the filter.
+     *
+     * @return The number of hash functions
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Gets the memory used by the bit array.
+     *
+     * @return The size of the bit array in bytes
+     */
+    public long getMemoryBytes() {
+        return bits.length * 8L;
+    }
+
+    /**
+     * Gets the expected false positive rate for the values added so far: (1 - e^(-k * n / m))^k.
+     *
+     * @return The expected false positive rate
+     */
+    public double getExpectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashCount * entries / bitCount), hashCount);
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the UTF-8 bytes of a value followed by a murmur finalizer.
+     *
+     * @param value The value
+     * @param seed The seed that selects the hash function
+     * @return The hash of the value
+     */
+    private static long hash(String value, long seed) {
+        long hash = 0xCBF29CE484222325L ^ seed;
+
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
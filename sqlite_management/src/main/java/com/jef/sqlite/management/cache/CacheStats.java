@@ -0,0 +1,79 @@
+package com.jef.sqlite.management.cache;
+
+import java.util.Locale;
+
+/**
+ * Snapshot of the hit and eviction counters of a cache.
+ */
+public class CacheStats {
+
+    private final String name;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int size;
+    private final int maxSize;
+
+    public CacheStats(String name, long hits, long misses, long evictions, int size, int maxSize) {
+        this.name = name;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return The name of the cache, the table name for entity caches
+     */
+    public String getName() {
+        return name;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return The number of entries in the cache
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return The maximum number of entries of the cache
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Gets the fraction of lookups answered by the cache.
+     *
+     * @return The hit rate, or 0 if there have been no lookups
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return name +
+                " hits=" + hits +
+                " misses=" + misses +
+                " hitRate=" + String.format(Locale.ROOT, "%.4f", getHitRate()) +
+                " evictions=" + evictions +
+                " size=" + size + "/" + maxSize;
+    }
+
+}
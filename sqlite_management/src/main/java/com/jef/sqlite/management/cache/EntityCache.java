@@ -0,0 +1,306 @@
+package com.jef.sqlite.management.cache;
+
+import com.jef.sqlite.management.interfaces.Cacheable;
+import com.jef.sqlite.management.interfaces.Column;
+import com.jef.sqlite.management.interfaces.Join;
+import com.jef.sqlite.management.interfaces.Table;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Second level cache of the entities annotated with {@link Cacheable}, keyed by their integer primary key.
+ * <p>
+ * Each entity class has its own {@link LongLruCache} sized by {@link Cacheable#maxEntries()}.
+ * Writes invalidate the entries of their table, and also the entries of the cached entities that
+ * join that table, since those hold instances of the related entity.
+ * <p>
+ * Every invalidation of a class increments its generation. A reader takes the generation with
+ * {@link #generation(Class)} before querying the database and caches the row with {@link #put(Object, long)},
+ * which skips it if the class was invalidated in between, so a row read before a write is not cached after it.
+ * All the methods are thread safe.
+ */
+public class EntityCache {
+
+    /**
+     * Region used for the classes that are not cacheable.
+     */
+    private static final Region NOT_CACHEABLE = new Region(null, null, null, 1, 0);
+
+    private final Map<Class<?>, Region> regions = new ConcurrentHashMap<>();
+
+    /**
+     * Checks if the entities of a class are cached.
+     *
+     * @param entityClass The entity class
+     * @return true if the class is annotated with @Cacheable and has an integer primary key
+     */
+    public boolean isCacheable(Class<?> entityClass) {
+        return region(entityClass) != NOT_CACHEABLE;
+    }
+
+    /**
+     * Gets the name of the primary key field of a cacheable class.
+     *
+     * @param entityClass The entity class
+     * @return The name of the primary key field, or null if the class is not cacheable
+     */
+    public String getKeyFieldName(Class<?> entityClass) {
+        Region region = region(entityClass);
+        return region == NOT_CACHEABLE ? null : region.keyField.getName();
+    }
+
+    /**
+     * Gets a cached entity.
+     *
+     * @param entityClass The entity class
+     * @param key The primary key
+     * @return The cached entity, or null if it is not cached or the class is not cacheable
+     */
+    public Object get(Class<?> entityClass, long key) {
+        Region region = region(entityClass);
+        if (region == NOT_CACHEABLE)
+            return null;
+
+        synchronized (region) {
+            Object entity = region.cache.get(key, System.nanoTime());
+
+            if (entity == null)
+                region.misses++;
+            else
+                region.hits++;
+
+            return entity;
+        }
+    }
+
+    /**
+     * Gets the number of invalidations of the cached entities of a class, to be taken before reading a row.
+     *
+     * @param entityClass The entity class
+     * @return The generation of the class, 0 if the class is not cacheable
+     */
+    public long generation(Class<?> entityClass) {
+        Region region = region(entityClass);
+        if (region == NOT_CACHEABLE)
+            return 0;
+
+        synchronized (region) {
+            return region.generation;
+        }
+    }
+
+    /**
+     * Caches an entity by the value of its primary key field.
+     *
+     * @param entity The entity, ignored if its class is not cacheable or its key is null
+     */
+    public void put(Object entity) {
+        if (entity != null)
+            put(entity, generation(entity.getClass()));
+    }
+
+    /**
+     * Caches an entity read from the database, unless its class was invalidated since the read started.
+     *
+     * @param entity The entity, ignored if its class is not cacheable or its key is null
+     * @param generation The generation of the class taken with {@link #generation(Class)} before the read
+     */
+    public void put(Object entity, long generation) {
+        if (entity == null)
+            return;
+
+        Region region = region(entity.getClass());
+        if (region == NOT_CACHEABLE)
+            return;
+
+        try {
+            Object key = region.keyField.get(entity);
+            if (!(key instanceof Number))
+                return;
+
+            synchronized (region) {
+                // A write during the read makes the row stale
+                if (region.generation != generation)
+                    return;
+
+                long expiresAt = region.ttlNanos == 0 ? 0 : System.nanoTime() + region.ttlNanos;
+                region.cache.put(((Number) key).longValue(), entity, expiresAt);
+            }
+        } catch (IllegalAccessException ignored) {
+            // The key field is accessible, it was made accessible when the region was created
+        }
+    }
+
+    /**
+     * Removes a cached entity and the cached entities that join its table.
+     *
+     * @param entityClass The entity class
+     * @param key The primary key
+     */
+    public void invalidate(Class<?> entityClass, long key) {
+        Region region = region(entityClass);
+
+        if (region != NOT_CACHEABLE)
+            synchronized (region) {
+                region.generation++;
+                region.cache.remove(key);
+            }
+
+        Table table = entityClass.getAnnotation(Table.class);
+        if (table != null)
+            clearDependents(table.name());
+    }
+
+    /**
+     * Removes the cached entities of a table and the cached entities that join it.
+     *
+     * @param tableName The table name
+     */
+    public void invalidateTable(String tableName) {
+        for (Region region : regions.values())
+            if (region != NOT_CACHEABLE && (region.tableName.equals(tableName) || region.dependentTables.contains(tableName)))
+                synchronized (region) {
+                    region.generation++;
+                    region.cache.clear();
+                }
+    }
+
+    /**
+     * Removes all the cached entities.
+     */
+    public void invalidateAll() {
+        for (Region region : regions.values())
+            if (region != NOT_CACHEABLE)
+                synchronized (region) {
+                    region.generation++;
+                    region.cache.clear();
+                }
+    }
+
+    /**
+     * Gets the hit rate counters of the cached entity classes.
+     *
+     * @return A snapshot of the counters of each cacheable class used so far
+     */
+    public List<CacheStats> getStats() {
+        List<CacheStats> stats = new ArrayList<>();
+
+        for (Region region : regions.values())
+            if (region != NOT_CACHEABLE)
+                synchronized (region) {
+                    stats.add(new CacheStats(region.tableName, region.hits, region.misses,
+                            region.cache.getEvictions(), region.cache.size(), region.cache.getMaxEntries()));
+                }
+
+        return stats;
+    }
+
+    private void clearDependents(String tableName) {
+        for (Region region : regions.values())
+            if (region != NOT_CACHEABLE && region.dependentTables.contains(tableName))
+                synchronized (region) {
+                    region.generation++;
+                    region.cache.clear();
+                }
+    }
+
+    private Region region(Class<?> entityClass) {
+        Region region = regions.get(entityClass);
+        if (region != null)
+            return region;
+
+        region = createRegion(entityClass);
+        Region previous = regions.putIfAbsent(entityClass, region);
+        return previous != null ? previous : region;
+    }
+
+    /**
+     * Creates the region of an entity class from its @Cacheable annotation.
+     *
+     * @param entityClass The entity class
+     * @return The region, or {@link #NOT_CACHEABLE} if the class is not cacheable
+     */
+    private static Region createRegion(Class<?> entityClass) {
+        Cacheable cacheable = entityClass.getAnnotation(Cacheable.class);
+        Table table = entityClass.getAnnotation(Table.class);
+
+        if (cacheable == null || table == null || cacheable.maxEntries() <= 0)
+            return NOT_CACHEABLE;
+
+        Field keyField = null;
+        for (Field field : entityClass.getDeclaredFields())
+            if (field.isAnnotationPresent(Column.class) && field.getAnnotation(Column.class).primaryKey()) {
+                keyField = field;
+                break;
+            }
+
+        if (keyField == null || !isIntegerType(keyField.getType()))
+            return NOT_CACHEABLE;
+
+        keyField.setAccessible(true);
+
+        Set<String> dependentTables = new HashSet<>();
+        collectJoinedTables(entityClass, dependentTables, new HashSet<>());
+        dependentTables.remove(table.name());
+
+        return new Region(table.name(), dependentTables, keyField, cacheable.maxEntries(), cacheable.ttl() * 1_000_000L);
+    }
+
+    /**
+     * Collects the tables joined by an entity class, directly or through its related entities.
+     */
+    private static void collectJoinedTables(Class<?> entityClass, Set<String> tables, Set<Class<?>> visited) {
+        if (!visited.add(entityClass))
+            return;
+
+        for (Field field : entityClass.getDeclaredFields()) {
+            if (!field.isAnnotationPresent(Join.class))
+                continue;
+
+            Class<?> relationship = field.getAnnotation(Join.class).relationShip();
+            Table table = relationship.getAnnotation(Table.class);
+
+            if (table != null)
+                tables.add(table.name());
+
+            collectJoinedTables(relationship, tables, visited);
+        }
+    }
+
+    private static boolean isIntegerType(Class<?> type) {
+        return type == int.class || type == Integer.class ||
+                type == long.class || type == Long.class ||
+                type == short.class || type == Short.class;
+    }
+
+    /**
+     * Cache and counters of an entity class.
+     */
+    private static class Region {
+
+        private final String tableName;
+        private final Set<String> dependentTables;
+        private final Field keyField;
+        private final LongLruCache<Object> cache;
+        private final long ttlNanos;
+        private long generation;
+        private long hits;
+        private long misses;
+
+        Region(String tableName, Set<String> dependentTables, Field keyField, int maxEntries, long ttlNanos) {
+            this.tableName = tableName;
+            this.dependentTables = dependentTables;
+            this.keyField = keyField;
+            this.cache = new LongLruCache<>(maxEntries);
+            this.ttlNanos = ttlNanos;
+        }
+
+    }
+
+}
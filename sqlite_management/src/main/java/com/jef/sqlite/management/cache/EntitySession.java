@@ -0,0 +1,60 @@
+package com.jef.sqlite.management.cache;
+
+import com.jef.sqlite.management.SQLiteManagement;
+
+/**
+ * Explicit scope of the identity map of a thread.
+ * <p>
+ * While the session is open, every query executed on the same thread with the same SQLiteManagement
+ * returns the already materialized instance for a given entity class and primary key.
+ * The instances are not refreshed during the session, writes made in the session are not reflected
+ * on instances that were already loaded. Sessions can be nested, the instances are released when
+ * the outermost session is closed.
+ *
+ * <pre>
+ * {@code
+ * try (EntitySession session = management.openSession()) {
+ *     List<Product> products = productQuery.findAll();
+ *     Optional<Line> line = lineQuery.findById(1); // same instance as products.get(0).getLine()
+ * }
+ * }
+ * </pre>
+ */
+public class EntitySession implements AutoCloseable {
+
+    private final SQLiteManagement management;
+    private boolean closed;
+
+    /**
+     * Opens a session on the current thread.
+     *
+     * @param management The SQLiteManagement whose queries share the identity map
+     */
+    public EntitySession(SQLiteManagement management) {
+        this.management = management;
+        management.beginIdentityScope();
+    }
+
+    /**
+     * Gets the number of instances materialized in the session.
+     *
+     * @return The number of instances
+     */
+    public int size() {
+        IdentityMap identityMap = management.getIdentityMap();
+        return identityMap == null ? 0 : identityMap.size();
+    }
+
+    /**
+     * Closes the session. Must be called on the thread that opened it.
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+
+        closed = true;
+        management.endIdentityScope();
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.jef.sqlite.management.cache;
+
+import com.jef.sqlite.management.interfaces.Column;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Instances materialized during a query or a session, keyed by entity class and primary key.
+ * <p>
+ * While an identity map is active, loading a row whose primary key was already loaded returns the existing
+ * instance, so related entities shared by many rows are hydrated, and queried, only once.
+ * An identity map belongs to one thread and is not thread safe.
+ */
+public class IdentityMap {
+
+    /**
+     * Primary key field of each entity class, empty for the classes without primary key.
+     */
+    private static final Map<Class<?>, Optional<Field>> KEY_FIELDS = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, Map<Object, Object>> instances = new HashMap<>();
+    private int depth;
+
+    /**
+     * Gets the instance loaded for a primary key.
+     *
+     * @param entityClass The entity class
+     * @param key The primary key, as returned by {@link #normalizeKey(Object)}
+     * @return The instance, or null if it has not been loaded
+     */
+    public Object get(Class<?> entityClass, Object key) {
+        Map<Object, Object> classInstances = instances.get(entityClass);
+        return classInstances == null ? null : classInstances.get(key);
+    }
+
+    /**
+     * Registers a loaded instance.
+     *
+     * @param entityClass The entity class
+     * @param key The primary key, as returned by {@link #normalizeKey(Object)}
+     * @param instance The instance
+     */
+    public void put(Class<?> entityClass, Object key, Object instance) {
+        Map<Object, Object> classInstances = instances.get(entityClass);
+        if (classInstances == null) {
+            classInstances = new HashMap<>();
+            instances.put(entityClass, classInstances);
+        }
+
+        classInstances.put(key, instance);
+    }
+
+    /**
+     * Gets the number of registered instances.
+     *
+     * @return The number of instances
+     */
+    public int size() {
+        int size = 0;
+        for (Map<Object, Object> classInstances : instances.values())
+            size += classInstances.size();
+
+        return size;
+    }
+
+    /**
+     * Enters a nested scope of the identity map.
+     */
+    public void enter() {
+        depth++;
+    }
+
+    /**
+     * Leaves a nested scope of the identity map, releasing the instances when the outermost scope ends.
+     *
+     * @return true if the outermost scope ended
+     */
+    public boolean exit() {
+        if (--depth > 0)
+            return false;
+
+        instances.clear();
+        return true;
+    }
+
+    /**
+     * Gets the primary key field of an entity class.
+     *
+     * @param entityClass The entity class
+     * @return The accessible primary key field, or null if the class has no primary key
+     */
+    public static Field keyField(Class<?> entityClass) {
+        Optional<Field> keyField = KEY_FIELDS.get(entityClass);
+
+        if (keyField == null) {
+            keyField = Optional.empty();
+            for (Field field : entityClass.getDeclaredFields())
+                if (field.isAnnotationPresent(Column.class) && field.getAnnotation(Column.class).primaryKey()) {
+                    field.setAccessible(true);
+                    keyField = Optional.of(field);
+                    break;
+                }
+
+            KEY_FIELDS.put(entityClass, keyField);
+        }
+
+        return keyField.orElse(null);
+    }
+
+    /**
+     * Normalizes a primary key so the same key read as different types maps to the same instance.
+     * Integer keys are converted to Long and any other key to its string form.
+     *
+     * @param key The primary key
+     * @return The normalized key, or null if the key is null
+     */
+    public static Object normalizeKey(Object key) {
+        if (key == null)
+            return null;
+
+        if (key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte)
+            return ((Number) key).longValue();
+
+        return key.toString();
+    }
+
+}
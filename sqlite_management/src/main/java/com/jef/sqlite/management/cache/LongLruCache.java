@@ -0,0 +1,256 @@
+package com.jef.sqlite.management.cache;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size LRU map with primitive long keys.
+ * <p>
+ * Entries live in parallel arrays linked in a doubly linked list ordered by access, and are indexed by an
+ * open addressing hash table of entry positions, so lookups do not box the keys or allocate.
+ * Each entry may have an expiration time, expired entries are removed when they are read.
+ * The class is not thread safe.
+ *
+ * @param <V> The value type
+ */
+public class LongLruCache<V> {
+
+    private static final int NONE = -1;
+
+    private final int maxEntries;
+    private final long[] keys;
+    private final Object[] values;
+    private final long[] expiresAt;
+    private final int[] previous;
+    private final int[] next;
+    private final int[] freeEntries;
+    private final int[] table;
+    private final int mask;
+
+    private int head = NONE;
+    private int tail = NONE;
+    private int size;
+    private int freeCount;
+    private long evictions;
+
+    /**
+     * Creates a cache with a maximum number of entries.
+     *
+     * @param maxEntries The maximum number of entries, the least recently used entry is evicted above it
+     */
+    public LongLruCache(int maxEntries) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("Max entries must be greater than 0");
+
+        this.maxEntries = maxEntries;
+        this.keys = new long[maxEntries];
+        this.values = new Object[maxEntries];
+        this.expiresAt = new long[maxEntries];
+        this.previous = new int[maxEntries];
+        this.next = new int[maxEntries];
+        this.freeEntries = new int[maxEntries];
+
+        int tableSize = Integer.highestOneBit(Math.max(2, maxEntries * 2 - 1)) << 1;
+        this.table = new int[tableSize];
+        this.mask = tableSize - 1;
+
+        resetFreeEntries();
+    }
+
+    /**
+     * Gets a value and marks it as the most recently used.
+     *
+     * @param key The key
+     * @param now The current time, compared with the expiration time of the entry
+     * @return The value, or null if the key is not present or the entry expired
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key, long now) {
+        int slot = findSlot(key);
+        if (table[slot] == 0)
+            return null;
+
+        int entry = table[slot] - 1;
+
+        if (expiresAt[entry] != 0 && now >= expiresAt[entry]) {
+            removeSlot(slot);
+            return null;
+        }
+
+        moveToHead(entry);
+        return (V) values[entry];
+    }
+
+    /**
+     * Puts a value, evicting the least recently used entry if the cache is full.
+     *
+     * @param key The key
+     * @param value The value
+     * @param expiresAt The expiration time of the entry, or 0 if it does not expire
+     */
+    public void put(long key, V value, long expiresAt) {
+        int slot = findSlot(key);
+
+        if (table[slot] != 0) {
+            int entry = table[slot] - 1;
+            values[entry] = value;
+            this.expiresAt[entry] = expiresAt;
+            moveToHead(entry);
+            return;
+        }
+
+        if (size == maxEntries) {
+            remove(keys[tail]);
+            evictions++;
+            slot = findSlot(key);
+        }
+
+        int entry = freeEntries[--freeCount];
+        keys[entry] = key;
+        values[entry] = value;
+        this.expiresAt[entry] = expiresAt;
+        table[slot] = entry + 1;
+        size++;
+
+        previous[entry] = NONE;
+        next[entry] = head;
+        if (head != NONE)
+            previous[head] = entry;
+        head = entry;
+        if (tail == NONE)
+            tail = entry;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key The key
+     * @return true if the key was present
+     */
+    public boolean remove(long key) {
+        int slot = findSlot(key);
+        if (table[slot] == 0)
+            return false;
+
+        removeSlot(slot);
+        return true;
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+        Arrays.fill(values, null);
+        head = NONE;
+        tail = NONE;
+        size = 0;
+        resetFreeEntries();
+    }
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return The number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the maximum number of entries.
+     *
+     * @return The maximum number of entries
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Gets the number of entries evicted because the cache was full.
+     *
+     * @return The number of evictions
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Finds the slot of a key, or the empty slot where it would be inserted.
+     */
+    private int findSlot(long key) {
+        int slot = hash(key) & mask;
+
+        while (table[slot] != 0 && keys[table[slot] - 1] != key)
+            slot = (slot + 1) & mask;
+
+        return slot;
+    }
+
+    /**
+     * Removes the entry of a slot, unlinking it and shifting back the following entries of its probe sequence.
+     */
+    private void removeSlot(int slot) {
+        int entry = table[slot] - 1;
+
+        if (previous[entry] != NONE)
+            next[previous[entry]] = next[entry];
+        else
+            head = next[entry];
+
+        if (next[entry] != NONE)
+            previous[next[entry]] = previous[entry];
+        else
+            tail = previous[entry];
+
+        values[entry] = null;
+        freeEntries[freeCount++] = entry;
+        size--;
+
+        // Backward shift deletion keeps the probe sequences without tombstones
+        int empty = slot;
+        table[empty] = 0;
+        int current = empty;
+        while (true) {
+            current = (current + 1) & mask;
+            if (table[current] == 0)
+                return;
+
+            int ideal = hash(keys[table[current] - 1]) & mask;
+            boolean reachable = empty <= current ? (empty < ideal && ideal <= current) : (empty < ideal || ideal <= current);
+
+            if (!reachable) {
+                table[empty] = table[current];
+                table[current] = 0;
+                empty = current;
+            }
+        }
+    }
+
+    private void moveToHead(int entry) {
+        if (entry == head)
+            return;
+
+        next[previous[entry]] = next[entry];
+        if (next[entry] != NONE)
+            previous[next[entry]] = previous[entry];
+        else
+            tail = previous[entry];
+
+        previous[entry] = NONE;
+        next[entry] = head;
+        previous[head] = entry;
+        head = entry;
+    }
+
+    private void resetFreeEntries() {
+        freeCount = maxEntries;
+        for (int i = 0; i < maxEntries; i++)
+            freeEntries[i] = maxEntries - 1 - i;
+    }
+
+    private static int hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+}
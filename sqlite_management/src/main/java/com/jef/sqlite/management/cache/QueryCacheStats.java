@@ -0,0 +1,48 @@
+package com.jef.sqlite.management.cache;
+
+/**
+ * Snapshot of the counters of the {@link QueryResultCache}.
+ */
+public class QueryCacheStats extends CacheStats {
+
+    private final long staleEntries;
+    private final int rows;
+    private final int maxRows;
+
+    public QueryCacheStats(long hits, long misses, long evictions, int size, int maxSize,
+                           long staleEntries, int rows, int maxRows) {
+        super("queries", hits, misses, evictions, size, maxSize);
+        this.staleEntries = staleEntries;
+        this.rows = rows;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * @return The number of entries dropped because a table they read changed
+     */
+    public long getStaleEntries() {
+        return staleEntries;
+    }
+
+    /**
+     * @return The number of rows held by the cached results
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return The maximum number of rows the cache may hold
+     */
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() +
+                " stale=" + staleEntries +
+                " rows=" + rows + "/" + maxRows;
+    }
+
+}
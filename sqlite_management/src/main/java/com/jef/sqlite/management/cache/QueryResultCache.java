@@ -0,0 +1,227 @@
+package com.jef.sqlite.management.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache of query results keyed by SQL and bound arguments.
+ * <p>
+ * Each entry records the versions of the tables read by its query, taken from {@link TableVersions}
+ * before the query ran. A lookup whose tables changed since then drops the entry.
+ * The cache is bounded by a number of entries and by the total number of cached rows, evicting the least
+ * recently used entries first. Results with more rows than the bound are not cached.
+ * <p>
+ * The cache is disabled by default. Cached entities are shared between lookups and must be treated as read only.
+ * All the methods are thread safe.
+ */
+public class QueryResultCache {
+
+    private final TableVersions tableVersions;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile boolean enabled;
+    private int maxEntries = 256;
+    private int maxRows = 10_000;
+    private int rows;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long staleEntries;
+
+    /**
+     * Creates a result cache.
+     *
+     * @param tableVersions The table versions bumped by the write paths
+     */
+    public QueryResultCache(TableVersions tableVersions) {
+        this.tableVersions = tableVersions;
+    }
+
+    /**
+     * Enables or disables the cache. Disabling it releases the cached results.
+     *
+     * @param enabled true to enable the cache
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+
+        if (!enabled)
+            clear();
+    }
+
+    /**
+     * Checks if the cache is enabled.
+     *
+     * @return true if the cache is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets the memory bound of the cache.
+     *
+     * @param maxEntries The maximum number of cached queries
+     * @param maxRows The maximum number of cached rows among all the queries
+     */
+    public synchronized void setLimits(int maxEntries, int maxRows) {
+        if (maxEntries <= 0 || maxRows <= 0)
+            throw new IllegalArgumentException("Cache limits must be greater than 0");
+
+        this.maxEntries = maxEntries;
+        this.maxRows = maxRows;
+        evict();
+    }
+
+    /**
+     * Takes the versions of the tables read by a query. Must be called before running the query.
+     *
+     * @param tables The tables read by the query
+     * @return The versions to pass to {@link #put(String, String[], Set, long[], List)}
+     */
+    public long[] versionsOf(Set<String> tables) {
+        return tableVersions.snapshot(tables.toArray(new String[0]));
+    }
+
+    /**
+     * Gets the cached result of a query.
+     *
+     * @param sql The SQL of the query
+     * @param args The bound arguments
+     * @return An unmodifiable list with the cached rows, or null if the query is not cached or its tables changed
+     */
+    public synchronized <T> List<T> get(String sql, String[] args) {
+        Key key = new Key(sql, args);
+        Entry entry = entries.get(key);
+
+        if (entry != null && !tableVersions.isCurrent(entry.tables, entry.versions)) {
+            remove(key);
+            staleEntries++;
+            entry = null;
+        }
+
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return (List<T>) entry.results;
+    }
+
+    /**
+     * Caches the result of a query.
+     *
+     * @param sql The SQL of the query
+     * @param args The bound arguments
+     * @param tables The tables read by the query
+     * @param versions The versions of the tables taken with {@link #versionsOf(Set)} before running the query
+     * @param results The rows of the result
+     */
+    public synchronized void put(String sql, String[] args, Set<String> tables, long[] versions, List<?> results) {
+        if (!enabled || results.size() > maxRows)
+            return;
+
+        String[] tableNames = tables.toArray(new String[0]);
+
+        // A write between the snapshot and the end of the query would make the result stale from the start
+        if (!tableVersions.isCurrent(tableNames, versions))
+            return;
+
+        Key key = new Key(sql, args);
+        remove(key);
+
+        entries.put(key, new Entry(tableNames, versions, Collections.unmodifiableList(new ArrayList<>(results))));
+        rows += results.size();
+        evict();
+    }
+
+    /**
+     * Removes all the cached results.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        rows = 0;
+    }
+
+    /**
+     * Gets the counters of the cache.
+     *
+     * @return A snapshot of the counters
+     */
+    public synchronized QueryCacheStats getStats() {
+        return new QueryCacheStats(hits, misses, evictions, entries.size(), maxEntries, staleEntries, rows, maxRows);
+    }
+
+    private void remove(Key key) {
+        Entry entry = entries.remove(key);
+        if (entry != null)
+            rows -= entry.results.size();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+
+        while ((entries.size() > maxEntries || rows > maxRows) && iterator.hasNext()) {
+            rows -= iterator.next().getValue().results.size();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * SQL and bound arguments of a query.
+     */
+    private static class Key {
+
+        private final String sql;
+        private final String[] args;
+        private final int hash;
+
+        Key(String sql, String[] args) {
+            this.sql = sql;
+            this.args = args == null ? new String[0] : args.clone();
+            this.hash = 31 * sql.hashCode() + Arrays.hashCode(this.args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+
+            Key key = (Key) o;
+            return hash == key.hash && sql.equals(key.sql) && Arrays.equals(args, key.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+    /**
+     * Cached result with the versions of the tables it read.
+     */
+    private static class Entry {
+
+        private final String[] tables;
+        private final long[] versions;
+        private final List<?> results;
+
+        Entry(String[] tables, long[] versions, List<?> results) {
+            this.tables = tables;
+            this.versions = versions;
+            this.results = results;
+        }
+
+    }
+
+}
@@ -0,0 +1,216 @@
+package com.jef.sqlite.management.cache;
+
+import android.util.LongSparseArray;
+
+import com.jef.sqlite.management.interfaces.ReferenceTable;
+import com.jef.sqlite.management.interfaces.Table;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory copies of the tables annotated with {@link ReferenceTable}.
+ * <p>
+ * Each table is loaded completely into an immutable snapshot with a {@link LongSparseArray} indexed by
+ * primary key, so lookups do not box the keys. Writes drop the snapshot and the next read loads a new one;
+ * readers always see a complete snapshot, either the previous or the new one. Loads of a table are serialized,
+ * but writes never wait for them: the snapshot is published together with a generation that every write
+ * increments, and a load that raced with a write does not install the rows read before the write.
+ * All the methods are thread safe.
+ */
+public class ReferenceTables {
+
+    /**
+     * Loads all the rows of a reference table.
+     */
+    public interface Loader {
+
+        /**
+         * Loads all the entities of a table ordered by primary key.
+         *
+         * @param entityClass The entity class
+         * @return The entities
+         */
+        List<Object> loadAll(Class<?> entityClass);
+
+    }
+
+    private final ConcurrentHashMap<Class<?>, Holder> holders = new ConcurrentHashMap<>();
+
+    /**
+     * Checks if an entity class is kept in memory.
+     *
+     * @param entityClass The entity class
+     * @return true if the class is annotated with @ReferenceTable and has an integer primary key
+     */
+    public boolean isReferenceTable(Class<?> entityClass) {
+        return holder(entityClass) != null;
+    }
+
+    /**
+     * Finds an entity by primary key, loading the table if needed.
+     *
+     * @param entityClass The entity class
+     * @param key The primary key
+     * @param loader The loader used if the table is not in memory
+     * @return The entity, or null if it does not exist
+     */
+    public Object find(Class<?> entityClass, long key, Loader loader) {
+        return snapshot(entityClass, loader).byKey.get(key);
+    }
+
+    /**
+     * Gets all the entities of a table ordered by primary key, loading the table if needed.
+     *
+     * @param entityClass The entity class
+     * @param loader The loader used if the table is not in memory
+     * @return An unmodifiable list with the entities
+     */
+    public List<Object> findAll(Class<?> entityClass, Loader loader) {
+        return snapshot(entityClass, loader).all;
+    }
+
+    /**
+     * Loads a table into memory if it is not loaded yet.
+     *
+     * @param entityClass The entity class
+     * @param loader The loader of the table
+     */
+    public void load(Class<?> entityClass, Loader loader) {
+        if (isReferenceTable(entityClass))
+            snapshot(entityClass, loader);
+    }
+
+    /**
+     * Drops the in-memory copy of a table, the next read loads it again.
+     *
+     * @param tableName The table name
+     */
+    public void invalidate(String tableName) {
+        for (Holder holder : holders.values())
+            if (holder.tableName.equalsIgnoreCase(tableName))
+                holder.invalidate();
+    }
+
+    /**
+     * Drops the in-memory copy of every table.
+     */
+    public void invalidateAll() {
+        for (Holder holder : holders.values())
+            holder.invalidate();
+    }
+
+    private Snapshot snapshot(Class<?> entityClass, Loader loader) {
+        Holder holder = holder(entityClass);
+        if (holder == null)
+            throw new IllegalArgumentException("Entity class " + entityClass.getName() + " is not a reference table");
+
+        Snapshot snapshot = holder.state.get().snapshot;
+        if (snapshot != null)
+            return snapshot;
+
+        synchronized (holder) {
+            State loading = holder.state.get();
+            if (loading.snapshot != null)
+                return loading.snapshot;
+
+            snapshot = new Snapshot(loader.loadAll(entityClass), holder.keyField);
+
+            // A write during the load makes the rows stale, they are returned but not kept
+            holder.state.compareAndSet(loading, new State(loading.generation, snapshot));
+            return snapshot;
+        }
+    }
+
+    private Holder holder(Class<?> entityClass) {
+        if (!entityClass.isAnnotationPresent(ReferenceTable.class) || !entityClass.isAnnotationPresent(Table.class))
+            return null;
+
+        Holder holder = holders.get(entityClass);
+        if (holder != null)
+            return holder;
+
+        Field keyField = IdentityMap.keyField(entityClass);
+        if (keyField == null || !isIntegerType(keyField.getType()))
+            return null;
+
+        holder = new Holder(entityClass.getAnnotation(Table.class).name(), keyField);
+        Holder previous = holders.putIfAbsent(entityClass, holder);
+        return previous != null ? previous : holder;
+    }
+
+    private static boolean isIntegerType(Class<?> type) {
+        return type == int.class || type == Integer.class ||
+                type == long.class || type == Long.class ||
+                type == short.class || type == Short.class;
+    }
+
+    /**
+     * Current snapshot of a table.
+     */
+    private static class Holder {
+
+        private final String tableName;
+        private final Field keyField;
+        private final AtomicReference<State> state = new AtomicReference<>(new State(0, null));
+
+        Holder(String tableName, Field keyField) {
+            this.tableName = tableName;
+            this.keyField = keyField;
+        }
+
+        /**
+         * Drops the snapshot without waiting for a load in progress, which then fails to install its rows.
+         */
+        void invalidate() {
+            while (true) {
+                State current = state.get();
+                if (state.compareAndSet(current, new State(current.generation + 1, null)))
+                    return;
+            }
+        }
+
+    }
+
+    /**
+     * Snapshot of a table and the number of writes to the table when it was loaded, replaced as a whole.
+     */
+    private static class State {
+
+        private final long generation;
+        private final Snapshot snapshot;
+
+        State(long generation, Snapshot snapshot) {
+            this.generation = generation;
+            this.snapshot = snapshot;
+        }
+
+    }
+
+    /**
+     * Immutable copy of the rows of a table.
+     */
+    private static class Snapshot {
+
+        private final LongSparseArray<Object> byKey;
+        private final List<Object> all;
+
+        Snapshot(List<Object> entities, Field keyField) {
+            this.byKey = new LongSparseArray<>(entities.size());
+            this.all = Collections.unmodifiableList(new ArrayList<>(entities));
+
+            try {
+                for (Object entity : entities)
+                    byKey.put(((Number) keyField.get(entity)).longValue(), entity);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Primary key field is not accessible: " + keyField.getName(), e);
+            }
+        }
+
+    }
+
+}
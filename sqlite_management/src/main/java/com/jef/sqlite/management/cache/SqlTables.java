@@ -0,0 +1,85 @@
+package com.jef.sqlite.management.cache;
+
+import com.jef.sqlite.management.interfaces.Join;
+import com.jef.sqlite.management.interfaces.Table;
+
+import java.lang.reflect.Field;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the tables read or written by a query, used to invalidate the caches by table.
+ */
+public final class SqlTables {
+
+    private static final Pattern INSERT = Pattern.compile("^\\s*(?:INSERT|REPLACE)(?:\\s+OR\\s+\\w+)?\\s+INTO\\s+[\"`\\[]?(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern UPDATE = Pattern.compile("^\\s*UPDATE(?:\\s+OR\\s+\\w+)?\\s+[\"`\\[]?(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DELETE = Pattern.compile("^\\s*DELETE\\s+FROM\\s+[\"`\\[]?(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern READ = Pattern.compile("\\b(?:FROM|JOIN)\\s+[\"`\\[]?(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern COMMA_JOIN = Pattern.compile("\\bFROM\\s+[\"`\\[]?\\w+[\"`\\]]?(?:\\s+(?:AS\\s+)?\\w+)?\\s*,", Pattern.CASE_INSENSITIVE);
+
+    private SqlTables() {
+    }
+
+    /**
+     * Gets the table written by an INSERT, REPLACE, UPDATE or DELETE statement.
+     *
+     * @param sql The statement
+     * @return The table name, or null if the statement is not a single table write (for example DDL or WITH clauses)
+     */
+    public static String writtenTable(String sql) {
+        for (Pattern pattern : new Pattern[]{INSERT, UPDATE, DELETE}) {
+            Matcher matcher = pattern.matcher(sql);
+            if (matcher.find())
+                return matcher.group(1);
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the tables read by a SELECT statement, from its FROM and JOIN clauses.
+     *
+     * @param sql The statement
+     * @return The table names, or null if the tables cannot be determined
+     */
+    public static Set<String> readTables(String sql) {
+        if (COMMA_JOIN.matcher(sql).find())
+            return null;
+
+        Set<String> tables = new HashSet<>();
+        Matcher matcher = READ.matcher(sql);
+        while (matcher.find())
+            tables.add(matcher.group(1));
+
+        return tables.isEmpty() ? null : tables;
+    }
+
+    /**
+     * Gets the tables read when an entity is loaded: its own table and the tables of its joins, recursively.
+     *
+     * @param entityClass The entity class
+     * @return The table names
+     */
+    public static Set<String> readTables(Class<?> entityClass) {
+        Set<String> tables = new HashSet<>();
+        collectTables(entityClass, tables, new HashSet<>());
+        return tables;
+    }
+
+    private static void collectTables(Class<?> entityClass, Set<String> tables, Set<Class<?>> visited) {
+        if (!visited.add(entityClass))
+            return;
+
+        Table table = entityClass.getAnnotation(Table.class);
+        if (table != null)
+            tables.add(table.name());
+
+        for (Field field : entityClass.getDeclaredFields())
+            if (field.isAnnotationPresent(Join.class))
+                collectTables(field.getAnnotation(Join.class).relationShip(), tables, visited);
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.jef.sqlite.management.cache;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counters of the tables, bumped by every write path of the handlers.
+ * <p>
+ * A cached result records the versions of the tables it read before running its query;
+ * if any of them changed the result is stale. Writes that cannot be attributed to a table
+ * bump a global version that makes every recorded version stale.
+ * Every bump is reported to an optional {@link ChangeListener}.
+ * All the methods are thread safe.
+ */
+public class TableVersions {
+
+    /**
+     * Receives the bumps of the versions, on the thread that made the write.
+     */
+    public interface ChangeListener {
+
+        /**
+         * Called after the version of a table is bumped.
+         *
+         * @param tableName The table name, in lower case
+         */
+        void onTableChanged(String tableName);
+
+        /**
+         * Called after the global version is bumped.
+         */
+        void onAllTablesChanged();
+
+    }
+
+    private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final AtomicLong globalVersion = new AtomicLong();
+    private final ChangeListener listener;
+
+    public TableVersions() {
+        this(null);
+    }
+
+    /**
+     * @param listener The listener of the bumps, may be null
+     */
+    public TableVersions(ChangeListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Marks a table as changed.
+     *
+     * @param tableName The table name
+     */
+    public void bump(String tableName) {
+        counter(tableName).incrementAndGet();
+
+        if (listener != null)
+            listener.onTableChanged(tableName.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Marks every table as changed.
+     */
+    public void bumpAll() {
+        globalVersion.incrementAndGet();
+
+        if (listener != null)
+            listener.onAllTablesChanged();
+    }
+
+    /**
+     * Gets the current versions of a set of tables.
+     *
+     * @param tableNames The table names
+     * @return The versions, in the same order as the table names, followed by the global version
+     */
+    public long[] snapshot(String[] tableNames) {
+        long[] snapshot = new long[tableNames.length + 1];
+
+        // The global version is read first, a global bump during the snapshot makes it stale
+        snapshot[tableNames.length] = globalVersion.get();
+        for (int i = 0; i < tableNames.length; i++)
+            snapshot[i] = counter(tableNames[i]).get();
+
+        return snapshot;
+    }
+
+    /**
+     * Checks if the versions of a set of tables are still the ones of a snapshot.
+     *
+     * @param tableNames The table names of the snapshot
+     * @param snapshot The versions returned by {@link #snapshot(String[])}
+     * @return true if none of the tables changed since the snapshot
+     */
+    public boolean isCurrent(String[] tableNames, long[] snapshot) {
+        if (globalVersion.get() != snapshot[tableNames.length])
+            return false;
+
+        for (int i = 0; i < tableNames.length; i++)
+            if (counter(tableNames[i]).get() != snapshot[i])
+                return false;
+
+        return true;
+    }
+
+    private AtomicLong counter(String tableName) {
+        // SQLite table names are case insensitive
+        String key = tableName.toLowerCase(Locale.ROOT);
+        AtomicLong counter = versions.get(key);
+        if (counter != null)
+            return counter;
+
+        counter = new AtomicLong();
+        AtomicLong previous = versions.putIfAbsent(key, counter);
+        return previous != null ? previous : counter;
+    }
+
+}
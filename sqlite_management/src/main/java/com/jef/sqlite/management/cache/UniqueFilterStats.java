@@ -0,0 +1,102 @@
+package com.jef.sqlite.management.cache;
+
+import java.util.Locale;
+
+/**
+ * Snapshot of the metrics of the Bloom filter of a unique column.
+ */
+public class UniqueFilterStats {
+
+    private final String tableName;
+    private final String columnName;
+    private final int entries;
+    private final long memoryBytes;
+    private final double expectedFalsePositiveRate;
+    private final long checks;
+    private final long definiteMisses;
+    private final long falsePositives;
+
+    public UniqueFilterStats(String tableName, String columnName, int entries, long memoryBytes,
+                             double expectedFalsePositiveRate, long checks, long definiteMisses, long falsePositives) {
+        this.tableName = tableName;
+        this.columnName = columnName;
+        this.entries = entries;
+        this.memoryBytes = memoryBytes;
+        this.expectedFalsePositiveRate = expectedFalsePositiveRate;
+        this.checks = checks;
+        this.definiteMisses = definiteMisses;
+        this.falsePositives = falsePositives;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * @return The number of values added to the filter, including stale values
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return The memory used by the filter in bytes
+     */
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * @return The false positive rate expected from the size of the filter and its entries
+     */
+    public double getExpectedFalsePositiveRate() {
+        return expectedFalsePositiveRate;
+    }
+
+    /**
+     * @return The number of values checked against the filter
+     */
+    public long getChecks() {
+        return checks;
+    }
+
+    /**
+     * @return The number of checks answered by the filter without querying the database
+     */
+    public long getDefiniteMisses() {
+        return definiteMisses;
+    }
+
+    /**
+     * @return The number of values reported as possibly existing that did not exist in the table
+     */
+    public long getFalsePositives() {
+        return falsePositives;
+    }
+
+    /**
+     * Gets the observed false positive rate: false positives divided by the values that were not in the table.
+     *
+     * @return The observed false positive rate, or 0 if no absent value has been checked
+     */
+    public double getObservedFalsePositiveRate() {
+        long negatives = definiteMisses + falsePositives;
+        return negatives == 0 ? 0 : (double) falsePositives / negatives;
+    }
+
+    @Override
+    public String toString() {
+        return tableName + "." + columnName +
+                " entries=" + entries +
+                " memory=" + memoryBytes + "B" +
+                " expectedFpp=" + String.format(Locale.ROOT, "%.4f", expectedFalsePositiveRate) +
+                " observedFpp=" + String.format(Locale.ROOT, "%.4f", getObservedFalsePositiveRate()) +
+                " checks=" + checks +
+                " skipped=" + definiteMisses;
+    }
+
+}
@@ -0,0 +1,393 @@
+package com.jef.sqlite.management.cache;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory Bloom filters of the values of unique columns, used to skip uniqueness queries.
+ * <p>
+ * The filter of a column is built lazily the first time a value of the column is validated, by streaming
+ * the column once. Saves and updates add the written values to the existing filters. Deleted and overwritten
+ * values cannot be removed from a Bloom filter, they only increase the false positive rate, so a filter is
+ * dropped and rebuilt on the next validation once too many of its values are stale or it exceeds its capacity.
+ * Writes whose target columns are unknown drop the filters of the table.
+ * <p>
+ * The column is streamed without holding the lock of the filters, so saves of other tables do not wait for it.
+ * A filter is only published if no write to its table was recorded during the scan, otherwise the values are
+ * queried and the filter is built again on the next validation.
+ * <p>
+ * Numbers are compared by value, as SQLite compares them in numeric columns: a floating value is kept as its
+ * double value, and as an integer when it has no fraction, so 1.0E8, 100000000.0 and 100000000 are the same value.
+ * <p>
+ * The filters are disabled by default. All the methods are thread safe.
+ */
+public class UniqueValueFilters {
+
+    /**
+     * Minimum capacity of a filter, so small tables do not have to be rebuilt after a few inserts.
+     */
+    private static final int MIN_CAPACITY = 1024;
+
+    private final Map<String, Map<String, ColumnFilter>> tables = new HashMap<>();
+    private final Map<String, Long> generations = new HashMap<>();
+    private long epoch;
+    private volatile boolean enabled;
+    private double falsePositiveRate = 0.01;
+
+    /**
+     * Enables or disables the filters. Disabling them releases their memory.
+     *
+     * @param enabled true to enable the filters
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+
+        if (!enabled)
+            invalidateAll();
+    }
+
+    /**
+     * Checks if the filters are enabled.
+     *
+     * @return true if the filters are enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets the target false positive rate of the filters built from now on.
+     *
+     * @param falsePositiveRate The target false positive rate, between 0 and 1 exclusive
+     */
+    public synchronized void setFalsePositiveRate(double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * Checks if a value might exist in a unique column, building the filter of the column if needed.
+     *
+     * @param db The database used to build the filter
+     * @param tableName The table name
+     * @param columnName The unique column
+     * @param value The value as bound to SQL queries
+     * @return false if the value definitely does not exist, true if it might exist or the filters are disabled
+     */
+    public boolean mightExist(SQLiteDatabase db, String tableName, String columnName, String value) {
+        if (!enabled)
+            return true;
+
+        ColumnFilter filter = getOrBuild(db, tableName, columnName);
+        if (filter == null)
+            return true;
+
+        synchronized (this) {
+            filter.checks++;
+
+            if (filter.bloomFilter.mightContain(key(value)))
+                return true;
+
+            filter.definiteMisses++;
+            return false;
+        }
+    }
+
+    /**
+     * Records the result of a database query for a value that the filter reported as possibly existing.
+     *
+     * @param tableName The table name
+     * @param columnName The unique column
+     * @param exists true if the value exists in the table
+     */
+    public synchronized void recordQueryResult(String tableName, String columnName, boolean exists) {
+        ColumnFilter filter = getFilter(tableName, columnName);
+
+        if (filter != null && !exists)
+            filter.falsePositives++;
+    }
+
+    /**
+     * Adds the written values of a row to the filters of the table.
+     *
+     * @param tableName The table name
+     * @param values The written values, keyed by column
+     * @param overwrites true if the write may have replaced or updated existing rows
+     */
+    public synchronized void recordWrite(String tableName, ContentValues values, boolean overwrites) {
+        written(tableName);
+
+        Map<String, ColumnFilter> filters = tables.get(tableName);
+        if (filters == null)
+            return;
+
+        Iterator<ColumnFilter> iterator = filters.values().iterator();
+        while (iterator.hasNext()) {
+            ColumnFilter filter = iterator.next();
+
+            if (!values.containsKey(filter.columnName))
+                continue;
+
+            Object value = values.get(filter.columnName);
+            if (value != null)
+                filter.bloomFilter.add(key(value));
+
+            if (overwrites)
+                filter.staleEntries++;
+
+            if (filter.mustRebuild())
+                iterator.remove();
+        }
+    }
+
+    /**
+     * Records rows deleted from a table, their values become stale entries of the filters.
+     *
+     * @param tableName The table name
+     * @param deletedRows The number of deleted rows
+     */
+    public synchronized void recordDelete(String tableName, int deletedRows) {
+        written(tableName);
+
+        Map<String, ColumnFilter> filters = tables.get(tableName);
+        if (filters == null || deletedRows <= 0)
+            return;
+
+        Iterator<ColumnFilter> iterator = filters.values().iterator();
+        while (iterator.hasNext()) {
+            ColumnFilter filter = iterator.next();
+            filter.staleEntries += deletedRows;
+
+            if (filter.mustRebuild())
+                iterator.remove();
+        }
+    }
+
+    /**
+     * Drops the filters of a table, they are rebuilt on the next validation.
+     *
+     * @param tableName The table name
+     */
+    public synchronized void invalidate(String tableName) {
+        written(tableName);
+        tables.remove(tableName);
+    }
+
+    /**
+     * Drops the filters of every table, they are rebuilt on the next validation.
+     */
+    public synchronized void invalidateAll() {
+        epoch++;
+        tables.clear();
+    }
+
+    /**
+     * Gets the metrics of the filters built so far.
+     *
+     * @return A snapshot of the metrics of each filter
+     */
+    public synchronized List<UniqueFilterStats> getStats() {
+        List<UniqueFilterStats> stats = new ArrayList<>();
+
+        for (Map<String, ColumnFilter> filters : tables.values())
+            for (ColumnFilter filter : filters.values())
+                stats.add(new UniqueFilterStats(
+                        filter.tableName,
+                        filter.columnName,
+                        filter.bloomFilter.getEntries(),
+                        filter.bloomFilter.getMemoryBytes(),
+                        filter.bloomFilter.getExpectedFalsePositiveRate(),
+                        filter.checks,
+                        filter.definiteMisses,
+                        filter.falsePositives
+                ));
+
+        return stats;
+    }
+
+    /**
+     * Gets the memory used by all the filters.
+     *
+     * @return The size of the bit arrays in bytes
+     */
+    public synchronized long getMemoryBytes() {
+        long bytes = 0;
+
+        for (Map<String, ColumnFilter> filters : tables.values())
+            for (ColumnFilter filter : filters.values())
+                bytes += filter.bloomFilter.getMemoryBytes();
+
+        return bytes;
+    }
+
+    private ColumnFilter getFilter(String tableName, String columnName) {
+        Map<String, ColumnFilter> filters = tables.get(tableName);
+        return filters == null ? null : filters.get(columnName);
+    }
+
+    /**
+     * Counts a write to a table, a filter of the table being built during the write is not published.
+     */
+    private void written(String tableName) {
+        generations.merge(tableName, 1L, Long::sum);
+    }
+
+    /**
+     * Gets the number of writes recorded for a table, including the writes to every table.
+     */
+    private long generation(String tableName) {
+        Long generation = generations.get(tableName);
+        return epoch + (generation == null ? 0 : generation);
+    }
+
+    /**
+     * Gets the filter of a column, streaming the column to build it if it does not exist.
+     * The column is streamed without holding the lock.
+     *
+     * @param db The database
+     * @param tableName The table name
+     * @param columnName The unique column
+     * @return The filter of the column, or null if the table was written while it was built
+     */
+    private ColumnFilter getOrBuild(SQLiteDatabase db, String tableName, String columnName) {
+        long generation;
+        double falsePositiveRate;
+
+        synchronized (this) {
+            ColumnFilter filter = getFilter(tableName, columnName);
+            if (filter != null)
+                return filter;
+
+            generation = generation(tableName);
+            falsePositiveRate = this.falsePositiveRate;
+        }
+
+        SQLiteStatement count = db.compileStatement("SELECT COUNT(*) FROM " + tableName);
+        long rows;
+        try {
+            rows = count.simpleQueryForLong();
+        } finally {
+            count.close();
+        }
+
+        int capacity = (int) Math.min(Integer.MAX_VALUE / 2, Math.max(MIN_CAPACITY, rows * 2));
+        ColumnFilter built = new ColumnFilter(tableName, columnName, new BloomFilter(capacity, falsePositiveRate));
+
+        Cursor cursor = db.rawQuery("SELECT " + columnName + " FROM " + tableName + " WHERE " + columnName + " IS NOT NULL", null);
+        try {
+            while (cursor.moveToNext())
+                if (cursor.getType(0) == Cursor.FIELD_TYPE_FLOAT)
+                    built.bloomFilter.add(key(cursor.getDouble(0)));
+                else
+                    built.bloomFilter.add(key(cursor.getString(0)));
+        } finally {
+            cursor.close();
+        }
+
+        synchronized (this) {
+            // The values written during the scan may be missing from the filter
+            if (!enabled || generation(tableName) != generation)
+                return null;
+
+            ColumnFilter filter = getFilter(tableName, columnName);
+            if (filter != null)
+                return filter;
+
+            tables.computeIfAbsent(tableName, k -> new HashMap<>()).put(columnName, built);
+            return built;
+        }
+    }
+
+    /**
+     * Converts a written value to the key of the value stored in the column.
+     *
+     * @param value The written value
+     * @return The key of the value
+     */
+    private static String key(Object value) {
+        if (value instanceof Boolean)
+            return ((Boolean) value) ? "1" : "0";
+
+        // Floats are stored widened to double
+        if (value instanceof Float || value instanceof Double)
+            return key(((Number) value).doubleValue());
+
+        return key(value.toString());
+    }
+
+    /**
+     * Converts a value as bound to SQL queries, or as read from the column, to its key.
+     * A floating number is keyed by its double value.
+     *
+     * @param value The value as a string
+     * @return The key of the value
+     */
+    private static String key(String value) {
+        if (value.isEmpty() || (value.indexOf('.') < 0 && value.indexOf('e') < 0 && value.indexOf('E') < 0))
+            return value;
+
+        char first = value.charAt(0);
+        if (first != '-' && first != '+' && first != '.' && !Character.isDigit(first))
+            return value;
+
+        try {
+            return key(Double.parseDouble(value));
+        } catch (NumberFormatException e) {
+            return value;
+        }
+    }
+
+    /**
+     * Converts a floating value to its key, as an integer when it has no fraction.
+     *
+     * @param value The value
+     * @return The key of the value
+     */
+    private static String key(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 0x1p53)
+            return Long.toString((long) value);
+
+        return Double.toString(value);
+    }
+
+    /**
+     * Filter of a unique column with its counters.
+     */
+    private static class ColumnFilter {
+
+        private final String tableName;
+        private final String columnName;
+        private final BloomFilter bloomFilter;
+        private long staleEntries;
+        private long checks;
+        private long definiteMisses;
+        private long falsePositives;
+
+        ColumnFilter(String tableName, String columnName, BloomFilter bloomFilter) {
+            this.tableName = tableName;
+            this.columnName = columnName;
+            this.bloomFilter = bloomFilter;
+        }
+
+        /**
+         * Checks if the filter has exceeded its capacity or a quarter of its values are stale.
+         *
+         * @return true if the filter has to be rebuilt
+         */
+        boolean mustRebuild() {
+            return bloomFilter.getEntries() > bloomFilter.getCapacity() || staleEntries * 4 > bloomFilter.getEntries();
+        }
+
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.jef.sqlite.management.cache;
+
+import com.jef.sqlite.management.SQLiteManagement;
+import com.jef.sqlite.management.exceptions.SQLiteException;
+
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The cached data invalidated by the writes of a transaction of the library, to invalidate it again after the commit.
+ * <p>
+ * A write invalidates the caches as soon as it executes, but until its transaction commits the other connections
+ * still read the previous rows and may cache them again. saveAll and the batches of the write queue open a scope
+ * around their transaction: the writes executed in it record what they invalidated, and when the outermost scope
+ * ends, once the transaction is finished, the same entities and tables are invalidated again.
+ * <p>
+ * The scope also records the fields that the writes assign on the saved entities, such as generated keys.
+ * If the transaction of a scope rolls back, those fields get their previous values back, so a write executed
+ * again, like the writes of a failed batch, inserts the entity instead of upserting a key that was never committed.
+ * A write scope belongs to one thread and is not thread safe.
+ */
+public class WriteScope {
+
+    private final Map<Class<?>, Set<Long>> entities = new HashMap<>();
+    private final Set<String> entityTables = new LinkedHashSet<>();
+    private final Set<String> tables = new LinkedHashSet<>();
+    private final List<Assignment> assignments = new ArrayList<>();
+    private final Deque<Integer> marks = new ArrayDeque<>();
+    private boolean all;
+
+    /**
+     * Invalidates a cached entity and records it in the write scope of the current thread, if any.
+     *
+     * @param management The SQLiteManagement written
+     * @param entityClass The entity class
+     * @param key The primary key
+     */
+    public static void entityWritten(SQLiteManagement management, Class<?> entityClass, long key) {
+        management.getEntityCache().invalidate(entityClass, key);
+
+        WriteScope scope = management.getWriteScope();
+        if (scope != null)
+            scope.entities.computeIfAbsent(entityClass, k -> new HashSet<>()).add(key);
+    }
+
+    /**
+     * Invalidates every cached entity of a table and records it in the write scope of the current thread, if any.
+     *
+     * @param management The SQLiteManagement written
+     * @param tableName The table name
+     */
+    public static void entitiesWritten(SQLiteManagement management, String tableName) {
+        management.getEntityCache().invalidateTable(tableName);
+
+        WriteScope scope = management.getWriteScope();
+        if (scope != null)
+            scope.entityTables.add(tableName);
+    }
+
+    /**
+     * Invalidates the reference table and bumps the version of a written table,
+     * and records it in the write scope of the current thread, if any.
+     *
+     * @param management The SQLiteManagement written
+     * @param tableName The table name
+     */
+    public static void tableWritten(SQLiteManagement management, String tableName) {
+        management.getReferenceTables().invalidate(tableName);
+        management.getTableVersions().bump(tableName);
+
+        WriteScope scope = management.getWriteScope();
+        if (scope != null)
+            scope.tables.add(tableName);
+    }
+
+    /**
+     * Invalidates the cached data of every table and records it in the write scope of the current thread, if any,
+     * for the writes whose tables are unknown.
+     *
+     * @param management The SQLiteManagement written
+     */
+    public static void allWritten(SQLiteManagement management) {
+        management.getEntityCache().invalidateAll();
+        management.getReferenceTables().invalidateAll();
+        management.getTableVersions().bumpAll();
+
+        WriteScope scope = management.getWriteScope();
+        if (scope != null)
+            scope.all = true;
+    }
+
+    /**
+     * Records the value of an entity field that a write is about to assign, in the write scope of the
+     * current thread, if any.
+     *
+     * @param management The SQLiteManagement written
+     * @param entity The saved entity
+     * @param field The accessible field
+     * @throws SQLiteException If the field cannot be read
+     */
+    public static void fieldAssigned(SQLiteManagement management, Object entity, Field field) {
+        WriteScope scope = management.getWriteScope();
+        if (scope == null)
+            return;
+
+        try {
+            scope.assignments.add(new Assignment(entity, field, field.get(entity)));
+        } catch (IllegalAccessException e) {
+            throw new SQLiteException("Error accessing field " + field.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Enters a nested scope.
+     */
+    public void enter() {
+        marks.push(assignments.size());
+    }
+
+    /**
+     * Leaves a nested scope. If its transaction rolled back, the fields assigned in it get their previous values back.
+     *
+     * @param committed true if the transaction of the scope was committed, or marked successful when nested
+     * @return true if the outermost scope ended
+     */
+    public boolean exit(boolean committed) {
+        int mark = marks.isEmpty() ? 0 : marks.pop();
+
+        if (!committed)
+            for (int i = assignments.size() - 1; i >= mark; i--)
+                assignments.remove(i).restore();
+
+        return marks.isEmpty();
+    }
+
+    /**
+     * Invalidates again everything recorded in the scope.
+     *
+     * @param management The SQLiteManagement written
+     */
+    public void invalidate(SQLiteManagement management) {
+        if (all) {
+            management.getEntityCache().invalidateAll();
+            management.getReferenceTables().invalidateAll();
+            management.getTableVersions().bumpAll();
+            return;
+        }
+
+        EntityCache entityCache = management.getEntityCache();
+        for (Map.Entry<Class<?>, Set<Long>> entry : entities.entrySet())
+            for (long key : entry.getValue())
+                entityCache.invalidate(entry.getKey(), key);
+
+        for (String tableName : entityTables)
+            entityCache.invalidateTable(tableName);
+
+        for (String tableName : tables) {
+            management.getReferenceTables().invalidate(tableName);
+            management.getTableVersions().bump(tableName);
+        }
+    }
+
+    /**
+     * The previous value of a field assigned by a write.
+     */
+    private static class Assignment {
+
+        private final Object entity;
+        private final Field field;
+        private final Object previous;
+
+        Assignment(Object entity, Field field, Object previous) {
+            this.entity = entity;
+            this.field = field;
+            this.previous = previous;
+        }
+
+        void restore() {
+            try {
+                field.set(entity, previous);
+            } catch (IllegalAccessException e) {
+                throw new SQLiteException("Error accessing field " + field.getName() + ": " + e.getMessage(), e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.jef.sqlite.management.interfaces;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Anotación para mantener en memoria las entidades de una tabla, indexadas por su clave primaria.
+ * La caché se consulta en las búsquedas por clave primaria (findBy seguido del nombre del campo clave)
+ * y al resolver las relaciones {@link Join} cuyo campo fuente es la clave primaria.
+ * Cualquier guardado, actualización o eliminación de la tabla invalida las entradas afectadas.
+ * <p>
+ * La clave primaria debe ser de tipo entero (short, int o long). Las instancias en caché se comparten
+ * entre consultas, por lo que deben tratarse como de solo lectura.
+ *
+ * Ejemplo de uso:
+ * <pre>
+ * {@code
+ * @Table(name = "lines")
+ * @Cacheable(maxEntries = 100)
+ * public class Line { ... }
+ * }
+ * </pre>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Cacheable {
+
+    /**
+     * Número máximo de entidades en caché. Al superarlo se descarta la usada menos recientemente.
+     *
+     * @return El número máximo de entidades
+     */
+    int maxEntries() default 100;
+
+    /**
+     * Tiempo de vida de cada entidad en caché, en milisegundos. 0 indica que no expiran.
+     *
+     * @return El tiempo de vida en milisegundos
+     */
+    long ttl() default 0;
+
+}
@@ -0,0 +1,39 @@
+package com.jef.sqlite.management.interfaces;
+
+/**
+ * Estrategias para resolver conflictos de clave primaria o de restricciones UNIQUE al guardar entidades.
+ */
+public enum ConflictStrategy {
+
+    /**
+     * Si ya existe una fila con la misma clave primaria se actualizan sus columnas (INSERT ... ON CONFLICT DO UPDATE).
+     * Los conflictos en otras columnas únicas producen un error.
+     */
+    UPDATE,
+
+    /**
+     * Elimina las filas en conflicto e inserta la nueva fila (INSERT OR REPLACE).
+     */
+    REPLACE,
+
+    /**
+     * Ignora la fila si existe un conflicto (INSERT OR IGNORE). El guardado retorna -1.
+     */
+    IGNORE,
+
+    /**
+     * Aborta la sentencia actual y produce un error (INSERT OR ABORT).
+     */
+    ABORT,
+
+    /**
+     * Falla la sentencia actual conservando los cambios previos de la misma sentencia (INSERT OR FAIL).
+     */
+    FAIL,
+
+    /**
+     * Revierte la transacción completa y produce un error (INSERT OR ROLLBACK).
+     */
+    ROLLBACK
+
+}
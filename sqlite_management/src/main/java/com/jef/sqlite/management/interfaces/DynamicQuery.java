@@ -2,7 +2,9 @@ package com.jef.sqlite.management.interfaces;
 
 import com.jef.sqlite.management.exceptions.SQLiteException;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Interfaz para consultas dinámicas a la base de datos.
@@ -23,12 +25,24 @@ public interface DynamicQuery<T> {
     /**
      * Guarda una entidad en la base de datos. Si la entidad tiene un valor de clave primaria
      * y existe en la base de datos, se actualizará. De lo contrario, se insertará.
+     * La inserción o actualización se realiza en una sola sentencia (INSERT ... ON CONFLICT DO UPDATE).
+     * La estrategia de conflicto se puede cambiar con la anotación {@link OnConflict}.
      * 
      * @param entity La entidad a guardar
      * @return El ID de la fila insertada o actualizada en la base de datos
      */
     long save(T entity);
 
+    /**
+     * Guarda una colección de entidades en una sola transacción, insertando o actualizando cada una
+     * como lo hace {@link #save(Object)}. Si alguna entidad falla no se guarda ninguna.
+     * Las interfaces de consulta también pueden declarar este metodo con el nombre saveAll.
+     *
+     * @param entities Las entidades a guardar
+     * @return Los ID de las filas insertadas o actualizadas, en el orden de la colección
+     */
+    long[] upsertAll(Collection<T> entities);
+
 
     /**
      * Valida una entidad para asegurar que cumple con todas las restricciones de la base de datos.
@@ -57,4 +71,14 @@ public interface DynamicQuery<T> {
      */
     void validateOrThrow(T entity) throws SQLiteException;
 
+    /**
+     * Valida una colección de entidades con las mismas restricciones que {@link #validate(Object)}.
+     * La unicidad de cada columna se verifica para todo el lote con una sola consulta IN (...),
+     * y también se reportan los valores únicos repetidos dentro del lote.
+     *
+     * @param entities Las entidades a validar
+     * @return Las entidades no válidas con sus errores de validación, vacío si todas son válidas
+     */
+    Map<T, List<String>> validateAll(Collection<T> entities);
+
 }
@@ -0,0 +1,31 @@
+package com.jef.sqlite.management.interfaces;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Anotación para definir la estrategia de conflicto de los métodos de guardado de una interfaz de consulta.
+ * Se aplica a los métodos save, saveAll y upsertAll. Si no está presente se usa {@link ConflictStrategy#UPDATE}.
+ *
+ * Ejemplo de uso:
+ * <pre>
+ * {@code
+ * @OnConflict(ConflictStrategy.IGNORE)
+ * long save(Producto producto);
+ * }
+ * </pre>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface OnConflict {
+
+    /**
+     * La estrategia para resolver los conflictos.
+     *
+     * @return La estrategia de conflicto
+     */
+    ConflictStrategy value() default ConflictStrategy.UPDATE;
+
+}
@@ -0,0 +1,38 @@
+package com.jef.sqlite.management.interfaces;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Anotación para limitar el tiempo de ejecución de un método de búsqueda o de un {@link SQLiteQuery}
+ * que captura su resultado. Al vencer el tiempo la consulta se cancela, se libera la conexión y se lanza
+ * una {@link com.jef.sqlite.management.exceptions.SQLiteException}.
+ * <p>
+ * Los métodos de búsqueda también pueden recibir un {@link android.os.CancellationSignal} como último parámetro
+ * para cancelarlos desde otro hilo, por ejemplo al cerrar la pantalla que espera el resultado. Si el método
+ * también tiene un tiempo límite, al vencer se cancela esa misma señal.
+ *
+ * Ejemplo de uso:
+ * <pre>
+ * {@code
+ * @QueryTimeout(2000)
+ * List<Product> findAll();
+ *
+ * List<Product> findByActive(boolean active, CancellationSignal signal);
+ * }
+ * </pre>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface QueryTimeout {
+
+    /**
+     * Tiempo máximo de ejecución de la consulta, en milisegundos.
+     *
+     * @return El tiempo máximo en milisegundos
+     */
+    long value();
+
+}
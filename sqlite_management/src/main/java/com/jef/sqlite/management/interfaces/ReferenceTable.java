@@ -0,0 +1,31 @@
+package com.jef.sqlite.management.interfaces;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Anotación para mantener una tabla pequeña de consulta completamente en memoria.
+ * La tabla se carga completa en la primera lectura o al llamar a
+ * {@link com.jef.sqlite.management.SQLiteManagement#preloadReferenceTables()}, y las búsquedas por clave primaria,
+ * findAll y las relaciones {@link Join} hacia ella se resuelven sin consultar SQLite.
+ * Las escrituras realizadas por la biblioteca descartan la copia en memoria y la primera lectura posterior vuelve
+ * a cargar la tabla completa, por lo que conviene usarla solo para tablas que se modifican poco.
+ * <p>
+ * La clave primaria debe ser de tipo entero (short, int o long). Las instancias en memoria se comparten
+ * entre consultas, por lo que deben tratarse como de solo lectura.
+ *
+ * Ejemplo de uso:
+ * <pre>
+ * {@code
+ * @Table(name = "lines")
+ * @ReferenceTable
+ * public class Line { ... }
+ * }
+ * </pre>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ReferenceTable {
+}
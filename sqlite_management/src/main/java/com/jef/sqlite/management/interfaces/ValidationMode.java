@@ -0,0 +1,20 @@
+package com.jef.sqlite.management.interfaces;
+
+/**
+ * Modos de validación de las entidades al guardarlas con save, saveAll o upsertAll.
+ */
+public enum ValidationMode {
+
+    /**
+     * Antes de cada guardado se valida la entidad con una consulta de unicidad, como lo hace validateOrThrow.
+     * Cuesta una consulta adicional por entidad y la comprobación no es atómica con la escritura.
+     */
+    PRE_CHECK,
+
+    /**
+     * El guardado se basa en las restricciones NOT NULL y UNIQUE de la tabla, sin consultas previas.
+     * Las violaciones de restricciones se traducen al mismo mensaje detallado de la validación.
+     */
+    CONSTRAINT
+
+}
@@ -0,0 +1,302 @@
+package com.jef.sqlite.management.live;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.jef.sqlite.management.cache.TableVersions;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the tables changed by the writes of a SQLiteManagement and notifies the observers of those tables.
+ * <p>
+ * The write paths of the handlers report their table through {@link TableVersions}, which forwards every bump here.
+ * Raw writes of {@link com.jef.sqlite.management.interfaces.SQLiteQuery} methods may change other tables than the one
+ * in their SQL, through foreign key cascades or triggers, so they are wrapped in {@link #beginTrackedWrite(SQLiteDatabase)}
+ * and {@link #endTrackedWrite(SQLiteDatabase, boolean)}: temporary triggers on the observed tables flag every changed table in
+ * a temporary log table, which is read after the statement.
+ * <p>
+ * Observers are called on the thread of the write and must return quickly; {@link LiveQuery} only schedules its re-run
+ * on the executor of the tracker. All the methods are thread safe.
+ */
+public class InvalidationTracker implements TableVersions.ChangeListener {
+
+    /**
+     * Temporary table where the triggers flag the changed tables.
+     */
+    public static final String CHANGES_TABLE = "_management_changes";
+
+    /**
+     * Default delay between the first change and the re-run of a live query.
+     */
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 50;
+
+    private static final String[] TRIGGER_OPERATIONS = {"INSERT", "UPDATE", "DELETE"};
+
+    /**
+     * Observer of the changes of a set of tables.
+     */
+    public interface Observer {
+
+        /**
+         * Called after a write changed an observed table.
+         *
+         * @param tables The changed tables in lower case, empty if the changed tables are unknown
+         */
+        void onInvalidated(Set<String> tables);
+
+    }
+
+    /**
+     * Tables observed by each observer, an empty set observes every table.
+     */
+    private final Map<Observer, Set<String>> observers = new ConcurrentHashMap<>();
+
+    /**
+     * Number of observers of each table, the triggers are installed for these tables.
+     */
+    private final Map<String, Integer> observedTables = new HashMap<>();
+
+    /**
+     * Tables with triggers in the connection {@link #triggerDatabase}.
+     */
+    private final Set<String> triggerTables = new HashSet<>();
+    private SQLiteDatabase triggerDatabase;
+
+    private volatile long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+    private ScheduledExecutorService executor;
+
+    /**
+     * Adds an observer of a set of tables.
+     *
+     * @param tables The observed tables, null or empty to observe every table
+     * @param observer The observer
+     */
+    public void addObserver(Set<String> tables, Observer observer) {
+        Set<String> normalized = normalize(tables);
+
+        synchronized (observedTables) {
+            if (observers.put(observer, normalized) != null)
+                throw new IllegalArgumentException("Observer already added");
+
+            for (String table : normalized)
+                observedTables.merge(table, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Removes an observer.
+     *
+     * @param observer The observer
+     */
+    public void removeObserver(Observer observer) {
+        synchronized (observedTables) {
+            Set<String> tables = observers.remove(observer);
+            if (tables == null)
+                return;
+
+            // The triggers stay installed, they only flag a row of the temporary table
+            for (String table : tables)
+                observedTables.computeIfPresent(table, (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * Gets the number of registered observers.
+     *
+     * @return The number of observers
+     */
+    public int getObserverCount() {
+        return observers.size();
+    }
+
+    /**
+     * Sets the delay between the first change of a table and the re-run of the live queries that read it.
+     * The changes made during the delay are coalesced into a single re-run.
+     *
+     * @param debounceMillis The delay in milliseconds, 0 to re-run as soon as possible
+     */
+    public void setDebounceMillis(long debounceMillis) {
+        if (debounceMillis < 0)
+            throw new IllegalArgumentException("Debounce must not be negative: " + debounceMillis);
+
+        this.debounceMillis = debounceMillis;
+    }
+
+    public long getDebounceMillis() {
+        return debounceMillis;
+    }
+
+    @Override
+    public void onTableChanged(String tableName) {
+        Set<String> changed = Collections.singleton(tableName);
+
+        for (Map.Entry<Observer, Set<String>> entry : observers.entrySet())
+            if (entry.getValue().isEmpty() || entry.getValue().contains(tableName))
+                entry.getKey().onInvalidated(changed);
+    }
+
+    @Override
+    public void onAllTablesChanged() {
+        for (Observer observer : observers.keySet())
+            observer.onInvalidated(Collections.emptySet());
+    }
+
+    /**
+     * Prepares a raw write: installs the triggers of the observed tables in the connection and clears the change log.
+     * Must be called on the connection that executes the write, before the transaction of the write: the triggers
+     * are created in a transaction of their own, so a write that rolls back does not drop them. When the caller is
+     * already in a transaction they are created in it and created again by the next write, since they only exist
+     * if that transaction commits.
+     *
+     * @param db The writable database
+     * @return true if the write is tracked and must be ended with {@link #endTrackedWrite(SQLiteDatabase, boolean)}
+     */
+    public boolean beginTrackedWrite(SQLiteDatabase db) {
+        Set<String> tables;
+        synchronized (observedTables) {
+            tables = new HashSet<>(observedTables.keySet());
+        }
+
+        if (tables.isEmpty())
+            return false;
+
+        boolean tracked;
+        synchronized (triggerTables) {
+            // Temporary objects belong to a connection, a reopened database needs them again
+            if (db != triggerDatabase) {
+                triggerDatabase = db;
+                triggerTables.clear();
+            }
+
+            tables.removeAll(triggerTables);
+            boolean installed = !tables.isEmpty() && installTriggers(db, tables);
+            tracked = installed || !triggerTables.isEmpty();
+        }
+
+        if (tracked)
+            db.execSQL("UPDATE " + CHANGES_TABLE + " SET invalidated = 0 WHERE invalidated = 1");
+
+        return tracked;
+    }
+
+    /**
+     * Reads the tables flagged by the triggers since {@link #beginTrackedWrite(SQLiteDatabase)}.
+     * The caller reports them through {@link TableVersions}, which notifies the observers.
+     *
+     * @param db The writable database used for the write
+     * @param tracked The value returned by {@link #beginTrackedWrite(SQLiteDatabase)}
+     * @return A modifiable set with the changed tables in lower case
+     */
+    public Set<String> endTrackedWrite(SQLiteDatabase db, boolean tracked) {
+        Set<String> changed = new HashSet<>();
+        if (!tracked)
+            return changed;
+
+        try (Cursor cursor = db.rawQuery("SELECT table_name FROM " + CHANGES_TABLE + " WHERE invalidated = 1", null)) {
+            while (cursor.moveToNext())
+                changed.add(cursor.getString(0));
+        }
+
+        return changed;
+    }
+
+    /**
+     * Schedules a task on the executor of the live queries.
+     *
+     * @param task The task
+     * @param delayMillis The delay in milliseconds
+     */
+    void schedule(Runnable task, long delayMillis) {
+        executor().schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized ScheduledExecutorService executor() {
+        if (executor == null) {
+            ScheduledThreadPoolExecutor threadPool = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "sqlite-live-query");
+                thread.setDaemon(true);
+                return thread;
+            });
+            threadPool.setRemoveOnCancelPolicy(true);
+            executor = threadPool;
+        }
+
+        return executor;
+    }
+
+    /**
+     * Installs the change log and the triggers of the tables without them, in a transaction of their own when the
+     * caller is not in one. The tables are remembered as installed only when that transaction commits.
+     * Must be called holding the lock of {@link #triggerTables}.
+     *
+     * @return true if the triggers of at least one table exist for the write
+     */
+    private boolean installTriggers(SQLiteDatabase db, Set<String> tables) {
+        boolean ownTransaction = !db.inTransaction();
+        Set<String> installed = new HashSet<>();
+
+        if (ownTransaction)
+            db.beginTransaction();
+        try {
+            db.execSQL("CREATE TEMP TABLE IF NOT EXISTS " + CHANGES_TABLE +
+                    " (table_name TEXT PRIMARY KEY, invalidated INTEGER NOT NULL DEFAULT 0)");
+
+            for (String table : tables)
+                if (installTriggers(db, table))
+                    installed.add(table);
+
+            if (ownTransaction)
+                db.setTransactionSuccessful();
+        } finally {
+            if (ownTransaction)
+                db.endTransaction();
+        }
+
+        if (ownTransaction)
+            triggerTables.addAll(installed);
+
+        return !installed.isEmpty();
+    }
+
+    /**
+     * Installs the triggers that flag the changes of a table.
+     *
+     * @return false if the triggers could not be created, for example because the table does not exist yet
+     */
+    private boolean installTriggers(SQLiteDatabase db, String table) {
+        try {
+            db.execSQL("INSERT OR IGNORE INTO " + CHANGES_TABLE + " (table_name) VALUES ('" + table + "')");
+
+            for (String operation : TRIGGER_OPERATIONS)
+                db.execSQL("CREATE TEMP TRIGGER IF NOT EXISTS `" + CHANGES_TABLE + "_" + table + "_" + operation.toLowerCase(Locale.ROOT) +
+                        "` AFTER " + operation + " ON `" + table + "` BEGIN UPDATE " + CHANGES_TABLE +
+                        " SET invalidated = 1 WHERE table_name = '" + table + "' AND invalidated = 0; END");
+
+            return true;
+        } catch (android.database.sqlite.SQLiteException e) {
+            return false;
+        }
+    }
+
+    private static Set<String> normalize(Set<String> tables) {
+        if (tables == null || tables.isEmpty())
+            return Collections.emptySet();
+
+        Set<String> normalized = new HashSet<>();
+        for (String table : tables)
+            normalized.add(table.toLowerCase(Locale.ROOT));
+
+        return Collections.unmodifiableSet(normalized);
+    }
+
+}
@@ -0,0 +1,227 @@
+package com.jef.sqlite.management.live;
+
+import com.jef.sqlite.management.cache.TableVersions;
+import com.jef.sqlite.management.exceptions.SQLiteException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Result of a query that is re-run when the tables it reads change.
+ * <p>
+ * A query interface method returns a live query by declaring {@code LiveQuery<List<T>>} or {@code LiveQuery<Optional<T>>}.
+ * The query runs when the first observer is added and again, on the executor of the {@link InvalidationTracker},
+ * after a write changes one of its tables. Changes made during the debounce delay of the tracker, or while
+ * the query is running, are coalesced into a single re-run, and a re-run is skipped if the versions of its
+ * tables did not change since the last run.
+ *
+ * <pre>
+ * {@code
+ * // In the query interface: LiveQuery<List<Product>> findByActive(boolean active);
+ * LiveQuery<List<Product>> products = productQuery.findByActive(true);
+ * LiveQuery.Observer<List<Product>> observer = list -> adapter.submitList(list);
+ * products.observe(mainExecutor, observer);
+ * ...
+ * products.removeObserver(observer);
+ * }
+ * </pre>
+ *
+ * @param <R> The type of the result
+ */
+public class LiveQuery<R> {
+
+    /**
+     * Receives the results of a live query.
+     *
+     * @param <R> The type of the result
+     */
+    public interface Observer<R> {
+
+        /**
+         * Called with the first result and with every result after a change.
+         *
+         * @param result The result of the query
+         */
+        void onChanged(R result);
+
+        /**
+         * Called when a run of the query fails. The query runs again on the next change.
+         *
+         * @param e The error
+         */
+        default void onError(SQLiteException e) {
+        }
+
+    }
+
+    private static final Executor DIRECT = Runnable::run;
+
+    private final InvalidationTracker tracker;
+    private final TableVersions tableVersions;
+    private final Set<String> tableSet;
+    private final String[] tables;
+    private final Supplier<R> query;
+    private final InvalidationTracker.Observer trackerObserver = changed -> invalidate();
+    private final Map<Observer<R>, Executor> observers = new LinkedHashMap<>();
+
+    private boolean scheduled;
+    private boolean hasResult;
+    private R result;
+    private long[] versions;
+
+    /**
+     * @param tracker The invalidation tracker of the management
+     * @param tableVersions The version counters of the tables
+     * @param tables The tables read by the query, or null if they are unknown and every change re-runs it
+     * @param query The query
+     */
+    public LiveQuery(InvalidationTracker tracker, TableVersions tableVersions, Set<String> tables, Supplier<R> query) {
+        this.tracker = tracker;
+        this.tableVersions = tableVersions;
+        this.tableSet = tables;
+        this.tables = tables == null ? null : tables.toArray(new String[0]);
+        this.query = query;
+    }
+
+    /**
+     * Adds an observer called on the executor of the tracker.
+     *
+     * @param observer The observer
+     */
+    public void observe(Observer<R> observer) {
+        observe(DIRECT, observer);
+    }
+
+    /**
+     * Adds an observer called on an executor, for example the main thread executor.
+     * If the query already has a result, the observer receives it right away.
+     *
+     * @param executor The executor of the callbacks
+     * @param observer The observer
+     */
+    public void observe(Executor executor, Observer<R> observer) {
+        boolean first;
+        R current;
+        boolean deliver;
+
+        synchronized (this) {
+            if (observers.containsKey(observer))
+                throw new IllegalArgumentException("Observer already added");
+
+            first = observers.isEmpty();
+            observers.put(observer, executor);
+            current = result;
+            deliver = hasResult && !first;
+        }
+
+        if (first) {
+            tracker.addObserver(tableSet, trackerObserver);
+            invalidate();
+        } else if (deliver) {
+            executor.execute(() -> observer.onChanged(current));
+        }
+    }
+
+    /**
+     * Removes an observer. When the last observer is removed the query stops observing its tables.
+     *
+     * @param observer The observer
+     */
+    public void removeObserver(Observer<R> observer) {
+        synchronized (this) {
+            if (observers.remove(observer) == null || !observers.isEmpty())
+                return;
+
+            // The next observer runs the query again
+            hasResult = false;
+            versions = null;
+        }
+
+        tracker.removeObserver(trackerObserver);
+    }
+
+    /**
+     * Checks if the query has observers.
+     *
+     * @return true if the query is observing its tables
+     */
+    public synchronized boolean hasObservers() {
+        return !observers.isEmpty();
+    }
+
+    /**
+     * Gets the last result of the query.
+     *
+     * @return The last result, or null if the query has not run yet
+     */
+    public synchronized R getValue() {
+        return result;
+    }
+
+    /**
+     * Schedules a run of the query, unless one is already scheduled.
+     */
+    private void invalidate() {
+        synchronized (this) {
+            if (scheduled || observers.isEmpty())
+                return;
+
+            scheduled = true;
+        }
+
+        tracker.schedule(this::run, hasResult() ? tracker.getDebounceMillis() : 0);
+    }
+
+    private synchronized boolean hasResult() {
+        return hasResult;
+    }
+
+    private void run() {
+        long[] previous;
+        synchronized (this) {
+            // A change from now on schedules another run
+            scheduled = false;
+            if (observers.isEmpty())
+                return;
+
+            previous = versions;
+        }
+
+        // Unknown tables cannot be versioned, a change of any table re-runs the query
+        if (tables != null && previous != null && tableVersions.isCurrent(tables, previous))
+            return;
+
+        long[] current = tables == null ? null : tableVersions.snapshot(tables);
+        R value;
+        try {
+            value = query.get();
+        } catch (SQLiteException e) {
+            for (Map.Entry<Observer<R>, Executor> entry : observers())
+                entry.getValue().execute(() -> entry.getKey().onError(e));
+
+            return;
+        }
+
+        synchronized (this) {
+            if (observers.isEmpty())
+                return;
+
+            result = value;
+            hasResult = true;
+            versions = current;
+        }
+
+        for (Map.Entry<Observer<R>, Executor> entry : observers())
+            entry.getValue().execute(() -> entry.getKey().onChanged(value));
+    }
+
+    private synchronized List<Map.Entry<Observer<R>, Executor>> observers() {
+        return new ArrayList<>(observers.entrySet());
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.jef.sqlite.management.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Listener that keeps a {@link LatencyHistogram} of the wall time of every query method, plus its row and join query totals.
+ * <p>
+ * Register it with {@link com.jef.sqlite.management.SQLiteManagement#addQueryMetricsListener(QueryMetricsListener)}
+ * and dump it with {@link #toText()}, for example from a debug screen or a bug report.
+ */
+public class HistogramMetricsListener implements QueryMetricsListener {
+
+    private final ConcurrentHashMap<String, MethodStats> methods = new ConcurrentHashMap<>();
+
+    @Override
+    public void onQuery(QueryMetrics metrics) {
+        MethodStats stats = methods.computeIfAbsent(metrics.getMethodName(), name -> new MethodStats());
+        stats.latency.record(metrics.getTotalNanos());
+        stats.rows.addAndGet(metrics.getRowCount());
+        stats.joinQueries.addAndGet(metrics.getJoinQueryCount());
+        if (metrics.getError() != null)
+            stats.errors.incrementAndGet();
+    }
+
+    /**
+     * Gets the histogram of a method.
+     *
+     * @param methodName The method name with the simple name of its interface, for example "ProductQuery.findByName"
+     * @return The histogram, or null if the method was not called
+     */
+    public LatencyHistogram getHistogram(String methodName) {
+        MethodStats stats = methods.get(methodName);
+        return stats == null ? null : stats.latency;
+    }
+
+    /**
+     * Gets the histograms of all the methods called.
+     *
+     * @return The histograms keyed by method name, sorted by name
+     */
+    public Map<String, LatencyHistogram> getHistograms() {
+        Map<String, LatencyHistogram> histograms = new TreeMap<>();
+        for (Map.Entry<String, MethodStats> entry : methods.entrySet())
+            histograms.put(entry.getKey(), entry.getValue().latency);
+
+        return histograms;
+    }
+
+    /**
+     * Clears the statistics of all the methods.
+     */
+    public void reset() {
+        methods.clear();
+    }
+
+    /**
+     * Formats the statistics of every method, one per line sorted by name, with latencies in milliseconds.
+     * For example: "ProductQuery.findByName count=12 mean=0.812 p50=0.750 ... max=2.100 rows=48 joins=48 errors=0"
+     *
+     * @return The statistics
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, MethodStats> entry : new TreeMap<>(methods).entrySet()) {
+            MethodStats stats = entry.getValue();
+            text.append(entry.getKey()).append(' ').append(stats.latency.toText())
+                    .append(" rows=").append(stats.rows.get())
+                    .append(" joins=").append(stats.joinQueries.get())
+                    .append(" errors=").append(stats.errors.get())
+                    .append('\n');
+        }
+
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+
+    private static class MethodStats {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong joinQueries = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+
+    }
+
+}
@@ -0,0 +1,200 @@
+package com.jef.sqlite.management.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies with a bounded relative error, in the style of HdrHistogram.
+ * <p>
+ * Values are counted in log-linear buckets: every power of two is split into {@link #SUB_BUCKETS} linear buckets,
+ * so a recorded value and the value reported for it differ by less than 1 / {@value #SUB_BUCKETS} (about 3%),
+ * from one nanosecond up to {@link #MAX_TRACKABLE_NANOS}. Larger values are counted as the maximum.
+ * Recording is a single atomic increment plus the updates of the totals, so it can be called from any thread
+ * without locks. Reading while other threads record returns an approximate, not atomic, view.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * Linear buckets per power of two.
+     */
+    public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Largest value tracked with the histogram precision, about 18 minutes.
+     */
+    public static final long MAX_TRACKABLE_NANOS = (1L << 40) - 1;
+
+    private static final double[] DUMP_PERCENTILES = { 50, 75, 90, 95, 99, 99.9, 100 };
+
+    private final AtomicLongArray counts = new AtomicLongArray(bucketIndex(MAX_TRACKABLE_NANOS) + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos The latency in nanoseconds, negative values are counted as 0
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_TRACKABLE_NANOS);
+
+        counts.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long current;
+        while (value < (current = min.get()) && !min.compareAndSet(current, value));
+        while (value > (current = max.get()) && !max.compareAndSet(current, value));
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return The smallest recorded value, 0 if nothing was recorded
+     */
+    public long getMinNanos() {
+        return count.get() == 0 ? 0 : min.get();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    public double getMeanNanos() {
+        long total = count.get();
+        return total == 0 ? 0 : (double) sum.get() / total;
+    }
+
+    /**
+     * Gets the value below which a percentage of the recorded values fall.
+     *
+     * @param percentile The percentile, from 0 to 100
+     * @return The highest value of the bucket of the percentile, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+
+        long total = count.get();
+        if (total == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long accumulated = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            accumulated += counts.get(i);
+            if (accumulated >= target)
+                return Math.min(highestValue(i), max.get());
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Clears the histogram. Values recorded while it is cleared may be lost.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++)
+            counts.set(i, 0);
+
+        count.set(0);
+        sum.set(0);
+        min.set(Long.MAX_VALUE);
+        max.set(0);
+    }
+
+    /**
+     * Formats the count, mean and percentiles of the histogram, in milliseconds.
+     * For example: "count=120 mean=1.250 p50=0.984 p75=1.312 p90=2.100 p95=2.625 p99=5.250 p99.9=8.125 max=8.300"
+     *
+     * @return The summary
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        text.append("count=").append(getCount())
+                .append(" mean=").append(millis(getMeanNanos()));
+
+        for (double percentile : DUMP_PERCENTILES) {
+            text.append(percentile == 100 ? " max=" : " p" + formatPercentile(percentile) + "=")
+                    .append(millis(percentile == 100 ? getMaxNanos() : getValueAtPercentile(percentile)));
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Formats the non empty buckets of the histogram, one per line with its upper bound in milliseconds,
+     * its count and the cumulative percentage.
+     *
+     * @return The distribution
+     */
+    public String toDistributionText() {
+        StringBuilder text = new StringBuilder();
+        long total = count.get();
+        long accumulated = 0;
+
+        for (int i = 0; i < counts.length(); i++) {
+            long bucketCount = counts.get(i);
+            if (bucketCount == 0)
+                continue;
+
+            accumulated += bucketCount;
+            text.append(String.format(Locale.ROOT, "%12s %10d %8.3f%%%n",
+                    millis(highestValue(i)), bucketCount, total == 0 ? 0 : accumulated * 100.0 / total));
+        }
+
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+
+    /**
+     * Gets the bucket of a value: values below two sub-bucket ranges map to themselves, larger values keep
+     * their {@link #SUB_BUCKET_BITS} + 1 most significant bits.
+     */
+    static int bucketIndex(long value) {
+        if (value < 2 * SUB_BUCKETS)
+            return (int) value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * Gets the lowest value of a bucket.
+     */
+    static long lowestValue(int index) {
+        if (index < 2 * SUB_BUCKETS)
+            return index;
+
+        int shift = index / SUB_BUCKETS - 1;
+        return ((long) (index % SUB_BUCKETS + SUB_BUCKETS)) << shift;
+    }
+
+    /**
+     * Gets the highest value of a bucket.
+     */
+    static long highestValue(int index) {
+        return lowestValue(index + 1) - 1;
+    }
+
+    private static String millis(double nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+}
@@ -0,0 +1,244 @@
+package com.jef.sqlite.management.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics listener that detects N+1 loading of {@link com.jef.sqlite.management.interfaces.Join} fields.
+ * <p>
+ * A query that returns N rows and loads a join field with one query per row issues N + 1 queries. The detector
+ * compares the join queries issued for every field under a query method call with the rows the call returned,
+ * and reports a {@link Warning} when a field reaches {@link #setMinJoinQueries(int) a minimum number of queries}
+ * and {@link #setMaxJoinQueriesPerRow(double) a ratio of queries per row}. Such fields are candidates for a
+ * {@link com.jef.sqlite.management.interfaces.ReferenceTable}, the entity cache or a custom query with a JOIN.
+ * <p>
+ * Warnings are aggregated by field into {@link Hotspot hotspots} and passed to the {@link Listener} of the detector.
+ * In production the detector can run on a sample of the calls with
+ * {@link QueryMetricsCollector#setSampleRate(double)}. All the methods are thread safe.
+ */
+public class NPlusOneDetector implements QueryMetricsListener {
+
+    /**
+     * Default number of join queries of a field under one call from which it is checked.
+     */
+    public static final int DEFAULT_MIN_JOIN_QUERIES = 10;
+
+    /**
+     * Default ratio of join queries per returned row from which a field is reported.
+     */
+    public static final double DEFAULT_MAX_JOIN_QUERIES_PER_ROW = 0.5;
+
+    private final ConcurrentHashMap<String, Hotspot> hotspots = new ConcurrentHashMap<>();
+
+    private volatile int minJoinQueries = DEFAULT_MIN_JOIN_QUERIES;
+    private volatile double maxJoinQueriesPerRow = DEFAULT_MAX_JOIN_QUERIES_PER_ROW;
+    private volatile Listener listener;
+
+    /**
+     * Sets the number of join queries of a field under one call from which it is checked,
+     * so lookups of a few rows like findById are not reported.
+     *
+     * @param minJoinQueries The number of queries
+     */
+    public void setMinJoinQueries(int minJoinQueries) {
+        if (minJoinQueries < 1)
+            throw new IllegalArgumentException("Min join queries must be positive: " + minJoinQueries);
+
+        this.minJoinQueries = minJoinQueries;
+    }
+
+    public int getMinJoinQueries() {
+        return minJoinQueries;
+    }
+
+    /**
+     * Sets the ratio of join queries per returned row from which a field is reported.
+     *
+     * @param maxJoinQueriesPerRow The ratio, 1 reports only the fields loaded with one query per row
+     */
+    public void setMaxJoinQueriesPerRow(double maxJoinQueriesPerRow) {
+        if (maxJoinQueriesPerRow <= 0)
+            throw new IllegalArgumentException("Max join queries per row must be positive: " + maxJoinQueriesPerRow);
+
+        this.maxJoinQueriesPerRow = maxJoinQueriesPerRow;
+    }
+
+    public double getMaxJoinQueriesPerRow() {
+        return maxJoinQueriesPerRow;
+    }
+
+    /**
+     * Sets the listener that receives every warning, for example to send it to the log of the application.
+     *
+     * @param listener The listener, or null to only aggregate the hotspots
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void onQuery(QueryMetrics metrics) {
+        if (metrics.getJoinQueryCount() < minJoinQueries)
+            return;
+
+        int rows = Math.max(metrics.getRowCount(), 1);
+        for (Map.Entry<String, Integer> entry : metrics.getJoinQueriesByField().entrySet()) {
+            int joinQueries = entry.getValue();
+            if (joinQueries < minJoinQueries || (double) joinQueries / rows < maxJoinQueriesPerRow)
+                continue;
+
+            Warning warning = new Warning(metrics.getMethodName(), entry.getKey(), joinQueries, metrics.getRowCount());
+            hotspots.computeIfAbsent(entry.getKey(), Hotspot::new).record(warning);
+
+            Listener current = listener;
+            if (current != null)
+                current.onNPlusOne(warning);
+        }
+    }
+
+    /**
+     * @return The fields reported so far, the one with most join queries first
+     */
+    public List<Hotspot> getHotspots() {
+        List<Hotspot> sorted = new ArrayList<>(hotspots.values());
+        sorted.sort(Comparator.comparingLong(Hotspot::getJoinQueries).reversed());
+        return sorted;
+    }
+
+    public void clear() {
+        hotspots.clear();
+    }
+
+    /**
+     * Formats the hotspots, one per line.
+     *
+     * @return The hotspots
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        for (Hotspot hotspot : getHotspots())
+            text.append(hotspot).append('\n');
+
+        return text.toString();
+    }
+
+    /**
+     * Receives the warnings of a detector.
+     */
+    public interface Listener {
+
+        /**
+         * Called on the thread that executed the query.
+         *
+         * @param warning The warning
+         */
+        void onNPlusOne(Warning warning);
+
+    }
+
+    /**
+     * A join field loaded with too many queries under one call.
+     */
+    public static class Warning {
+
+        private final String methodName;
+        private final String field;
+        private final int joinQueries;
+        private final int rows;
+
+        Warning(String methodName, String field, int joinQueries, int rows) {
+            this.methodName = methodName;
+            this.field = field;
+            this.joinQueries = joinQueries;
+            this.rows = rows;
+        }
+
+        /**
+         * @return The query method called, for example "ProductQuery.findAll"
+         */
+        public String getMethodName() {
+            return methodName;
+        }
+
+        /**
+         * @return The simple name of the entity and the name of the join field, for example "Product.line"
+         */
+        public String getField() {
+            return field;
+        }
+
+        public int getJoinQueries() {
+            return joinQueries;
+        }
+
+        /**
+         * @return The rows returned by the call
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        @Override
+        public String toString() {
+            return "N+1 loading of " + field + " in " + methodName + ": " + joinQueries + " join queries for " + rows + " rows";
+        }
+
+    }
+
+    /**
+     * The warnings of a join field, aggregated.
+     */
+    public static class Hotspot {
+
+        private final String field;
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong joinQueries = new AtomicLong();
+        private final Map<String, Boolean> methodNames = new ConcurrentHashMap<>();
+
+        Hotspot(String field) {
+            this.field = field;
+        }
+
+        void record(Warning warning) {
+            calls.incrementAndGet();
+            joinQueries.addAndGet(warning.getJoinQueries());
+            methodNames.put(warning.getMethodName(), Boolean.TRUE);
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        /**
+         * @return The number of calls reported for the field
+         */
+        public long getCalls() {
+            return calls.get();
+        }
+
+        /**
+         * @return The join queries issued by the reported calls
+         */
+        public long getJoinQueries() {
+            return joinQueries.get();
+        }
+
+        /**
+         * @return The query methods that loaded the field with too many queries
+         */
+        public List<String> getMethodNames() {
+            return new ArrayList<>(methodNames.keySet());
+        }
+
+        @Override
+        public String toString() {
+            return field + " calls=" + getCalls() + " joinQueries=" + getJoinQueries() + " methods=" + getMethodNames();
+        }
+
+    }
+
+}
@@ -0,0 +1,249 @@
+package com.jef.sqlite.management.metrics;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of one call to a query method.
+ * <p>
+ * The wall time of the call is split into the time waiting for a connection, preparing the statements,
+ * executing them and mapping the rows to entities. Join queries run while mapping a row, so their time is part
+ * of the mapping time and they are counted apart, by entity field.
+ * <p>
+ * An instance is filled by the handlers on the thread that executes the query and passed to the
+ * {@link QueryMetricsListener listeners} once the call finished. It is not thread safe.
+ */
+public class QueryMetrics {
+
+    private final Class<?> queryInterface;
+    private final Method method;
+    private final long startNanos;
+
+    private String sql;
+    private String[] arguments;
+    private int statementCount;
+    private long connectionWaitNanos;
+    private long prepareNanos;
+    private long executeNanos;
+    private long mapNanos;
+    private long totalNanos;
+    private int rowCount;
+    private int joinQueryCount;
+    private Map<String, Integer> joinQueriesByField;
+    private Throwable error;
+
+    /**
+     * @param queryInterface The query interface of the proxy called
+     * @param method The query method called, may be declared by a parent interface like DynamicQuery
+     */
+    public QueryMetrics(Class<?> queryInterface, Method method) {
+        this.queryInterface = queryInterface;
+        this.method = method;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Records a statement prepared for a read.
+     *
+     * @param sql The SQL of the statement
+     * @param arguments The arguments bound to the statement
+     * @param since The time the preparation started, from {@link System#nanoTime()}
+     * @return The current time, the start of the next stage
+     */
+    public long prepared(String sql, String[] arguments, long since) {
+        statement(sql, arguments);
+
+        long now = System.nanoTime();
+        prepareNanos += now - since;
+        return now;
+    }
+
+    /**
+     * Records the time spent executing a statement or fetching its rows.
+     *
+     * @param since The time the execution started, from {@link System#nanoTime()}
+     * @return The current time, the start of the next stage
+     */
+    public long executed(long since) {
+        long now = System.nanoTime();
+        executeNanos += now - since;
+        return now;
+    }
+
+    /**
+     * Records a row mapped to an entity.
+     *
+     * @param since The time the mapping started, from {@link System#nanoTime()}
+     * @return The current time, the start of the next stage
+     */
+    public long mapped(long since) {
+        long now = System.nanoTime();
+        mapNanos += now - since;
+        rowCount++;
+        return now;
+    }
+
+    /**
+     * Records a write statement.
+     *
+     * @param sql The SQL of the statement, or a description when it is generated by Android
+     * @param arguments The arguments bound to the statement, or null if they are unknown
+     * @param since The time the execution started, from {@link System#nanoTime()}
+     * @param rows The number of rows written
+     */
+    public void written(String sql, String[] arguments, long since, int rows) {
+        statement(sql, arguments);
+        executed(since);
+        rowCount += rows;
+    }
+
+    /**
+     * Records a query issued to load a field annotated with {@link com.jef.sqlite.management.interfaces.Join}.
+     *
+     * @param field The join field
+     */
+    public void joinQuery(Field field) {
+        joinQueryCount++;
+
+        if (joinQueriesByField == null)
+            joinQueriesByField = new LinkedHashMap<>();
+
+        joinQueriesByField.merge(field.getDeclaringClass().getSimpleName() + "." + field.getName(), 1, Integer::sum);
+    }
+
+    /**
+     * Records the time spent acquiring a connection.
+     *
+     * @param since The time the acquisition started, from {@link System#nanoTime()}
+     */
+    public void connectionAcquired(long since) {
+        connectionWaitNanos += System.nanoTime() - since;
+    }
+
+    /**
+     * Finishes the call.
+     *
+     * @param error The error of the call, or null if it succeeded
+     */
+    public void finish(Throwable error) {
+        this.totalNanos = System.nanoTime() - startNanos;
+        this.error = error;
+    }
+
+    private void statement(String sql, String[] arguments) {
+        // The first statement of the call is the one generated for the method, the following ones are secondary
+        if (statementCount++ == 0) {
+            this.sql = sql;
+            this.arguments = arguments;
+        }
+    }
+
+    public Class<?> getQueryInterface() {
+        return queryInterface;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return The name of the method with the simple name of the query interface, for example "ProductQuery.findByName",
+     * also for the methods inherited from DynamicQuery like "ProductQuery.save"
+     */
+    public String getMethodName() {
+        return queryInterface.getSimpleName() + "." + method.getName();
+    }
+
+    /**
+     * @return The SQL of the first statement of the call, or null if it did not reach the database
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return The arguments of the first statement, or null if they are unknown
+     */
+    public String[] getArguments() {
+        return arguments;
+    }
+
+    /**
+     * @return The number of statements executed by the call, not counting the join queries
+     */
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    public long getConnectionWaitNanos() {
+        return connectionWaitNanos;
+    }
+
+    public long getPrepareNanos() {
+        return prepareNanos;
+    }
+
+    public long getExecuteNanos() {
+        return executeNanos;
+    }
+
+    /**
+     * @return The time spent mapping rows to entities, including the join queries
+     */
+    public long getMapNanos() {
+        return mapNanos;
+    }
+
+    /**
+     * @return The wall time of the call
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+    }
+
+    /**
+     * @return The rows returned by a read or written by a write
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getJoinQueryCount() {
+        return joinQueryCount;
+    }
+
+    /**
+     * @return The join queries issued by field, keyed by the simple name of the entity and the field name,
+     * for example "Product.line"
+     */
+    public Map<String, Integer> getJoinQueriesByField() {
+        return joinQueriesByField == null ? Collections.emptyMap() : Collections.unmodifiableMap(joinQueriesByField);
+    }
+
+    /**
+     * @return The error of the call, or null if it succeeded
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return getMethodName() + " " + TimeUnit.NANOSECONDS.toMicros(totalNanos) + "us" +
+                " (wait " + TimeUnit.NANOSECONDS.toMicros(connectionWaitNanos) + "us" +
+                ", prepare " + TimeUnit.NANOSECONDS.toMicros(prepareNanos) + "us" +
+                ", execute " + TimeUnit.NANOSECONDS.toMicros(executeNanos) + "us" +
+                ", map " + TimeUnit.NANOSECONDS.toMicros(mapNanos) + "us" +
+                ", rows " + rowCount + ", joins " + joinQueryCount + ")" +
+                (error != null ? " failed: " + error.getMessage() : "");
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.jef.sqlite.management.metrics;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Collects the metrics of the query method calls and passes them to the registered listeners.
+ * <p>
+ * Without listeners nothing is measured: {@link #current()} returns null and the handlers skip their measurements.
+ * In production only {@link #setSampleRate(double) a fraction} of the calls can be measured.
+ * A call made while another call of the same thread is measured, like a query issued by a write,
+ * is part of the metrics of the outer call. All the methods are thread safe.
+ */
+public class QueryMetricsCollector {
+
+    private final CopyOnWriteArrayList<QueryMetricsListener> listeners = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<QueryMetrics> current = new ThreadLocal<>();
+    private volatile double sampleRate = 1;
+
+    public void addListener(QueryMetricsListener listener) {
+        if (listener == null)
+            throw new IllegalArgumentException("Listener must not be null");
+
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(QueryMetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Sets the fraction of the calls that are measured and passed to the listeners.
+     *
+     * @param sampleRate The fraction, from 0 to 1, all the calls are measured by default
+     */
+    public void setSampleRate(double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1)
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1: " + sampleRate);
+
+        this.sampleRate = sampleRate;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Gets the metrics of the call running on the current thread.
+     *
+     * @return The metrics, or null if the call is not measured
+     */
+    public QueryMetrics current() {
+        return current.get();
+    }
+
+    /**
+     * Executes a query method call, measuring it when there are listeners.
+     *
+     * @param queryInterface The query interface of the proxy
+     * @param method The query method
+     * @param operation The execution of the call
+     * @param <R> The type of the result
+     * @return The result of the call
+     */
+    public <R> R measure(Class<?> queryInterface, Method method, Supplier<R> operation) {
+        if (listeners.isEmpty() || current.get() != null)
+            return operation.get();
+
+        double rate = sampleRate;
+        if (rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate)
+            return operation.get();
+
+        QueryMetrics metrics = new QueryMetrics(queryInterface, method);
+        current.set(metrics);
+
+        R result;
+        try {
+            result = operation.get();
+        } catch (RuntimeException | Error e) {
+            current.remove();
+            metrics.finish(e);
+            notifyListeners(metrics);
+            throw e;
+        }
+
+        current.remove();
+        metrics.finish(null);
+        notifyListeners(metrics);
+        return result;
+    }
+
+    private void notifyListeners(QueryMetrics metrics) {
+        for (QueryMetricsListener listener : listeners)
+            listener.onQuery(metrics);
+    }
+
+}
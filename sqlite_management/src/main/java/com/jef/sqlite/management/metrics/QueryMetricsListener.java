@@ -0,0 +1,19 @@
+package com.jef.sqlite.management.metrics;
+
+/**
+ * Receives the metrics of every call to a query method of a {@link com.jef.sqlite.management.interfaces.DynamicQuery}.
+ * <p>
+ * Listeners are registered with {@link com.jef.sqlite.management.SQLiteManagement#addQueryMetricsListener(QueryMetricsListener)}
+ * and called on the thread that executed the query, after the query finished and before its result is returned,
+ * so they must be fast and thread safe. An error thrown by a listener is thrown to the caller of the query.
+ */
+public interface QueryMetricsListener {
+
+    /**
+     * Called once per query method call, including the failed ones.
+     *
+     * @param metrics The metrics of the call, not modified after this call
+     */
+    void onQuery(QueryMetrics metrics);
+
+}
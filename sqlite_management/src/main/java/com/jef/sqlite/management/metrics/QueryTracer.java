@@ -0,0 +1,108 @@
+package com.jef.sqlite.management.metrics;
+
+import android.os.Trace;
+
+import java.lang.reflect.Method;
+import java.util.function.Supplier;
+
+/**
+ * Emits {@link Trace} sections around the query method calls and their stages, so the time of the library
+ * appears in systrace and Perfetto next to the code of the application.
+ * <p>
+ * Every call opens a section named after its method, for example "ProductQuery.findByName", and every stage
+ * a nested section with the stage after the method name, for example "ProductQuery.findByName execute":
+ * {@link #PLAN} builds the SQL from the method name, {@link #ACQUIRE} acquires the connection, {@link #EXECUTE}
+ * runs the statement up to its first row, {@link #ITERATE} moves the cursor over the rows, {@link #MAP} maps a row
+ * to an entity and {@link #JOIN} resolves a join field.
+ * <p>
+ * Tracing is disabled by default. While disabled, a stage costs a single volatile read: no section name is built.
+ * Sections are opened and closed on the same thread, in try/finally blocks:
+ * <pre>
+ * boolean traced = tracer.begin(QueryTracer.EXECUTE);
+ * try {
+ *     ...
+ * } finally {
+ *     tracer.end(traced);
+ * }
+ * </pre>
+ */
+public class QueryTracer {
+
+    public static final String PLAN = "plan";
+    public static final String ACQUIRE = "acquire";
+    public static final String EXECUTE = "execute";
+    public static final String ITERATE = "iterate";
+    public static final String MAP = "map";
+    public static final String JOIN = "join";
+
+    // Longer section names are rejected by Trace.beginSection
+    private static final int MAX_SECTION_LENGTH = 127;
+
+    private final ThreadLocal<String> methodName = new ThreadLocal<>();
+    private volatile boolean enabled;
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Executes a query method call inside a section named after the method, when tracing is enabled.
+     *
+     * @param queryInterface The query interface of the proxy
+     * @param method The query method
+     * @param operation The execution of the call
+     * @param <R> The type of the result
+     * @return The result of the call
+     */
+    public <R> R trace(Class<?> queryInterface, Method method, Supplier<R> operation) {
+        if (!enabled || methodName.get() != null)
+            return operation.get();
+
+        String name = queryInterface.getSimpleName() + "." + method.getName();
+        methodName.set(name);
+        Trace.beginSection(section(name));
+        try {
+            return operation.get();
+        } finally {
+            Trace.endSection();
+            methodName.remove();
+        }
+    }
+
+    /**
+     * Opens the section of a stage, named after the method called on the current thread.
+     *
+     * @param stage The stage, one of the constants of this class
+     * @return true if a section was opened and must be closed with {@link #end(boolean)}
+     */
+    public boolean begin(String stage) {
+        if (!enabled)
+            return false;
+
+        String name = methodName.get();
+        Trace.beginSection(section((name != null ? name : "sqlite") + " " + stage));
+        return true;
+    }
+
+    /**
+     * Closes the section opened by {@link #begin(String)}.
+     *
+     * @param traced The value returned by {@link #begin(String)}
+     * @return false, so a variable can be reset when a section is closed before its finally block
+     */
+    public boolean end(boolean traced) {
+        if (traced)
+            Trace.endSection();
+
+        return false;
+    }
+
+    private static String section(String name) {
+        return name.length() <= MAX_SECTION_LENGTH ? name : name.substring(0, MAX_SECTION_LENGTH);
+    }
+
+}
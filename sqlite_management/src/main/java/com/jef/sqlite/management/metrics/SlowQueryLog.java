@@ -0,0 +1,381 @@
+package com.jef.sqlite.management.metrics;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.jef.sqlite.management.SQLiteManagement;
+import com.jef.sqlite.management.cache.TableVersions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Metrics listener that logs the query method calls slower than a threshold, with the query plan of their SQL.
+ * <p>
+ * The first time a statement is slow, the log runs EXPLAIN QUERY PLAN for it and keeps the plan for the next
+ * slow calls of the same statement. Full scans of tables with at least {@link #setLargeTableRows(long) a number of rows}
+ * are flagged: they usually mean a derived query like findByNameOrActive filters on a column without an index.
+ * The row counts are kept until the version of their table is bumped, so a table that grows is flagged
+ * once it reaches the number of rows.
+ * Inserts have no plan. The last {@link #setMaxEntries(int) entries} are kept in memory and every entry is passed
+ * to the {@link Listener} of the log, if any. All the methods are thread safe.
+ */
+public class SlowQueryLog implements QueryMetricsListener {
+
+    /**
+     * Default number of rows from which a scanned table is flagged.
+     */
+    public static final long DEFAULT_LARGE_TABLE_ROWS = 1000;
+
+    /**
+     * Default number of entries kept in memory.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 100;
+
+    // "SCAN products" since SQLite 3.36, "SCAN TABLE products" before
+    private static final Pattern SCAN = Pattern.compile("^SCAN (?:TABLE )?(\\w+)");
+
+    private final SQLiteManagement management;
+    private final ConcurrentHashMap<String, QueryPlan> plans = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, RowCount> tableRows = new ConcurrentHashMap<>();
+    private final ArrayDeque<SlowQuery> entries = new ArrayDeque<>();
+
+    private volatile long thresholdNanos;
+    private volatile long largeTableRows = DEFAULT_LARGE_TABLE_ROWS;
+    private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+    private volatile Listener listener;
+
+    /**
+     * @param management The management whose queries are explained
+     * @param thresholdMillis The time from which a call is slow
+     */
+    public SlowQueryLog(SQLiteManagement management, long thresholdMillis) {
+        this.management = management;
+        setThresholdMillis(thresholdMillis);
+    }
+
+    public void setThresholdMillis(long thresholdMillis) {
+        if (thresholdMillis < 0)
+            throw new IllegalArgumentException("Threshold must not be negative: " + thresholdMillis);
+
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    /**
+     * Sets the number of rows from which a full scan of a table is flagged.
+     * Tables are counted when they appear in a scan, and counted again after they are written.
+     *
+     * @param largeTableRows The number of rows
+     */
+    public void setLargeTableRows(long largeTableRows) {
+        if (largeTableRows < 0)
+            throw new IllegalArgumentException("Large table rows must not be negative: " + largeTableRows);
+
+        this.largeTableRows = largeTableRows;
+    }
+
+    public long getLargeTableRows() {
+        return largeTableRows;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        if (maxEntries < 1)
+            throw new IllegalArgumentException("Max entries must be positive: " + maxEntries);
+
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Sets the listener that receives every slow call, for example to send it to the log of the application.
+     *
+     * @param listener The listener, or null to only keep the entries in memory
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void onQuery(QueryMetrics metrics) {
+        if (metrics.getTotalNanos() < thresholdNanos || metrics.getSql() == null)
+            return;
+
+        SlowQuery slowQuery = new SlowQuery(metrics, plan(metrics.getSql(), metrics.getArguments()));
+        synchronized (entries) {
+            entries.addLast(slowQuery);
+            while (entries.size() > maxEntries)
+                entries.removeFirst();
+        }
+
+        Listener current = listener;
+        if (current != null)
+            current.onSlowQuery(slowQuery);
+    }
+
+    /**
+     * @return The slow calls kept in memory, oldest first
+     */
+    public List<SlowQuery> getEntries() {
+        synchronized (entries) {
+            return new ArrayList<>(entries);
+        }
+    }
+
+    /**
+     * @return The distinct statements explained so far, with their plan
+     */
+    public List<QueryPlan> getPlans() {
+        return new ArrayList<>(plans.values());
+    }
+
+    /**
+     * Clears the entries, the plans and the table sizes.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+
+        plans.clear();
+        tableRows.clear();
+    }
+
+    /**
+     * Formats the slow calls kept in memory, each one followed by its plan.
+     *
+     * @return The log
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        for (SlowQuery slowQuery : getEntries())
+            text.append(slowQuery).append('\n');
+
+        return text.toString();
+    }
+
+    /**
+     * Gets the plan of a statement, explaining it the first time.
+     * The full scans of a known plan are checked again against the current row counts.
+     */
+    private QueryPlan plan(String sql, String[] arguments) {
+        QueryPlan plan = plans.get(sql);
+        if (plan == null) {
+            plan = explain(sql, arguments);
+            QueryPlan previous = plans.putIfAbsent(sql, plan);
+            return previous != null ? previous : plan;
+        }
+
+        if (plan.scans.isEmpty())
+            return plan;
+
+        List<String> fullScans = fullScans(plan.scans);
+        if (fullScans.equals(plan.fullScans))
+            return plan;
+
+        QueryPlan updated = new QueryPlan(sql, plan.details, plan.scans, fullScans, plan.error);
+        plans.put(sql, updated);
+        return updated;
+    }
+
+    private QueryPlan explain(String sql, String[] arguments) {
+        String statement = sql.trim().toUpperCase(Locale.ROOT);
+        if (!statement.startsWith("SELECT") && !statement.startsWith("WITH") &&
+                !statement.startsWith("UPDATE") && !statement.startsWith("DELETE"))
+            return new QueryPlan(sql, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), null);
+
+        List<String> details = new ArrayList<>();
+        List<String> scans = new ArrayList<>();
+        String error = null;
+
+        SQLiteDatabase db = management.acquireReadableDatabase();
+        try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, arguments)) {
+            int detailColumn = cursor.getColumnIndex("detail");
+            while (cursor.moveToNext()) {
+                String detail = cursor.getString(detailColumn);
+                details.add(detail);
+
+                Matcher scan = SCAN.matcher(detail);
+                if (scan.find())
+                    scans.add(scan.group(1));
+            }
+        } catch (android.database.sqlite.SQLiteException e) {
+            // Statements that cannot be explained, like a custom query with its arguments inlined, keep the error
+            error = e.getMessage();
+        } finally {
+            management.releaseDatabase(db);
+        }
+
+        return new QueryPlan(sql, details, scans, fullScans(scans), error);
+    }
+
+    /**
+     * Gets the scanned tables that have at least {@link #getLargeTableRows()} rows.
+     */
+    private List<String> fullScans(List<String> scans) {
+        List<String> fullScans = new ArrayList<>();
+        if (scans.isEmpty())
+            return fullScans;
+
+        SQLiteDatabase db = management.acquireReadableDatabase();
+        try {
+            for (String table : scans)
+                if (rowCount(db, table) >= largeTableRows)
+                    fullScans.add(table);
+        } finally {
+            management.releaseDatabase(db);
+        }
+
+        return fullScans;
+    }
+
+    private long rowCount(SQLiteDatabase db, String table) {
+        TableVersions tableVersions = management.getTableVersions();
+        String[] tables = {table};
+
+        RowCount cached = tableRows.get(table);
+        if (cached != null && tableVersions.isCurrent(tables, cached.versions))
+            return cached.rows;
+
+        // The versions are read before counting, a write during the count makes it stale
+        long[] versions = tableVersions.snapshot(tables);
+        long rows;
+        try (Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM `" + table + "`", null)) {
+            rows = cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } catch (android.database.sqlite.SQLiteException e) {
+            // Scans of views or subqueries have no table to count
+            rows = 0L;
+        }
+
+        tableRows.put(table, new RowCount(rows, versions));
+        return rows;
+    }
+
+    /**
+     * The number of rows of a table and the versions of the table when it was counted.
+     */
+    private static class RowCount {
+
+        private final long rows;
+        private final long[] versions;
+
+        RowCount(long rows, long[] versions) {
+            this.rows = rows;
+            this.versions = versions;
+        }
+
+    }
+
+    /**
+     * Receives the slow calls of a log.
+     */
+    public interface Listener {
+
+        /**
+         * Called on the thread that executed the query, after its plan was obtained.
+         *
+         * @param slowQuery The slow call
+         */
+        void onSlowQuery(SlowQuery slowQuery);
+
+    }
+
+    /**
+     * The plan of a distinct statement.
+     */
+    public static class QueryPlan {
+
+        private final String sql;
+        private final List<String> details;
+        private final List<String> scans;
+        private final List<String> fullScans;
+        private final String error;
+
+        QueryPlan(String sql, List<String> details, List<String> scans, List<String> fullScans, String error) {
+            this.sql = sql;
+            this.details = Collections.unmodifiableList(details);
+            this.scans = Collections.unmodifiableList(scans);
+            this.fullScans = Collections.unmodifiableList(fullScans);
+            this.error = error;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * @return The detail column of every row of EXPLAIN QUERY PLAN, for example "SEARCH products USING INDEX ..."
+         */
+        public List<String> getDetails() {
+            return details;
+        }
+
+        /**
+         * @return The large tables scanned without an index
+         */
+        public List<String> getFullScans() {
+            return fullScans;
+        }
+
+        public boolean hasFullScan() {
+            return !fullScans.isEmpty();
+        }
+
+        /**
+         * @return The error of EXPLAIN QUERY PLAN, or null if the statement was explained
+         */
+        public String getError() {
+            return error;
+        }
+
+    }
+
+    /**
+     * A call slower than the threshold.
+     */
+    public static class SlowQuery {
+
+        private final QueryMetrics metrics;
+        private final QueryPlan plan;
+
+        SlowQuery(QueryMetrics metrics, QueryPlan plan) {
+            this.metrics = metrics;
+            this.plan = plan;
+        }
+
+        public QueryMetrics getMetrics() {
+            return metrics;
+        }
+
+        public QueryPlan getPlan() {
+            return plan;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(metrics).append('\n').append("  ").append(plan.getSql());
+
+            for (String detail : plan.getDetails())
+                text.append('\n').append("    ").append(detail);
+
+            if (plan.hasFullScan())
+                text.append('\n').append("  FULL SCAN of large table: ").append(String.join(", ", plan.getFullScans()));
+            if (plan.getError() != null)
+                text.append('\n').append("  EXPLAIN failed: ").append(plan.getError());
+
+            return text.toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.jef.sqlite.management.schema;
+
+/**
+ * Describes a single column of a table as it is declared by the entity class.
+ * Instances are immutable and are built by SQLiteTable from the @Column and @Join annotations.
+ */
+public class ColumnSchema {
+
+    private final String name;
+    private final String type;
+    private final boolean notNull;
+    private final boolean primaryKey;
+    private final boolean autoIncrement;
+    private final boolean unique;
+    private final String defaultValue;
+
+    /**
+     * Constructor for ColumnSchema
+     *
+     * @param name The column name
+     * @param type The SQLite type of the column (TEXT, INTEGER, BIGINT, REAL, BLOB)
+     * @param notNull true if the column has a NOT NULL constraint
+     * @param primaryKey true if the column is the primary key
+     * @param autoIncrement true if the column is AUTOINCREMENT
+     * @param unique true if the column has a UNIQUE constraint
+     * @param defaultValue The SQL literal used as default value, or null if the column has no default
+     */
+    public ColumnSchema(String name, String type, boolean notNull, boolean primaryKey,
+                        boolean autoIncrement, boolean unique, String defaultValue) {
+        this.name = name;
+        this.type = type;
+        this.notNull = notNull;
+        this.primaryKey = primaryKey;
+        this.autoIncrement = autoIncrement;
+        this.unique = unique;
+        this.defaultValue = defaultValue;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public boolean isNotNull() {
+        return notNull;
+    }
+
+    public boolean isPrimaryKey() {
+        return primaryKey;
+    }
+
+    public boolean isAutoIncrement() {
+        return autoIncrement;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    public String getDefaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * Builds the column definition used inside a CREATE TABLE statement.
+     * For example: "name TEXT NOT NULL UNIQUE".
+     *
+     * @return The column definition
+     */
+    public String getDefinition() {
+        StringBuilder instruction = new StringBuilder();
+        instruction.append(name)
+                .append(" ")
+                .append(type);
+
+        if (notNull)
+            instruction.append(" NOT NULL");
+
+        if (primaryKey)
+            instruction.append(" PRIMARY KEY");
+
+        if (autoIncrement)
+            instruction.append(" AUTOINCREMENT");
+
+        if (unique)
+            instruction.append(" UNIQUE");
+
+        if (defaultValue != null)
+            instruction.append(" DEFAULT ").append(defaultValue);
+
+        return instruction.toString();
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.jef.sqlite.management.schema;
+
+/**
+ * Listener to follow the progress of the schema migrations applied by {@link SchemaMigrator}.
+ * The methods are called on the thread that opens the database, inside the migration transaction.
+ */
+public interface MigrationListener {
+
+    /**
+     * Called after a batch of rows has been copied while a table is rebuilt.
+     *
+     * @param tableName The name of the table being rebuilt
+     * @param copiedRows The number of rows copied so far
+     * @param totalRows The total number of rows of the table
+     */
+    void onProgress(String tableName, long copiedRows, long totalRows);
+
+    /**
+     * Called when the migration of a table has finished.
+     *
+     * @param tableName The name of the migrated table
+     * @param rebuilt true if the table was rebuilt by copying its rows, false if the columns were added in place
+     */
+    void onTableMigrated(String tableName, boolean rebuilt);
+
+}
@@ -0,0 +1,293 @@
+package com.jef.sqlite.management.schema;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.jef.sqlite.management.exceptions.SQLiteException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Migrates an existing table to the declaration of its entity.
+ * <p>
+ * The declared columns are compared with {@code PRAGMA table_info} and the unique indexes with
+ * {@code PRAGMA index_list}. New columns are added with {@code ALTER TABLE ADD COLUMN} when SQLite allows it,
+ * otherwise the table is rebuilt: a new table is created, the rows are copied in batches and the new table
+ * replaces the old one. Columns that are no longer declared are kept unless they would make inserts fail.
+ * <p>
+ * The migrator does not open transactions, it is meant to run inside the transaction of {@link SchemaRegistry}.
+ */
+public class SchemaMigrator {
+
+    /**
+     * Number of rows copied per statement when a table is rebuilt.
+     */
+    public static final int COPY_BATCH_SIZE = 5000;
+
+    private MigrationListener listener;
+
+    /**
+     * Sets the listener that receives the progress of the migrations.
+     *
+     * @param listener The listener, or null to remove it
+     */
+    public void setListener(MigrationListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Creates or migrates a table so it matches its declaration.
+     *
+     * @param db The writable database
+     * @param schema The declaration of the table
+     * @throws SQLiteException If the table cannot be migrated
+     */
+    public void migrate(SQLiteDatabase db, TableSchema schema) {
+        Map<String, ExistingColumn> existing = readColumns(db, schema.getName());
+
+        if (existing.isEmpty()) {
+            db.execSQL(schema.getCreateSql());
+            return;
+        }
+
+        Set<String> existingUnique = readUniqueColumns(db, schema.getName());
+        List<ColumnSchema> columnsToAdd = new ArrayList<>();
+        boolean rebuild = false;
+
+        for (ColumnSchema column : schema.getColumns()) {
+            String key = column.getName().toLowerCase(Locale.ROOT);
+            ExistingColumn current = existing.remove(key);
+
+            if (current == null) {
+                if (canAddColumn(column))
+                    columnsToAdd.add(column);
+                else
+                    rebuild = true;
+            } else if (!current.matches(column) || column.isUnique() != existingUnique.contains(key))
+                rebuild = true;
+        }
+
+        // Remaining columns are not declared anymore, they only force a rebuild if inserts would fail
+        for (ExistingColumn column : existing.values())
+            if ((column.notNull && column.defaultValue == null) || column.primaryKey || existingUnique.contains(column.key))
+                rebuild = true;
+
+        if (rebuild) {
+            rebuildTable(db, schema);
+            if (listener != null)
+                listener.onTableMigrated(schema.getName(), true);
+            return;
+        }
+
+        if (columnsToAdd.isEmpty())
+            return;
+
+        for (ColumnSchema column : columnsToAdd)
+            db.execSQL("ALTER TABLE " + schema.getName() + " ADD COLUMN " + column.getDefinition());
+
+        if (listener != null)
+            listener.onTableMigrated(schema.getName(), false);
+    }
+
+    /**
+     * Rebuilds a table by copying its rows into a new table created from the declaration.
+     * Only the columns that exist in both tables are copied.
+     *
+     * @param db The writable database
+     * @param schema The declaration of the table
+     * @throws SQLiteException If the rows cannot be copied into the new table
+     */
+    private void rebuildTable(SQLiteDatabase db, TableSchema schema) {
+        String tableName = schema.getName();
+        String newTableName = tableName + "_migration";
+
+        Map<String, ExistingColumn> existing = readColumns(db, tableName);
+        List<String> commonColumns = new ArrayList<>();
+        for (ColumnSchema column : schema.getColumns())
+            if (existing.containsKey(column.getName().toLowerCase(Locale.ROOT)))
+                commonColumns.add(column.getName());
+
+        db.execSQL("DROP TABLE IF EXISTS " + newTableName);
+        db.execSQL(schema.createSql(newTableName));
+
+        if (!commonColumns.isEmpty()) {
+            String columns = String.join(", ", commonColumns);
+            long totalRows = simpleQueryForLong(db, "SELECT COUNT(*) FROM " + tableName);
+            long copiedRows = 0;
+
+            // Keyset paging: each batch ends at the rowid of its last row, so sparse rowids do not produce empty batches
+            SQLiteStatement batchEnd = db.compileStatement("SELECT IFNULL(MAX(rowid), ?1) FROM" +
+                    " (SELECT rowid FROM " + tableName + " WHERE rowid > ?1 ORDER BY rowid LIMIT " + COPY_BATCH_SIZE + ")");
+            SQLiteStatement copy = db.compileStatement("INSERT INTO " + newTableName + " (" + columns + ")" +
+                    " SELECT " + columns + " FROM " + tableName + " WHERE rowid > ? AND rowid <= ?");
+            try {
+                long start = simpleQueryForLong(db, "SELECT IFNULL(MIN(rowid), 1) FROM " + tableName) - 1;
+                while (true) {
+                    batchEnd.bindLong(1, start);
+                    long end = batchEnd.simpleQueryForLong();
+                    if (end == start)
+                        break;
+
+                    copy.bindLong(1, start);
+                    copy.bindLong(2, end);
+                    copiedRows += copy.executeUpdateDelete();
+                    start = end;
+
+                    if (listener != null)
+                        listener.onProgress(tableName, copiedRows, totalRows);
+                }
+            } catch (android.database.sqlite.SQLiteException e) {
+                throw new SQLiteException("Error copying rows of table " + tableName + " during migration: " + e.getMessage(), e);
+            } finally {
+                batchEnd.close();
+                copy.close();
+            }
+        }
+
+        db.execSQL("DROP TABLE " + tableName);
+        db.execSQL("ALTER TABLE " + newTableName + " RENAME TO " + tableName);
+    }
+
+    /**
+     * Checks if a column can be added with ALTER TABLE ADD COLUMN.
+     * SQLite does not allow adding PRIMARY KEY or UNIQUE columns, nor NOT NULL columns without a default value.
+     *
+     * @param column The column to add
+     * @return true if the column can be added in place, false if the table has to be rebuilt
+     */
+    private boolean canAddColumn(ColumnSchema column) {
+        if (column.isPrimaryKey() || column.isUnique())
+            return false;
+
+        return !column.isNotNull() || column.getDefaultValue() != null;
+    }
+
+    /**
+     * Reads the columns of a table with PRAGMA table_info.
+     *
+     * @param db The database
+     * @param tableName The table name
+     * @return A map from lower case column name to column, empty if the table does not exist
+     */
+    private Map<String, ExistingColumn> readColumns(SQLiteDatabase db, String tableName) {
+        Map<String, ExistingColumn> columns = new LinkedHashMap<>();
+
+        Cursor cursor = db.rawQuery("PRAGMA table_info(" + tableName + ")", null);
+        try {
+            int nameIndex = cursor.getColumnIndex("name");
+            int typeIndex = cursor.getColumnIndex("type");
+            int notNullIndex = cursor.getColumnIndex("notnull");
+            int defaultIndex = cursor.getColumnIndex("dflt_value");
+            int pkIndex = cursor.getColumnIndex("pk");
+
+            while (cursor.moveToNext()) {
+                ExistingColumn column = new ExistingColumn(
+                        cursor.getString(nameIndex),
+                        cursor.getString(typeIndex),
+                        cursor.getInt(notNullIndex) == 1,
+                        cursor.isNull(defaultIndex) ? null : cursor.getString(defaultIndex),
+                        cursor.getInt(pkIndex) > 0
+                );
+                columns.put(column.key, column);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return columns;
+    }
+
+    /**
+     * Reads the columns that have a single column UNIQUE constraint with PRAGMA index_list and index_info.
+     *
+     * @param db The database
+     * @param tableName The table name
+     * @return A set with the lower case names of the unique columns
+     */
+    private Set<String> readUniqueColumns(SQLiteDatabase db, String tableName) {
+        List<String> indexes = new ArrayList<>();
+
+        Cursor cursor = db.rawQuery("PRAGMA index_list(" + tableName + ")", null);
+        try {
+            int nameIndex = cursor.getColumnIndex("name");
+            int uniqueIndex = cursor.getColumnIndex("unique");
+            int originIndex = cursor.getColumnIndex("origin");
+
+            while (cursor.moveToNext())
+                if (cursor.getInt(uniqueIndex) == 1 && (originIndex == -1 || "u".equals(cursor.getString(originIndex))))
+                    indexes.add(cursor.getString(nameIndex));
+        } finally {
+            cursor.close();
+        }
+
+        Set<String> uniqueColumns = new HashSet<>();
+        for (String index : indexes) {
+            Cursor info = db.rawQuery("PRAGMA index_info(" + index + ")", null);
+            try {
+                if (info.getCount() == 1 && info.moveToFirst())
+                    uniqueColumns.add(info.getString(info.getColumnIndex("name")).toLowerCase(Locale.ROOT));
+            } finally {
+                info.close();
+            }
+        }
+
+        return uniqueColumns;
+    }
+
+    private long simpleQueryForLong(SQLiteDatabase db, String sql) {
+        SQLiteStatement statement = db.compileStatement(sql);
+        try {
+            return statement.simpleQueryForLong();
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Column of an existing table as reported by PRAGMA table_info.
+     */
+    private static class ExistingColumn {
+
+        private final String key;
+        private final String type;
+        private final boolean notNull;
+        private final String defaultValue;
+        private final boolean primaryKey;
+
+        ExistingColumn(String name, String type, boolean notNull, String defaultValue, boolean primaryKey) {
+            this.key = name.toLowerCase(Locale.ROOT);
+            this.type = type;
+            this.notNull = notNull;
+            this.defaultValue = defaultValue;
+            this.primaryKey = primaryKey;
+        }
+
+        /**
+         * Checks if the column matches the declared type, nullability, default value and primary key.
+         *
+         * @param column The declared column
+         * @return true if both columns are equivalent, false otherwise
+         */
+        boolean matches(ColumnSchema column) {
+            if (!column.getType().equalsIgnoreCase(type))
+                return false;
+
+            if (column.isNotNull() != notNull || column.isPrimaryKey() != primaryKey)
+                return false;
+
+            if (column.getDefaultValue() == null)
+                return defaultValue == null;
+
+            return defaultValue != null && column.getDefaultValue().trim().equalsIgnoreCase(defaultValue.trim());
+        }
+
+    }
+
+}
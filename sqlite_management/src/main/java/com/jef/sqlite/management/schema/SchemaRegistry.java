@@ -0,0 +1,185 @@
+package com.jef.sqlite.management.schema;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.jef.sqlite.management.exceptions.SQLiteException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the table definitions of a database and applies their DDL in a single transaction.
+ * <p>
+ * Tables are only registered when a SQLiteTable is constructed, no database access happens at that point.
+ * When the database is opened, the registry compares the fingerprint of each table with the one stored
+ * in the {@link #SCHEMA_TABLE} table and only runs the DDL of the tables whose declaration changed.
+ * Tables that already exist with a different declaration are migrated by {@link SchemaMigrator}.
+ * Once a table has been verified it is not checked again for the lifetime of the registry.
+ */
+public class SchemaRegistry {
+
+    /**
+     * Name of the table that stores the fingerprint of every table applied by the registry.
+     */
+    public static final String SCHEMA_TABLE = "_management_schema";
+
+    private final Map<String, TableSchema> tables = new LinkedHashMap<>();
+    private final Map<String, String> verified = new HashMap<>();
+    private final SchemaMigrator migrator = new SchemaMigrator();
+
+    /**
+     * Registers a table definition.
+     *
+     * @param schema The table definition
+     * @throws SQLiteException If another entity class is already registered with the same table name
+     */
+    public synchronized void register(TableSchema schema) {
+        TableSchema previous = tables.get(schema.getName());
+
+        if (previous != null && !previous.getEntityClass().equals(schema.getEntityClass()))
+            throw new SQLiteException("Table " + schema.getName() + " is already defined by " + previous.getEntityClass().getName());
+
+        tables.put(schema.getName(), schema);
+    }
+
+    /**
+     * Gets the registered table definition for a table name.
+     *
+     * @param tableName The table name
+     * @return The table definition, or null if the table is not registered
+     */
+    public synchronized TableSchema getTable(String tableName) {
+        return tables.get(tableName);
+    }
+
+    /**
+     * Gets all registered table definitions in registration order.
+     *
+     * @return A list with the registered table definitions
+     */
+    public synchronized List<TableSchema> getTables() {
+        return new ArrayList<>(tables.values());
+    }
+
+    /**
+     * Sets the listener that receives the progress of the schema migrations.
+     *
+     * @param listener The listener, or null to remove it
+     */
+    public synchronized void setMigrationListener(MigrationListener listener) {
+        migrator.setListener(listener);
+    }
+
+    /**
+     * Checks if there are registered tables that have not been verified against the database.
+     *
+     * @return true if at least one table has to be checked, false otherwise
+     */
+    public synchronized boolean isPending() {
+        for (TableSchema schema : tables.values())
+            if (!schema.getFingerprint().equals(verified.get(schema.getName())))
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Applies the DDL of every registered table whose stored fingerprint differs from its declaration.
+     * Missing tables are created and existing ones are migrated to their declaration.
+     * All the statements run inside a single transaction. If the stored fingerprints match, which is the case on
+     * every open after the first one, they are verified with a single read, without a transaction or any DDL.
+     *
+     * @param db The writable database
+     * @throws SQLiteException If there's an error applying the schema
+     */
+    public synchronized void ensure(SQLiteDatabase db) {
+        if (!isPending() || db.isReadOnly())
+            return;
+
+        if (verifyStored(db))
+            return;
+
+        Map<String, String> applied = new HashMap<>();
+
+        db.beginTransaction();
+        try {
+            db.execSQL("CREATE TABLE IF NOT EXISTS " + SCHEMA_TABLE + " (table_name TEXT PRIMARY KEY, fingerprint TEXT NOT NULL)");
+            Map<String, String> stored = readFingerprints(db);
+
+            for (TableSchema schema : tables.values()) {
+                String fingerprint = schema.getFingerprint();
+
+                if (fingerprint.equals(verified.get(schema.getName())))
+                    continue;
+
+                if (!fingerprint.equals(stored.get(schema.getName()))) {
+                    migrator.migrate(db, schema);
+                    db.execSQL("INSERT OR REPLACE INTO " + SCHEMA_TABLE + " (table_name, fingerprint) VALUES (?, ?)",
+                            new Object[]{schema.getName(), fingerprint});
+                }
+
+                applied.put(schema.getName(), fingerprint);
+            }
+
+            db.setTransactionSuccessful();
+        } catch (android.database.sqlite.SQLiteException e) {
+            throw new SQLiteException("Error applying schema: " + e.getMessage(), e);
+        } finally {
+            db.endTransaction();
+        }
+
+        verified.putAll(applied);
+    }
+
+    /**
+     * Marks the registered tables as verified if their stored fingerprints match their declarations.
+     *
+     * @param db The database
+     * @return true if no table has to be created or migrated
+     */
+    private boolean verifyStored(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?", new String[]{SCHEMA_TABLE});
+        try {
+            if (!cursor.moveToFirst())
+                return false;
+        } finally {
+            cursor.close();
+        }
+
+        Map<String, String> stored = readFingerprints(db);
+        for (TableSchema schema : tables.values())
+            if (!schema.getFingerprint().equals(stored.get(schema.getName())))
+                return false;
+
+        for (TableSchema schema : tables.values())
+            verified.put(schema.getName(), schema.getFingerprint());
+
+        return true;
+    }
+
+    /**
+     * Reads the stored fingerprints of the tables that still exist in the database.
+     *
+     * @param db The database
+     * @return A map from table name to stored fingerprint
+     */
+    private Map<String, String> readFingerprints(SQLiteDatabase db) {
+        Map<String, String> stored = new HashMap<>();
+
+        Cursor cursor = db.rawQuery("SELECT s.table_name, s.fingerprint FROM " + SCHEMA_TABLE + " s" +
+                " JOIN sqlite_master m ON m.type = 'table' AND m.name = s.table_name", null);
+        try {
+            while (cursor.moveToNext())
+                stored.put(cursor.getString(0), cursor.getString(1));
+        } finally {
+            cursor.close();
+        }
+
+        return stored;
+    }
+
+}
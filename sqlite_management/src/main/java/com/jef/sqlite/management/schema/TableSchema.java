@@ -0,0 +1,109 @@
+package com.jef.sqlite.management.schema;
+
+import com.jef.sqlite.management.exceptions.SQLiteException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes a table declared by an entity class: its name, its columns and the
+ * CREATE TABLE statement derived from them.
+ * The fingerprint is a hash of the statement and is used to detect when the
+ * declaration of an entity changed since the schema was last applied.
+ */
+public class TableSchema {
+
+    private final String name;
+    private final Class<?> entityClass;
+    private final List<ColumnSchema> columns;
+    private final String createSql;
+    private final String fingerprint;
+
+    /**
+     * Constructor for TableSchema
+     *
+     * @param name The table name
+     * @param entityClass The entity class that declares the table
+     * @param columns The columns of the table in declaration order
+     * @throws SQLiteException If the table has no columns
+     */
+    public TableSchema(String name, Class<?> entityClass, List<ColumnSchema> columns) {
+        if (columns == null || columns.isEmpty())
+            throw new SQLiteException("Table " + name + " has no columns defined");
+
+        this.name = name;
+        this.entityClass = entityClass;
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        this.createSql = createSql(name);
+        this.fingerprint = fingerprint(createSql);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    public List<ColumnSchema> getColumns() {
+        return columns;
+    }
+
+    public String getCreateSql() {
+        return createSql;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Builds the CREATE TABLE statement of this schema for the given table name.
+     *
+     * @param tableName The name of the table to create
+     * @return The CREATE TABLE IF NOT EXISTS statement
+     */
+    public String createSql(String tableName) {
+        StringBuilder createTableSQL = new StringBuilder("CREATE TABLE IF NOT EXISTS ");
+        createTableSQL.append(tableName).append(" (\n");
+
+        boolean isFirstColumn = true;
+        for (ColumnSchema column : columns) {
+            if (isFirstColumn) {
+                createTableSQL.append("\n").append(column.getDefinition());
+                isFirstColumn = false;
+            } else
+                createTableSQL.append(",\n").append(column.getDefinition());
+        }
+
+        createTableSQL.append("\n);");
+        return createTableSQL.toString();
+    }
+
+    /**
+     * Computes the SHA-256 hash of a statement as an hexadecimal string.
+     *
+     * @param sql The statement to hash
+     * @return The hexadecimal hash
+     */
+    private static String fingerprint(String sql) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(sql.getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash)
+                hex.append(String.format("%02x", b));
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new SQLiteException("Error computing schema fingerprint: " + e.getMessage(), e);
+        }
+    }
+
+}